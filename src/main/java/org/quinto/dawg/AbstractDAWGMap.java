@@ -1,5 +1,6 @@
 package org.quinto.dawg;
 
+import java.nio.CharBuffer;
 import java.util.AbstractMap;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -19,6 +20,14 @@ abstract class AbstractDAWGMap<V> extends AbstractMap<String, V> implements Navi
         this.dawg = dawg;
     }
     
+    /**
+     * Estimates the quantity of bytes retained by the underlying DAWG.
+     * The raw size of words includes keys, values and a separator char between them.
+     */
+    public DAWGMemoryFootprint getMemoryFootprint() {
+        return dawg.getMemoryFootprint();
+    }
+
     public DAWGSet getUnderlyingSet() {
         return new UnmodifiableDAWGSet(dawg);
     }
@@ -36,8 +45,15 @@ abstract class AbstractDAWGMap<V> extends AbstractMap<String, V> implements Navi
     static void checkNotNullAndContainsNoZeros(Object o) {
         if (o == null)
             throw new NullPointerException();
-        if (((String)o).indexOf(KEY_VALUE_SEPARATOR) >= 0)
-            throw new IllegalArgumentException("Argument contains zero character");
+        if (o instanceof String) {
+            if (((String)o).indexOf(KEY_VALUE_SEPARATOR) >= 0)
+                throw new IllegalArgumentException("Argument contains zero character");
+        } else {
+            CharSequence s = (CharSequence)o;
+            for (int i = 0; i < s.length(); i++)
+                if (s.charAt(i) == KEY_VALUE_SEPARATOR)
+                    throw new IllegalArgumentException("Argument contains zero character");
+        }
     }
     
     static String getFirstElement(Iterable<String> i) {
@@ -67,10 +83,55 @@ abstract class AbstractDAWGMap<V> extends AbstractMap<String, V> implements Navi
         return stringEntry == null ? null : stringEntry.substring(0, stringEntry.indexOf(KEY_VALUE_SEPARATOR));
     }
 
+    /**
+     * Encodes entries as {@code key + '\0' + value} strings using a single reusable buffer.
+     */
+    static Iterator<String> stringEntries(final Iterator<? extends Entry<String, String>> entries) {
+        return new Iterator<String>() {
+            private final StringBuilder sb = new StringBuilder();
+            
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public String next() {
+                Entry<String, String> e = entries.next();
+                String key = e.getKey();
+                String value = e.getValue();
+                checkNotNullAndContainsNoZeros(key);
+                checkNotNullAndContainsNoZeros(value);
+                sb.setLength(0);
+                return sb.append(key).append(KEY_VALUE_SEPARATOR).append(value).toString();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     @Override
     public boolean containsKey(Object key) {
         checkNotNullAndContainsNoZeros(key);
-        return dawg.getStringsStartingWith((String)key + KEY_VALUE_SEPARATOR).iterator().hasNext();
+        return dawg.containsStringsStartingWith((String)key, KEY_VALUE_SEPARATOR);
+    }
+    
+    /**
+     * Determines whether this map contains a given key without converting it to a String.
+     */
+    public boolean containsKey(CharSequence key) {
+        checkNotNullAndContainsNoZeros(key);
+        return dawg.containsStringsStartingWith(key, KEY_VALUE_SEPARATOR);
+    }
+    
+    /**
+     * Determines whether this map contains a key given as a range of a char array.
+     */
+    public boolean containsKey(char key[], int offset, int length) {
+        return containsKey(CharBuffer.wrap(key, offset, length));
     }
 
     @Override
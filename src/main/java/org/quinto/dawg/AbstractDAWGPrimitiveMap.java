@@ -0,0 +1,61 @@
+package org.quinto.dawg;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Base class for compressed maps from strings to primitive values.
+ * Keys are stored in a minimal DAWG, so each key has a dense rank (its position in the sorted order of keys).
+ * Values are stored in a primitive array indexed by these ranks.
+ * Lookups walk the key once and don't allocate any objects.
+ */
+public abstract class AbstractDAWGPrimitiveMap implements Serializable {
+    private static final long serialVersionUID = 1L;
+    final CompressedDAWGSet keys;
+    
+    AbstractDAWGPrimitiveMap(Iterable<String> sortedKeys) {
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet(false);
+        dawg.addAll(sortedKeys);
+        keys = dawg.compress();
+    }
+    
+    static <V> SortedMap<String, V> sorted(Map<String, V> map) {
+        if (map instanceof SortedMap && ((SortedMap<String, V>)map).comparator() == null)
+            return (SortedMap<String, V>)map;
+        return new TreeMap<String, V>(map);
+    }
+    
+    /**
+     * Returns the position of a given key in the sorted order of keys of this map.
+     * Ranks are dense: they lie in range [0, size()).
+     
+     * @param key       a key
+     * @return          the rank of a given key or -1 if this map doesn't contain it
+     */
+    public int indexOf(CharSequence key) {
+        return keys.getRank(key);
+    }
+    
+    public boolean containsKey(CharSequence key) {
+        return keys.getRank(key) >= 0;
+    }
+    
+    public int size() {
+        return keys.size();
+    }
+    
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+    
+    /**
+     * Returns the keys of this map in sorted order.
+     * The i-th key of the returned set has rank i.
+     */
+    public NavigableSet<String> keySet() {
+        return new UnmodifiableDAWGSet(keys);
+    }
+}
@@ -0,0 +1,220 @@
+package org.quinto.dawg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.quinto.dawg.DAWGSet.MatchListener;
+
+/**
+ * An Aho-Corasick automaton over the strings of a set: a trie of the strings with failure links.
+ * Nodes of a minimal DAWG are shared by different prefixes, so they cannot have failure links,
+ * while each node of a trie stands for a single prefix. A failure link points to the node of the longest
+ * proper suffix of that prefix which is a prefix of some string, so a text is scanned in a single pass.
+ * Transitions are stored in arrays sorted by letters and looked up by binary search.
+ * Nodes are numbered in depth-first order and the root has number 0.
+ */
+class AhoCorasickAutomaton {
+    private static final int ROOT = 0;
+
+    private final int modificationCount;
+    private final boolean codePointOrder;
+    private final int transitionBegins[];
+    private final char letters[];
+    private final int targets[];
+    private final int failures[];
+    // The nearest accepting node among the failure links of a node or -1 if there is none.
+    private final int matchLinks[];
+    private final int depths[];
+    private final BitSet accept;
+    private final int maxLength;
+
+    /**
+     * Builds an automaton of the strings of a given set. The root never accepts, so the empty string is never matched.
+     */
+    AhoCorasickAutomaton(DAWGSet dawg) {
+        modificationCount = dawg.getModificationCount();
+        // Letters of transitions follow the order of strings in the set, so lookups search them in the same order.
+        codePointOrder = dawg.stringComparator() != null;
+        int parents[] = new int[16];
+        char nodeLetters[] = new char[16];
+        int nodeDepths[] = new int[16];
+        accept = new BitSet();
+        int path[] = new int[16];
+        int nodeCount = 1;
+        int maxLength = 0;
+        String previous = "";
+        // Strings come in order, so a string shares the path of its common prefix with the previous one.
+        for (String s : dawg) {
+            int common = 0;
+            int length = Math.min(previous.length(), s.length());
+            while (common < length && previous.charAt(common) == s.charAt(common))
+                common++;
+            if (s.length() >= path.length)
+                path = Arrays.copyOf(path, Math.max(path.length * 2, s.length() + 1));
+            for (int i = common; i < s.length(); i++) {
+                if (nodeCount == parents.length) {
+                    parents = Arrays.copyOf(parents, nodeCount * 2);
+                    nodeLetters = Arrays.copyOf(nodeLetters, nodeCount * 2);
+                    nodeDepths = Arrays.copyOf(nodeDepths, nodeCount * 2);
+                }
+                parents[nodeCount] = path[i];
+                nodeLetters[nodeCount] = s.charAt(i);
+                nodeDepths[nodeCount] = i + 1;
+                path[i + 1] = nodeCount++;
+            }
+            if (!s.isEmpty())
+                accept.set(path[s.length()]);
+            maxLength = Math.max(maxLength, s.length());
+            previous = s;
+        }
+        this.maxLength = maxLength;
+        depths = Arrays.copyOf(nodeDepths, nodeCount);
+        // Children of a node are created in order of their letters, so counting sort keeps them sorted.
+        transitionBegins = new int[nodeCount + 1];
+        for (int node = 1; node < nodeCount; node++)
+            transitionBegins[parents[node] + 1]++;
+        for (int node = 0; node < nodeCount; node++)
+            transitionBegins[node + 1] += transitionBegins[node];
+        letters = new char[nodeCount - 1];
+        targets = new int[nodeCount - 1];
+        int filled[] = Arrays.copyOf(transitionBegins, nodeCount);
+        for (int node = 1; node < nodeCount; node++) {
+            int pos = filled[parents[node]]++;
+            letters[pos] = nodeLetters[node];
+            targets[pos] = node;
+        }
+        // Failure links point to shallower nodes, so nodes are linked in order of their depth.
+        int order[] = new int[nodeCount];
+        int depthBegins[] = new int[maxLength + 2];
+        for (int node = 0; node < nodeCount; node++)
+            depthBegins[depths[node] + 1]++;
+        for (int depth = 0; depth <= maxLength; depth++)
+            depthBegins[depth + 1] += depthBegins[depth];
+        for (int node = 0; node < nodeCount; node++)
+            order[depthBegins[depths[node]]++] = node;
+        failures = new int[nodeCount];
+        matchLinks = new int[nodeCount];
+        matchLinks[ROOT] = -1;
+        for (int i = 1; i < nodeCount; i++) {
+            int node = order[i];
+            int parent = parents[node];
+            int failure = parent == ROOT ? ROOT : next(failures[parent], nodeLetters[node]);
+            failures[node] = failure;
+            matchLinks[node] = accept.get(failure) ? failure : matchLinks[failure];
+        }
+    }
+
+    /**
+     * Returns the modification count of the set at the moment this automaton was built.
+     */
+    int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Returns the length of the longest string.
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    long estimateBytes() {
+        int nodeCount = depths.length;
+        return DAWGMemoryFootprint.arrayBytes(nodeCount + 1, 4) + DAWGMemoryFootprint.arrayBytes(nodeCount - 1, 2) +
+               DAWGMemoryFootprint.arrayBytes(nodeCount - 1, 4) + 3 * DAWGMemoryFootprint.arrayBytes(nodeCount, 4) +
+               DAWGMemoryFootprint.arrayBytes((nodeCount + 63) / 64, 8);
+    }
+
+    private int order(char c) {
+        // Surrogates are greater than any other char of the basic plane in the order of code points.
+        return codePointOrder && c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE ? c + 0x10000 : c;
+    }
+
+    /**
+     * Returns the child of a node by a given letter or -1 if there is none.
+     */
+    private int transition(int node, char c) {
+        int low = transitionBegins[node];
+        int high = transitionBegins[node + 1] - 1;
+        int key = order(c);
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = order(letters[mid]);
+            if (midKey < key)
+                low = mid + 1;
+            else if (midKey > key)
+                high = mid - 1;
+            else
+                return targets[mid];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the node of the longest suffix of the prefix of a given node followed by a given char.
+     */
+    private int next(int node, char c) {
+        while (true) {
+            int child = transition(node, c);
+            if (child >= 0)
+                return child;
+            if (node == ROOT)
+                return ROOT;
+            node = failures[node];
+        }
+    }
+
+    /**
+     * Reports all the occurrences ending in a given range of a text
+     * in ascending order of their end, then of their start.
+
+     * @param state     the node reached by the chars preceding the range
+     * @param base      the value added to reported indexes
+     * @return          the node reached by the chars of the range
+     */
+    int scanAll(CharSequence text, int from, int to, int state, int base, MatchListener listener) {
+        for (int i = from; i < to; i++) {
+            state = next(state, text.charAt(i));
+            // Accepting suffixes get shorter along the links.
+            for (int node = accept.get(state) ? state : matchLinks[state]; node >= 0; node = matchLinks[node])
+                listener.match(base + i + 1 - depths[node], base + i + 1);
+        }
+        return state;
+    }
+
+    /**
+     * Reports leftmost-longest non-overlapping occurrences starting from a given index of a text.
+     * The longest occurrence with the leftmost start seen so far is reported as soon as no occurrence
+     * in progress starts at or before it. Scanning goes on from the end of the reported occurrence,
+     * so at most the length of the longest string is scanned again per occurrence.
+
+     * @param limit     the end of the available chars
+     * @param end       whether the text ends at the limit; otherwise occurrences in progress are left for the next call
+     * @param base      the value added to reported indexes
+     * @return          the index to continue from
+     */
+    int scanLongest(CharSequence text, int from, int limit, boolean end, int base, MatchListener listener) {
+        int state = ROOT;
+        int candidateStart = -1;
+        int candidateEnd = -1;
+        int i = from;
+        while (true) {
+            if (i == limit) {
+                if (!end || candidateStart < 0)
+                    return i - depths[state];
+            } else {
+                state = next(state, text.charAt(i++));
+                int node = accept.get(state) ? state : matchLinks[state];
+                if (node >= 0 && (candidateStart < 0 || i - depths[node] <= candidateStart)) {
+                    candidateStart = i - depths[node];
+                    candidateEnd = i;
+                }
+                if (candidateStart < 0 || i - depths[state] <= candidateStart)
+                    continue;
+            }
+            listener.match(base + candidateStart, base + candidateEnd);
+            i = candidateEnd;
+            state = ROOT;
+            candidateStart = -1;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.quinto.dawg;
+
+import java.text.Normalizer;
+
+/**
+ * Maps chars to their canonical forms for lookups that don't distinguish some chars,
+ * e.g. {@link DAWGSet#getStringsFolded}. Strings are stored as is and matched if their chars fold
+ * to the same chars as the chars of a query.
+ * Implementations must fold each char to a single char and keep the zero char as is.
+ */
+public abstract class CharFolding {
+    /**
+     * Folds letters of different cases to the same char.
+     */
+    public static final CharFolding CASE = new CharFolding() {
+        @Override
+        public char fold(char c) {
+            return Character.toLowerCase(Character.toUpperCase(c));
+        }
+    };
+
+    /**
+     * Folds letters of different cases and letters with diacritical marks to the same base letter,
+     * e.g. '&Eacute;', '&egrave;' and 'E' to 'e'. Letters without a canonical decomposition
+     * (like '&oslash;') are only case folded.
+     */
+    public static final CharFolding CASE_AND_DIACRITICS = new CharFolding() {
+        @Override
+        public char fold(char c) {
+            return DiacriticsHolder.TABLE[c];
+        }
+    };
+
+    public abstract char fold(char c);
+
+    // Built on first use: it takes a decomposition of every char.
+    private static class DiacriticsHolder {
+        static final char TABLE[] = new char[Character.MAX_VALUE + 1];
+
+        static {
+            for (int i = 0; i <= Character.MAX_VALUE; i++) {
+                char c = (char)i;
+                char base = c;
+                if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                    String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+                    boolean marksOnly = decomposed.length() > 1;
+                    for (int j = 1; j < decomposed.length() && marksOnly; j++)
+                        marksOnly = Character.getType(decomposed.charAt(j)) == Character.NON_SPACING_MARK;
+                    if (marksOnly)
+                        base = decomposed.charAt(0);
+                }
+                TABLE[i] = CASE.fold(base);
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.quinto.dawg;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores a {@link CompressedDAWGSet} in a file of sections, so parts of it can be loaded on demand.
+ * A file starts with a header: a magic number, a version and a directory of sections.
+ * Each entry of the directory contains an id, an offset and a length of a section.
+ * Sections are: metadata (a layout, a size, a maximal length of words, a fingerprint and a hash code),
+ * letters, outgoing transitions,
+ * and optional incoming transitions, a suffix index (stored as a nested file) and annotations.
+ * Reading loads metadata, letters and outgoing transitions only, which is enough for lookups and prefix search.
+ * Incoming transitions and a suffix index are loaded the first time a suffix search needs them,
+ * or in a background thread if requested. Annotations are read by {@link #readAnnotations} only.
+ * Unknown sections are skipped.
+ * All numbers are big-endian.
+ * <p>
+ * Sections are mapped into memory to be read, but their contents are copied into heap arrays:
+ * lookups index these arrays directly, so a loaded DAWG occupies as much heap as a compressed one
+ * and doesn't depend on the file afterwards. Mapping spares the reads of sections which are not loaded yet.
+ */
+public class CompressedDAWGFile {
+    static final int MAGIC = 0x44415747;
+    static final int VERSION = 1;
+    static final int META = 1;
+    static final int LETTERS = 2;
+    static final int OUTGOING = 3;
+    static final int INCOMING = 4;
+    static final int SUFFIX_INDEX = 5;
+    static final int ANNOTATIONS = 6;
+    private static final int LAYOUT_SMALL_ALPHABET = 0;
+    private static final int LAYOUT_LARGE_ALPHABET = 1;
+    private static final int LAYOUT_BYTES = 2;
+    private static final int DIRECTORY_ENTRY_SIZE = 20;
+    private static final int META_LENGTH = 25;
+
+    private CompressedDAWGFile() {
+    }
+
+    /**
+     * Writes a given DAWG into a file.
+     * @see #write(CompressedDAWGSet, Map, File)
+     */
+    public static void write(CompressedDAWGSet dawg, File file) throws IOException {
+        write(dawg, Collections.<String, String>emptyMap(), file);
+    }
+
+    /**
+     * Writes a given DAWG and annotations into a file.
+
+     * @param dawg          a DAWG to be written; lazily loaded sections are loaded first
+     * @param annotations   arbitrary key-value pairs stored along with the DAWG
+     * @param file          a destination file
+     * @throws IOException  if a write operation cannot be carried out
+     */
+    public static void write(CompressedDAWGSet dawg, Map<String, String> annotations, File file) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            write(dawg, annotations, dos);
+        } finally {
+            dos.close();
+        }
+    }
+
+    private static void write(CompressedDAWGSet dawg, Map<String, String> annotations, DataOutputStream dos) throws IOException {
+        dawg.loadPendingSections();
+        int layout = dawg instanceof CompressedDAWGSetBytes ? LAYOUT_BYTES : dawg instanceof CompressedDAWGSetLargeAlphabet ? LAYOUT_LARGE_ALPHABET : LAYOUT_SMALL_ALPHABET;
+        byte suffixIndex[] = null;
+        if (dawg.suffixIndex != null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream nested = new DataOutputStream(baos);
+            write(dawg.suffixIndex, Collections.<String, String>emptyMap(), nested);
+            nested.flush();
+            suffixIndex = baos.toByteArray();
+        }
+        byte annotationsData[] = null;
+        if (!annotations.isEmpty()) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream section = new DataOutputStream(baos);
+            section.writeInt(annotations.size());
+            for (Map.Entry<String, String> e : annotations.entrySet()) {
+                section.writeUTF(e.getKey());
+                section.writeUTF(e.getValue());
+            }
+            section.flush();
+            annotationsData = baos.toByteArray();
+        }
+        int ids[] = new int[6];
+        long lengths[] = new long[6];
+        int count = 0;
+        ids[count] = META;
+        lengths[count++] = META_LENGTH;
+        ids[count] = LETTERS;
+        lengths[count++] = 4 + 2L * dawg.letters.length;
+        ids[count] = OUTGOING;
+        lengths[count++] = layout == LAYOUT_BYTES ? 4 + (long)((CompressedDAWGSetBytes)dawg).data.length : 4 + 4L * dawg.outgoingData.length;
+        if (dawg.incomingData != null) {
+            ids[count] = INCOMING;
+            lengths[count++] = 4 + 4L * dawg.incomingData.length;
+        }
+        if (suffixIndex != null) {
+            ids[count] = SUFFIX_INDEX;
+            lengths[count++] = suffixIndex.length;
+        }
+        if (annotationsData != null) {
+            ids[count] = ANNOTATIONS;
+            lengths[count++] = annotationsData.length;
+        }
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(count);
+        long offset = 12 + (long)count * DIRECTORY_ENTRY_SIZE;
+        for (int i = 0; i < count; i++) {
+            dos.writeInt(ids[i]);
+            dos.writeLong(offset);
+            dos.writeLong(lengths[i]);
+            offset += lengths[i];
+        }
+        for (int i = 0; i < count; i++) {
+            switch (ids[i]) {
+                case META:
+                    dos.writeByte(layout);
+                    dos.writeInt(dawg.size());
+                    dos.writeInt(dawg.getMaxLength());
+                    dos.writeInt(layout == LAYOUT_BYTES ? dawg.getTransitionCount() : 0);
+                    dos.writeLong(dawg.getFingerprint());
+                    dos.writeInt(dawg.hashCode());
+                    break;
+                case LETTERS:
+                    dos.writeInt(dawg.letters.length);
+                    for (char c : dawg.letters)
+                        dos.writeChar(c);
+                    break;
+                case OUTGOING:
+                    if (layout == LAYOUT_BYTES) {
+                        byte data[] = ((CompressedDAWGSetBytes)dawg).data;
+                        dos.writeInt(data.length);
+                        dos.write(data);
+                    } else
+                        writeInts(dos, dawg.outgoingData);
+                    break;
+                case INCOMING:
+                    writeInts(dos, dawg.incomingData);
+                    break;
+                case SUFFIX_INDEX:
+                    dos.write(suffixIndex);
+                    break;
+                case ANNOTATIONS:
+                    dos.write(annotationsData);
+                    break;
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream dos, int data[]) throws IOException {
+        dos.writeInt(data.length);
+        for (int value : data)
+            dos.writeInt(value);
+    }
+
+    /**
+     * Reads a DAWG from a file loading its suffix search data on demand.
+     * @see #read(File, boolean)
+     */
+    public static CompressedDAWGSet read(File file) throws IOException {
+        return read(file, false);
+    }
+
+    /**
+     * Reads a DAWG from a file. Only the sections needed for lookups and prefix search are read at once.
+     * The file should not be changed while the returned DAWG has sections that are not loaded yet.
+
+     * @param file                  a file written by {@link #write}
+     * @param loadInBackground      whether to load the sections needed for suffix search in a background thread;
+     *                              otherwise they are loaded by the first suffix search
+     * @return                      a DAWG read from the file
+     * @throws IOException          if a read operation cannot be carried out or the file has an unknown format
+     */
+    public static CompressedDAWGSet read(File file, boolean loadInBackground) throws IOException {
+        final CompressedDAWGSet ret;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ret = read(file, raf.getChannel(), 0L);
+        } finally {
+            raf.close();
+        }
+        if (loadInBackground && ret.pendingSections != null) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ret.loadPendingSections();
+                    } catch (RuntimeException e) {
+                        // The next suffix search retries the loading and reports the failure.
+                    }
+                }
+            }, "CompressedDAWGFile");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return ret;
+    }
+
+    /**
+     * Reads annotations stored along with a DAWG without reading the DAWG itself.
+     * @return      annotations in the order they were written, empty if there are none
+     */
+    public static Map<String, String> readAnnotations(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long directory[][] = readDirectory(channel, 0L);
+            Map<String, String> ret = new LinkedHashMap<String, String>();
+            if (directory[ANNOTATIONS] != null) {
+                raf.seek(directory[ANNOTATIONS][0]);
+                int count = raf.readInt();
+                for (int i = 0; i < count; i++)
+                    ret.put(raf.readUTF(), raf.readUTF());
+            }
+            return ret;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads a directory of sections of a file located at a given position.
+     * @return      absolute offsets and lengths of sections indexed by their ids or nulls for absent sections
+     */
+    private static long[][] readDirectory(FileChannel channel, long base) throws IOException {
+        ByteBuffer header = map(channel, base, 12);
+        if (header.getInt() != MAGIC)
+            throw new IOException("Not a DAWG file");
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported version " + version);
+        int count = header.getInt();
+        ByteBuffer entries = map(channel, base + 12, (long)count * DIRECTORY_ENTRY_SIZE);
+        long ret[][] = new long[ANNOTATIONS + 1][];
+        for (int i = 0; i < count; i++) {
+            int id = entries.getInt();
+            long offset = entries.getLong();
+            long length = entries.getLong();
+            if (id >= 0 && id < ret.length)
+                ret[id] = new long[]{base + offset, length};
+        }
+        return ret;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (position + size > channel.size())
+            throw new IOException("Unexpected end of file");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    private static ByteBuffer mapSection(FileChannel channel, long directory[][], int id) throws IOException {
+        if (directory[id] == null)
+            throw new IOException("Section " + id + " is absent");
+        return map(channel, directory[id][0], directory[id][1]);
+    }
+
+    /**
+     * Copies a section of ints into a heap array through a bulk read of an {@link java.nio.IntBuffer} view.
+     */
+    private static int[] readInts(ByteBuffer section) {
+        int ret[] = new int[section.getInt()];
+        section.asIntBuffer().get(ret);
+        return ret;
+    }
+
+    private static CompressedDAWGSet read(File file, FileChannel channel, long base) throws IOException {
+        long directory[][] = readDirectory(channel, base);
+        if (directory[META] != null && directory[META][1] < META_LENGTH)
+            throw new IOException("Malformed metadata");
+        ByteBuffer meta = mapSection(channel, directory, META);
+        int layout = meta.get();
+        int size = meta.getInt();
+        int maxLength = meta.getInt();
+        int transitionCount = meta.getInt();
+        CompressedDAWGSet ret;
+        switch (layout) {
+            case LAYOUT_SMALL_ALPHABET:
+                ret = new CompressedDAWGSet();
+                break;
+            case LAYOUT_LARGE_ALPHABET:
+                ret = new CompressedDAWGSetLargeAlphabet();
+                break;
+            case LAYOUT_BYTES:
+                ret = new CompressedDAWGSetBytes();
+                break;
+            default:
+                throw new IOException("Unknown layout " + layout);
+        }
+        ret.size = size;
+        ret.maxLength = maxLength;
+        // Digests are trusted as is: calculating them would traverse the whole DAWG.
+        ret.fingerprint = meta.getLong();
+        ret.hashCode = meta.getInt();
+        ByteBuffer letters = mapSection(channel, directory, LETTERS);
+        ret.letters = new char[letters.getInt()];
+        letters.asCharBuffer().get(ret.letters);
+        ByteBuffer outgoing = mapSection(channel, directory, OUTGOING);
+        if (layout == LAYOUT_BYTES) {
+            CompressedDAWGSetBytes bytes = (CompressedDAWGSetBytes)ret;
+            bytes.data = new byte[outgoing.getInt()];
+            outgoing.get(bytes.data);
+            bytes.transitionCount = transitionCount;
+        } else
+            ret.outgoingData = readInts(outgoing);
+        ret.calculateCachedValues();
+        if (directory[INCOMING] != null || directory[SUFFIX_INDEX] != null)
+            ret.pendingSections = new PendingSections(file, directory[INCOMING], directory[SUFFIX_INDEX]);
+        return ret;
+    }
+
+    /**
+     * Sections of a file that are not loaded yet.
+     */
+    static class PendingSections {
+        private final File file;
+        private final long incoming[];
+        private final long suffixIndex[];
+
+        PendingSections(File file, long incoming[], long suffixIndex[]) {
+            this.file = file;
+            this.incoming = incoming;
+            this.suffixIndex = suffixIndex;
+        }
+
+        boolean hasIncomingData() {
+            return incoming != null;
+        }
+
+        boolean hasSuffixIndex() {
+            return suffixIndex != null;
+        }
+
+        void load(CompressedDAWGSet dawg) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (incoming != null)
+                    dawg.incomingData = readInts(map(channel, incoming[0], incoming[1]));
+                if (suffixIndex != null)
+                    dawg.suffixIndex = read(file, channel, suffixIndex[0]);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.quinto.dawg;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A compressed immutable map from strings to int values.
+ */
+public class CompressedDAWGIntMap extends AbstractDAWGPrimitiveMap {
+    private static final long serialVersionUID = 1L;
+    private final int values[];
+    
+    public CompressedDAWGIntMap(Map<String, Integer> map) {
+        this(sorted(map));
+    }
+    
+    private CompressedDAWGIntMap(SortedMap<String, Integer> map) {
+        super(map.keySet());
+        values = new int[map.size()];
+        int i = 0;
+        for (Integer value : map.values())
+            values[i++] = value;
+    }
+    
+    /**
+     * Returns the value to which a given key is mapped.
+     
+     * @param key               a key
+     * @param defaultValue      a value returned if this map doesn't contain a given key
+     * @return                  the value of a given key or defaultValue
+     */
+    public int get(CharSequence key, int defaultValue) {
+        int rank = indexOf(key);
+        return rank < 0 ? defaultValue : values[rank];
+    }
+    
+    /**
+     * Returns the value of the key with a given rank.
+     * @see #indexOf
+     */
+    public int valueAt(int rank) {
+        return values[rank];
+    }
+
+    @Override
+    public int hashCode() {
+        return keys.hashCode() * 31 + Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof CompressedDAWGIntMap))
+            return false;
+        CompressedDAWGIntMap map = (CompressedDAWGIntMap)o;
+        return Arrays.equals(values, map.values) && keys.equals(map.keys);
+    }
+}
@@ -0,0 +1,60 @@
+package org.quinto.dawg;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A compressed immutable map from strings to long values.
+ */
+public class CompressedDAWGLongMap extends AbstractDAWGPrimitiveMap {
+    private static final long serialVersionUID = 1L;
+    private final long values[];
+    
+    public CompressedDAWGLongMap(Map<String, Long> map) {
+        this(sorted(map));
+    }
+    
+    private CompressedDAWGLongMap(SortedMap<String, Long> map) {
+        super(map.keySet());
+        values = new long[map.size()];
+        int i = 0;
+        for (Long value : map.values())
+            values[i++] = value;
+    }
+    
+    /**
+     * Returns the value to which a given key is mapped.
+     
+     * @param key               a key
+     * @param defaultValue      a value returned if this map doesn't contain a given key
+     * @return                  the value of a given key or defaultValue
+     */
+    public long get(CharSequence key, long defaultValue) {
+        int rank = indexOf(key);
+        return rank < 0 ? defaultValue : values[rank];
+    }
+    
+    /**
+     * Returns the value of the key with a given rank.
+     * @see #indexOf
+     */
+    public long valueAt(int rank) {
+        return values[rank];
+    }
+
+    @Override
+    public int hashCode() {
+        return keys.hashCode() * 31 + Arrays.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof CompressedDAWGLongMap))
+            return false;
+        CompressedDAWGLongMap map = (CompressedDAWGLongMap)o;
+        return Arrays.equals(values, map.values) && keys.equals(map.keys);
+    }
+}
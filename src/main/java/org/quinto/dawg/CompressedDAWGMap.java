@@ -7,7 +7,7 @@ import java.io.Serializable;
 
 public class CompressedDAWGMap extends DAWGMap implements Serializable {
     private static final long serialVersionUID = 1L;
-    private transient Integer hashCode;
+    private transient volatile Integer hashCode;
     
     CompressedDAWGMap(CompressedDAWGSet dawg) {
         super(dawg);
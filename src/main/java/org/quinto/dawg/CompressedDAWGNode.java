@@ -122,6 +122,7 @@ class CompressedDAWGNode extends DAWGNode {
     
     public Iterable<CompressedDAWGNode> getIncomingTransitions(final char c) {
         return new Iterable<CompressedDAWGNode>() {
+            private final int incomingData[] = graph.getIncomingData();
             private final int from;
             private final int to;
             
@@ -133,9 +134,9 @@ class CompressedDAWGNode extends DAWGNode {
                 } else {
                     // End node is located at the beginning.
                     int idx = index == END ? 0 : index;
-                    int begin = graph.incomingData[idx + 1];
-                    to = begin + graph.incomingData[idx + 2] * CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS;
-                    from = CompressedDAWGSet.binarySearchFirstOccurrence(graph.incomingData, begin, to, c, CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS);
+                    int begin = incomingData[idx + 1];
+                    to = begin + incomingData[idx + 2] * CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS;
+                    from = CompressedDAWGSet.binarySearchFirstOccurrence(incomingData, begin, to, c, CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS);
                 }
             }
             
@@ -148,10 +149,10 @@ class CompressedDAWGNode extends DAWGNode {
                     public CompressedDAWGNode nextElement() {
                         if (pos < 0 || pos >= to)
                             throw NO_SUCH_ELEMENT_EXCEPTION;
-                        char letter = (char)graph.incomingData[pos];
+                        char letter = (char)incomingData[pos];
                         if (letter != c)
                             throw NO_SUCH_ELEMENT_EXCEPTION;
-                        CompressedDAWGNode ret = graph.incomingData[pos + 2] == 0 ? graph.getSourceNode() : new CompressedDAWGNode(graph, pos);
+                        CompressedDAWGNode ret = incomingData[pos + 2] == 0 ? graph.getSourceNode() : new CompressedDAWGNode(graph, pos);
                         pos += CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS;
                         return ret;
                     }
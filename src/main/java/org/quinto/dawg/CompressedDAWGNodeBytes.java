@@ -0,0 +1,81 @@
+package org.quinto.dawg;
+
+import org.quinto.dawg.util.LookaheadIterator;
+import java.util.Iterator;
+
+class CompressedDAWGNodeBytes extends CompressedDAWGNode {
+    CompressedDAWGNodeBytes(CompressedDAWGSetBytes graph, int index) {
+        super(graph, index);
+    }
+
+    /**
+     * Retrieves the accept state status of this node.
+     
+     * @return      true if this node is an accept state, false otherwise
+     */
+    @Override
+    public boolean isAcceptNode() {
+        return index < 0 ? true : graph.isAcceptNode(index);
+    }
+
+    /**
+     * Retrieves the offset in this node's containing array that its transition set begins at.
+     
+     * @return      an int of the offset in this node's containing array at which its transition set begins
+     */
+    @Override
+    public int getTransitionSetBeginIndex() {
+        return index < 0 ? 0 : graph.getTransitionSetBeginIndex(index);
+    }
+
+    /**
+     * Retrieves the size of this node's outgoing transition set.
+     
+     * @return      an int denoting the size of this node's outgoing transition set
+     */
+    @Override
+    public int getOutgoingTransitionsSize() {
+        return index < 0 ? 0 : graph.getOutgoingTransitionsSize(index);
+    }
+
+    @Override
+    public Iterable<CompressedDAWGNode> getOutgoingTransitionsNodes() {
+        return new Iterable<CompressedDAWGNode>() {
+            private final int size = getOutgoingTransitionsSize();
+
+            @Override
+            public Iterator<CompressedDAWGNode> iterator() {
+                return new LookaheadIterator<CompressedDAWGNode>() {
+                    private int current;
+                    private int childrenIdx = getTransitionSetBeginIndex();
+
+                    @Override
+                    public CompressedDAWGNode nextElement() {
+                        if (current < size) {
+                            CompressedDAWGNode child = new CompressedDAWGNodeBytes((CompressedDAWGSetBytes)graph, childrenIdx);
+                            current++;
+                            childrenIdx = graph.getNextTransitionIndex(childrenIdx);
+                            return child;
+                        } else
+                            throw NO_SUCH_ELEMENT_EXCEPTION;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Follows an outgoing transition from this node.
+     
+     * @param letter            the char representation of the desired transition's label
+     * @return                  the CompressedDAWGNode that is the target of the transition labeled with {@code letter},
+     *                          or null if there is no such labeled transition from this node
+     */
+    @Override
+    public CompressedDAWGNode transition(char letter) {
+        int pos = index < 0 ? -1 : graph.getTransitionIndex(index, letter);
+        if (pos < 0)
+            return null;
+        return new CompressedDAWGNodeBytes((CompressedDAWGSetBytes)graph, pos);
+    }
+}
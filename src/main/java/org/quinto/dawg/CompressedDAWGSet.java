@@ -1,15 +1,21 @@
 package org.quinto.dawg;
 
+import org.quinto.dawg.util.LookaheadIterator;
 import org.quinto.dawg.util.SemiNavigableMap;
 import org.quinto.dawg.util.SimpleEntry;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +23,13 @@ import java.util.NavigableSet;
 import java.util.TreeSet;
 import org.quinto.dawg.util.UnmodifiableNavigableSet;
 
+/**
+ * An immutable DAWG stored in arrays.
+ * An instance is safe for concurrent reads by multiple threads without synchronization once it's safely published
+ * (e.g. via a final or volatile field or a concurrent collection, as any object restored by deserialization).
+ * Values shared by lookups (nodes, the alphabet and its index) are created eagerly at construction and deserialization;
+ * other cached values are calculated lazily and published via volatile fields, so concurrent calculations are idempotent.
+ */
 public class CompressedDAWGSet extends DAWGSet implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final CompressedDAWGNode EMPTY_NODE = new CompressedDAWGNode(null, DAWGNode.EMPTY);
@@ -29,6 +42,12 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
     
     int incomingData[];
     
+    /**
+     * A DAWG of reversed words used for suffix search instead of incoming transitions, or null.
+     * @see ModifiableDAWGSet#compressWithSuffixIndex
+     */
+    CompressedDAWGSet suffixIndex;
+    
     /**
      * An array of all letters used in this dictionary (an alphabet of the language defined by this DAWG).
      */
@@ -42,17 +61,33 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
     /**
      * Quantity of words in this DAWG.
      */
-    transient Integer size;
+    transient volatile Integer size;
     
     transient NavigableSet<Character> alphabet;
     
     /**
      * Maximal length of words contained in this DAWG.
      */
-    transient Integer maxLength;
+    transient volatile Integer maxLength;
     
     private transient int transitionSizeInInts;
     
+    /**
+     * @see #getRankOffsets
+     */
+    private transient volatile int rankOffsets[];
+    
+    /**
+     * Quantities of words in the right languages of nodes indexed by transition set begin index
+     * divided by the transition size.
+     */
+    private transient volatile int wordCounts[];
+    
+    /**
+     * Quantity of distinct map keys in this DAWG.
+     */
+    private transient volatile Integer keyCount;
+    
     /**
      * CompressedDAWGNode from which all others in the structure are reachable
      */
@@ -60,7 +95,20 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
     
     private transient CompressedDAWGNode endNode;
     
-    private transient Integer hashCode;
+    transient volatile Integer hashCode;
+    
+    /**
+     * @see #getFingerprint
+     */
+    transient volatile Long fingerprint;
+    
+    private transient volatile DAWGStatistics statistics;
+    
+    /**
+     * Sections of a file that are loaded on demand, or null if all the data is loaded.
+     * @see CompressedDAWGFile
+     */
+    transient volatile CompressedDAWGFile.PendingSections pendingSections;
     
     /**
      * Package-private constructor.
@@ -78,6 +126,39 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
         calculateCachedValues();
     }
     
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        loadPendingSections();
+        oos.defaultWriteObject();
+    }
+    
+    /**
+     * Loads the sections of a file that have not been loaded yet.
+     * @throws RuntimeException     if the file cannot be read
+     */
+    synchronized void loadPendingSections() {
+        CompressedDAWGFile.PendingSections pending = pendingSections;
+        if (pending == null)
+            return;
+        try {
+            pending.load(this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        pendingSections = null;
+    }
+    
+    int[] getIncomingData() {
+        if (pendingSections != null)
+            loadPendingSections();
+        return incomingData;
+    }
+    
+    CompressedDAWGSet getSuffixIndex() {
+        if (pendingSections != null)
+            loadPendingSections();
+        return suffixIndex;
+    }
+    
     /**
      * Returns the ModifiableDAWGSet's source node.
     
@@ -104,7 +185,65 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
 
     @Override
     public boolean isWithIncomingTransitions() {
-        return incomingData != null;
+        CompressedDAWGFile.PendingSections pending = pendingSections;
+        return pending == null ? incomingData != null : pending.hasIncomingData();
+    }
+    
+    /**
+     * Determines whether this DAWG has a suffix index, i.e. a DAWG of reversed words.
+     * Suffix search in such DAWG descends a single path of the index
+     * and returns strings sorted in order of their reversed forms.
+     */
+    public boolean isWithSuffixIndex() {
+        CompressedDAWGFile.PendingSections pending = pendingSections;
+        return pending == null ? suffixIndex != null : pending.hasSuffixIndex();
+    }
+    
+    static String reverse(String s) {
+        char chars[] = s.toCharArray();
+        for (int i = 0, j = chars.length - 1; i < j; i++, j--) {
+            char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+        }
+        return String.valueOf(chars);
+    }
+    
+    @Override
+    public Iterable<String> getStrings(final String prefixString, final String subString, final String suffixString, final boolean descending, final String fromString, final boolean inclFrom, final String toString, final boolean inclTo) {
+        if (!isWithSuffixIndex() || suffixString == null || suffixString.isEmpty() || prefixString != null && !prefixString.isEmpty())
+            return super.getStrings(prefixString, subString, suffixString, descending, fromString, inclFrom, toString, inclTo);
+        final CompressedDAWGSet suffixIndex = getSuffixIndex();
+        // Suffix search by the prefix of reversed strings.
+        final String reversedSuffix = reverse(suffixString);
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<String> it = suffixIndex.getStrings(reversedSuffix, null, null, descending, null, false, null, false).iterator();
+                return new LookaheadIterator<String>() {
+                    @Override
+                    public String nextElement() {
+                        while (it.hasNext()) {
+                            String word = reverse(it.next());
+                            if (subString != null && !word.contains(subString))
+                                continue;
+                            if (fromString != null) {
+                                int cmp = word.compareTo(fromString);
+                                if (cmp < 0 || cmp == 0 && !inclFrom)
+                                    continue;
+                            }
+                            if (toString != null) {
+                                int cmp = word.compareTo(toString);
+                                if (cmp > 0 || cmp == 0 && !inclTo)
+                                    continue;
+                            }
+                            return word;
+                        }
+                        throw NO_SUCH_ELEMENT_EXCEPTION;
+                    }
+                };
+            }
+        };
     }
     
     @Override
@@ -145,6 +284,324 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
         return transitionSizeInInts;
     }
     
+    /**
+     * Returns the upper bound of transition indexes. Arrays indexed by transition ids should have
+     * a length of this value divided by {@link #getOutgoingTransitionSizeInInts}.
+     */
+    int getIndexCapacity() {
+        return outgoingData.length;
+    }
+    
+    /**
+     * Returns the index of a transition following a given one in the same transition set.
+     */
+    int getNextTransitionIndex(int index) {
+        return index + getOutgoingTransitionSizeInInts();
+    }
+    
+    /**
+     * Returns the index of a transition at a given position in the transition set of a node
+     * pointed by a transition at a given index.
+     */
+    int getTransitionIndexAt(int index, int position) {
+        return getTransitionSetBeginIndex(index) + position * getOutgoingTransitionSizeInInts();
+    }
+    
+    /**
+     * Returns the position of a transition at a given index in the transition set of a node
+     * pointed by a transition at parentIndex.
+     */
+    int getTransitionPosition(int parentIndex, int index) {
+        return (index - getTransitionSetBeginIndex(parentIndex)) / getOutgoingTransitionSizeInInts();
+    }
+    
+    /**
+     * Retrieves the accept state status of a node pointed by a transition at a given index.
+     * This method (as well as other index-based navigation methods) doesn't allocate any objects.
+     */
+    boolean isAcceptNode(int index) {
+        return (outgoingData[index] & CompressedDAWGNode.ACCEPT_NODE_MASK) == CompressedDAWGNode.ACCEPT_NODE_MASK;
+    }
+    
+    /**
+     * Retrieves the index at which the transition set of a node pointed by a transition at a given index begins.
+     */
+    int getTransitionSetBeginIndex(int index) {
+        return outgoingData[index] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK;
+    }
+    
+    /**
+     * Retrieves the size of the transition set of a node pointed by a transition at a given index.
+     */
+    int getOutgoingTransitionsSize(int index) {
+        int s = 0;
+        for (int i = index + 1; i < index + transitionSizeInInts; i++)
+            s += Integer.bitCount(outgoingData[i]);
+        return s;
+    }
+    
+    /**
+     * Follows an outgoing transition labeled with a given char from a node pointed by a transition at a given index.
+     
+     * @return      the index of the followed transition or -1 if there is no such labeled transition
+     */
+    int getTransitionIndex(int index, char letter) {
+        int lp = Arrays.binarySearch(letters, letter);
+        if (lp < 0)
+            return -1;
+        int transitionsStart = index + 1;
+        int transitionsEnd = transitionsStart + (lp >>> 5);
+        lp &= 31;
+        if ((outgoingData[transitionsEnd] & (1 << lp)) == 0)
+            return -1;
+        int pos = 0;
+        for (int i = transitionsStart; i < transitionsEnd; i++)
+            pos += Integer.bitCount(outgoingData[i]);
+        if (lp > 0)
+            pos += Integer.bitCount(outgoingData[transitionsEnd] << (32 - lp));
+        return getTransitionSetBeginIndex(index) + pos * transitionSizeInInts;
+    }
+    
+    /**
+     * Returns the label of the first outgoing transition of a node pointed by a transition at a given index.
+     * The node should have outgoing transitions.
+     */
+    char getFirstLetter(int index) {
+        for (int i = index + 1; ; i++)
+            if (outgoingData[i] != 0)
+                return letters[((i - index - 1) << 5) + Integer.numberOfTrailingZeros(outgoingData[i])];
+    }
+    
+    /**
+     * Returns the label of a transition at a given index going out of a node pointed by a transition at parentIndex.
+     */
+    char getLetter(int parentIndex, int index) {
+        int pos = (index - getTransitionSetBeginIndex(parentIndex)) / transitionSizeInInts;
+        for (int i = parentIndex + 1; ; i++) {
+            int bits = outgoingData[i];
+            int count = Integer.bitCount(bits);
+            if (pos < count) {
+                for (; pos > 0; pos--)
+                    bits &= bits - 1;
+                return letters[((i - parentIndex - 1) << 5) + Integer.numberOfTrailingZeros(bits)];
+            }
+            pos -= count;
+        }
+    }
+    
+    /**
+     * Follows the transition path of a given prefix and then a transition labeled with a given char.
+     
+     * @return          the index of the reached transition or -1 if there is no such path
+     */
+    private int getTransitionIndex(CharSequence prefix, char last) {
+        int index = DAWGNode.START;
+        for (int i = 0; i < prefix.length(); i++) {
+            index = getTransitionIndex(index, prefix.charAt(i));
+            if (index < 0)
+                return -1;
+        }
+        return getTransitionIndex(index, last);
+    }
+
+    /**
+     * Follows transitions by indexes without creating intermediate nodes.
+     */
+    @Override
+    public boolean contains(Object o) {
+        String str = (String)o;
+        int index = DAWGNode.START;
+        for (int i = 0; i < str.length(); i++) {
+            index = getTransitionIndex(index, str.charAt(i));
+            if (index < 0)
+                return false;
+        }
+        return isAcceptNode(index);
+    }
+
+    @Override
+    boolean containsStringsStartingWith(CharSequence prefix, char last) {
+        return getTransitionIndex(prefix, last) >= 0;
+    }
+
+    @Override
+    String getFirstSuffix(CharSequence prefix, char last) {
+        return getFirstSuffix(getTransitionIndex(prefix, last));
+    }
+    
+    private String getFirstSuffix(int index) {
+        if (index < 0)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        while (!isAcceptNode(index)) {
+            sb.append(getFirstLetter(index));
+            index = getTransitionSetBeginIndex(index);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Follows transitions by indexes without creating intermediate nodes.
+     * @see DAWGSet#transitionAll
+     * @return      reached transition indexes or -1 for strings without a path
+     */
+    int[] getTransitionIndexes(String words[], int order[]) {
+        int ret[] = new int[words.length];
+        int path[] = new int[16];
+        path[0] = DAWGNode.START;
+        int pathLength = 0;
+        String previous = "";
+        for (int k = 0; k < words.length; k++) {
+            int idx = order == null ? k : order[k];
+            String word = words[idx];
+            int i = Math.min(pathLength, getCommonPrefixLength(previous, word));
+            if (path.length <= word.length())
+                path = Arrays.copyOf(path, Math.max(path.length * 2, word.length() + 1));
+            int index = path[i];
+            for (; i < word.length(); i++) {
+                index = getTransitionIndex(index, word.charAt(i));
+                if (index < 0)
+                    break;
+                path[i + 1] = index;
+            }
+            pathLength = i;
+            previous = word;
+            ret[idx] = index;
+        }
+        return ret;
+    }
+    
+    @Override
+    public void containsAll(String words[], BitSet out, boolean sort) {
+        int indexes[] = getTransitionIndexes(words, getBatchOrder(words, sort));
+        for (int i = 0; i < indexes.length; i++)
+            out.set(i, indexes[i] >= 0 && isAcceptNode(indexes[i]));
+    }
+    
+    @Override
+    String[] getFirstSuffixes(String prefixes[], char last, boolean sort) {
+        int indexes[] = getTransitionIndexes(prefixes, getBatchOrder(prefixes, sort));
+        String ret[] = new String[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+            if (indexes[i] >= 0)
+                ret[i] = getFirstSuffix(getTransitionIndex(indexes[i], last));
+        return ret;
+    }
+    
+    /**
+     * Returns an array indexed by transition ids (a transition index divided by the transition size).
+     * Each element contains the quantity of words that precede words passing through a given transition
+     * among words starting with the path to its parent node. It includes the word ending at the parent node
+     * (if any) and words passing through the preceding sibling transitions.
+     * Therefore the rank of a word in the sorted order of this set is a sum of these values along its path.
+     */
+    int[] getRankOffsets() {
+        if (rankOffsets == null)
+            calculateWordCounts();
+        return rankOffsets;
+    }
+    
+    private void calculateWordCounts() {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int offsets[] = new int[getIndexCapacity() / transitionSize];
+        int counts[] = new int[offsets.length];
+        Arrays.fill(counts, -1);
+        countWords(DAWGNode.START, offsets, counts);
+        wordCounts = counts;
+        rankOffsets = offsets;
+    }
+    
+    /**
+     * Returns the quantity of words in the right language of a node pointed by a transition at a given index.
+     */
+    int getWordCount(int index) {
+        if (wordCounts == null)
+            calculateWordCounts();
+        int size = getOutgoingTransitionsSize(index);
+        if (size == 0)
+            return isAcceptNode(index) ? 1 : 0;
+        return wordCounts[getTransitionSetBeginIndex(index) / getOutgoingTransitionSizeInInts()];
+    }
+    
+    /**
+     * Calculates the quantity of words in the right language of a node pointed by a transition at a given index
+     * and fills rank offsets of its outgoing transitions.
+     * Word counts are memoized by transition set begin index so that shared nodes are visited only once.
+     */
+    private int countWords(int index, int rankOffsets[], int wordCounts[]) {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int accept = isAcceptNode(index) ? 1 : 0;
+        int size = getOutgoingTransitionsSize(index);
+        if (size == 0)
+            return accept;
+        int begin = getTransitionSetBeginIndex(index);
+        int setId = begin / transitionSize;
+        if (wordCounts[setId] >= 0)
+            return wordCounts[setId];
+        int count = accept;
+        for (int i = 0, child = begin; i < size; i++, child = getNextTransitionIndex(child)) {
+            rankOffsets[child / transitionSize] = count;
+            count += countWords(child, rankOffsets, wordCounts);
+        }
+        wordCounts[setId] = count;
+        return count;
+    }
+    
+    @Override
+    int countStringsStartingWith(CharSequence prefix, char last) {
+        int index = getTransitionIndex(prefix, last);
+        return index < 0 ? 0 : getWordCount(index);
+    }
+
+    @Override
+    int getKeyCount() {
+        if (keyCount == null) {
+            int counts[] = new int[getIndexCapacity() / getOutgoingTransitionSizeInInts()];
+            Arrays.fill(counts, -1);
+            keyCount = countKeys(DAWGNode.START, counts);
+        }
+        return keyCount;
+    }
+    
+    /**
+     * Calculates the quantity of distinct map keys in the right language of a node pointed by a transition
+     * at a given index. Results are memoized by transition set begin index.
+     */
+    private int countKeys(int index, int keyCounts[]) {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int size = getOutgoingTransitionsSize(index);
+        if (size == 0)
+            return 0;
+        int begin = getTransitionSetBeginIndex(index);
+        int setId = begin / transitionSize;
+        if (keyCounts[setId] < 0) {
+            int count = 0;
+            for (int i = 0, child = begin; i < size; i++, child = getNextTransitionIndex(child))
+                count += getLetter(index, child) == AbstractDAWGMap.KEY_VALUE_SEPARATOR ? 1 : countKeys(child, keyCounts);
+            keyCounts[setId] = count;
+        }
+        return keyCounts[setId];
+    }
+    
+    /**
+     * Returns the position of a given word in the sorted order of this set.
+     
+     * @return      the rank of a word or -1 if this set doesn't contain it
+     */
+    int getRank(CharSequence word) {
+        int offsets[] = getRankOffsets();
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int index = DAWGNode.START;
+        int rank = 0;
+        for (int i = 0; i < word.length(); i++) {
+            index = getTransitionIndex(index, word.charAt(i));
+            if (index < 0)
+                return -1;
+            rank += offsets[index / transitionSize];
+        }
+        return isAcceptNode(index) ? rank : -1;
+    }
+    
     void calculateCachedValues() {
         // Int 0:
         // Accept node mark (boolean, first bit)
@@ -153,21 +610,26 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
         // Bit array for each char denoting if there exists a transition
         // from this node to the letter in a specified position
         transitionSizeInInts = 1 + ((letters.length + 31) >>> 5);
+        createSharedValues();
+    }
+    
+    /**
+     * Creates values shared by lookups, so they are published along with this DAWG and never modified later.
+     * Should be called by every layout when its cached values are calculated.
+     */
+    final void createSharedValues() {
+        getSourceNode();
+        getEndNode();
+        getLettersIndex();
+        getAlphabet();
     }
 
     @Override
     int getMaxLength() {
         if (maxLength == null)
-            maxLength = getMaxLength(getSourceNode(), 0);
+            maxLength = getStatistics().getMaxLength();
         return maxLength;
     }
-    
-    int getMaxLength(CompressedDAWGNode node, int length) {
-        int ret = length;
-        for (CompressedDAWGNode child : node.getOutgoingTransitionsNodes())
-            ret = Math.max(ret, getMaxLength(child, length + 1));
-        return ret;
-    }
 
     @Override
     public int getTransitionCount() {
@@ -176,27 +638,120 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
     
     @Override
     public int size() {
-        if (size == null) {
-            int s = 0;
-            for (String word : this)
-                s++;
-            size = s;
-        }
+        if (size == null)
+            size = getWordCount(DAWGNode.START);
         return size;
     }
     
-    private void countNodes(CompressedDAWGNode node, HashSet<Integer> nodeIDHashSet) {
-        if (node.getOutgoingTransitionsSize() != 0)
-            nodeIDHashSet.add(node.getTransitionSetBeginIndex());
-        for (CompressedDAWGNode child : node.getOutgoingTransitionsNodes())
-            countNodes(child, nodeIDHashSet);
+    @Override
+    public int getNodeCount() {
+        return getStatistics().getNodeCount();
     }
     
+    /**
+     * Returns structural statistics of this DAWG. They are calculated on the first call and cached.
+     */
     @Override
-    public int getNodeCount() {
-        HashSet<Integer> ids = new HashSet<Integer>();
-        countNodes(getSourceNode(), ids);
-        return ids.size() + 1;
+    public DAWGStatistics getStatistics() {
+        if (statistics == null) {
+            int transitionSize = getOutgoingTransitionSizeInInts();
+            // Node numbers indexed by set id. All the nodes without outgoing transitions are equivalent.
+            int numbers[] = new int[getIndexCapacity() / transitionSize];
+            Arrays.fill(numbers, -1);
+            int leafNumber = -1;
+            // Transitions pointing to the nodes in the order of their numbers.
+            int queue[] = new int[16];
+            int queueSize = 1;
+            DAWGStatistics.Builder builder = new DAWGStatistics.Builder(isAcceptNode(DAWGNode.START));
+            for (int i = 0; i < queueSize; i++) {
+                int index = queue[i];
+                builder.addNode();
+                int fanOut = getOutgoingTransitionsSize(index);
+                if (queueSize + fanOut > queue.length)
+                    queue = Arrays.copyOf(queue, Math.max(queue.length * 2, queueSize + fanOut));
+                for (int j = 0, child = getTransitionSetBeginIndex(index); j < fanOut; j++, child = getNextTransitionIndex(child)) {
+                    int number;
+                    if (getOutgoingTransitionsSize(child) == 0) {
+                        if (leafNumber < 0) {
+                            leafNumber = queueSize;
+                            queue[queueSize++] = child;
+                        }
+                        number = leafNumber;
+                    } else {
+                        int setId = getTransitionSetBeginIndex(child) / transitionSize;
+                        if (numbers[setId] < 0) {
+                            numbers[setId] = queueSize;
+                            queue[queueSize++] = child;
+                        }
+                        number = numbers[setId];
+                    }
+                    builder.addTransition(getLetter(index, child), number, isAcceptNode(child));
+                }
+            }
+            statistics = builder.build();
+        }
+        return statistics;
+    }
+
+    @Override
+    void estimateMemoryFootprint(DAWGMemoryFootprint footprint) {
+        // Nodes are not stored: they are created on demand as views of outgoingData.
+        footprint.add(DAWGMemoryFootprint.Component.OUTGOING_DATA, estimateOutgoingDataBytes());
+        int incomingData[] = getIncomingData();
+        if (incomingData != null)
+            footprint.add(DAWGMemoryFootprint.Component.INCOMING_DATA, DAWGMemoryFootprint.arrayBytes(incomingData.length, 4));
+        CompressedDAWGSet suffixIndex = getSuffixIndex();
+        if (suffixIndex != null) {
+            DAWGMemoryFootprint suffixIndexFootprint = new DAWGMemoryFootprint();
+            suffixIndex.estimateMemoryFootprint(suffixIndexFootprint);
+            footprint.add(DAWGMemoryFootprint.Component.INCOMING_DATA, suffixIndexFootprint.getTotalBytes());
+        }
+        long lettersBytes = DAWGMemoryFootprint.arrayBytes(letters.length, 2);
+        if (lettersIndex != null) {
+            lettersBytes += DAWGMemoryFootprint.hashMapBytes(letters.length);
+            for (int i = 0; i < letters.length; i++)
+                lettersBytes += DAWGMemoryFootprint.boxedCharBytes(letters[i]) + DAWGMemoryFootprint.boxedIntBytes(i);
+        }
+        if (alphabet != null) {
+            // Unmodifiable wrapper, TreeSet and TreeMap.
+            lettersBytes += 2 * DAWGMemoryFootprint.align(DAWGMemoryFootprint.OBJECT_HEADER_BYTES + DAWGMemoryFootprint.REFERENCE_BYTES) + DAWGMemoryFootprint.TREE_MAP_BYTES;
+            for (char c : letters)
+                lettersBytes += DAWGMemoryFootprint.TREE_MAP_ENTRY_BYTES + DAWGMemoryFootprint.boxedCharBytes(c);
+        }
+        footprint.add(DAWGMemoryFootprint.Component.LETTERS, lettersBytes);
+        if (rankOffsets != null)
+            footprint.add(DAWGMemoryFootprint.Component.CACHES, DAWGMemoryFootprint.arrayBytes(rankOffsets.length, 4));
+        if (wordCounts != null)
+            footprint.add(DAWGMemoryFootprint.Component.CACHES, DAWGMemoryFootprint.arrayBytes(wordCounts.length, 4));
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        BitSet visited = new BitSet(getIndexCapacity() / transitionSize);
+        int stack[] = new int[16];
+        int stackSize = 1;
+        boolean leafVisited = false;
+        while (stackSize > 0) {
+            int index = stack[--stackSize];
+            int fanOut = getOutgoingTransitionsSize(index);
+            if (fanOut == 0) {
+                // All the nodes without outgoing transitions are equivalent.
+                if (!leafVisited)
+                    footprint.addNodeFanOut(0);
+                leafVisited = true;
+                continue;
+            }
+            int begin = getTransitionSetBeginIndex(index);
+            if (visited.get(begin / transitionSize))
+                continue;
+            visited.set(begin / transitionSize);
+            footprint.addNodeFanOut(fanOut);
+            if (stackSize + fanOut > stack.length)
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, stackSize + fanOut));
+            for (int i = 0, child = begin; i < fanOut; i++, child = getNextTransitionIndex(child))
+                stack[stackSize++] = child;
+        }
+    }
+    
+    long estimateOutgoingDataBytes() {
+        return DAWGMemoryFootprint.arrayBytes(outgoingData.length, 4);
     }
 
     @Override
@@ -204,24 +759,109 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
         // Hash code should return the same value for equal objects.
         // Simplified equals() method is possible but simplification
         // of hashCode() would give results that differ from other Set implementations.
+        // So it's the sum of hash codes of the strings calculated over the distinct nodes.
         if (hashCode == null)
-            hashCode = super.hashCode();
+            calculateDigests();
         return hashCode;
     }
 
+    @Override
+    public long getFingerprint() {
+        if (fingerprint == null)
+            calculateDigests();
+        return fingerprint;
+    }
+    
+    /**
+     * Calculates digests of the transition sets: the sum of mixed transitions (see {@link DAWGSet#getFingerprint}),
+     * the sum of hash codes of strings of the right language and the sum of 31^length over them.
+     * A transition set is calculated after the transition sets of its children, so no recursion is needed.
+     */
+    private void calculateDigests() {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int capacity = getIndexCapacity() / transitionSize;
+        long fingerprints[] = new long[capacity];
+        int stringsHashCodes[] = new int[capacity];
+        int powerSums[] = new int[capacity];
+        BitSet calculated = new BitSet(capacity);
+        int stack[] = new int[16];
+        int stackSize = 0;
+        if (getOutgoingTransitionsSize(DAWGNode.START) > 0)
+            stack[stackSize++] = DAWGNode.START;
+        while (stackSize > 0) {
+            int index = stack[stackSize - 1];
+            int size = getOutgoingTransitionsSize(index);
+            int begin = getTransitionSetBeginIndex(index);
+            int setId = begin / transitionSize;
+            if (calculated.get(setId)) {
+                stackSize--;
+                continue;
+            }
+            // Children without digests are calculated first, then this node is visited again.
+            boolean ready = true;
+            for (int i = 0, child = begin; i < size; i++, child = getNextTransitionIndex(child)) {
+                int childSetId = getTransitionSetId(child);
+                if (childSetId >= 0 && !calculated.get(childSetId)) {
+                    if (stackSize == stack.length)
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    stack[stackSize++] = child;
+                    ready = false;
+                }
+            }
+            if (!ready)
+                continue;
+            stackSize--;
+            long transitionsFingerprint = 0L;
+            int stringsHashCode = 0;
+            int powerSum = 0;
+            for (int i = 0, child = begin; i < size; i++, child = getNextTransitionIndex(child)) {
+                int childSetId = getTransitionSetId(child);
+                boolean accept = isAcceptNode(child);
+                long childFingerprint = fingerprintNode(accept, childSetId < 0 ? 0L : fingerprints[childSetId]);
+                // The weight of a char preceding the strings of the child in their hash codes.
+                int childPowerSum = (accept ? 1 : 0) + (childSetId < 0 ? 0 : 31 * powerSums[childSetId]);
+                char letter = getLetter(index, child);
+                transitionsFingerprint += fingerprintTransition(letter, childFingerprint);
+                stringsHashCode += letter * childPowerSum + (childSetId < 0 ? 0 : stringsHashCodes[childSetId]);
+                powerSum += childPowerSum;
+            }
+            fingerprints[setId] = transitionsFingerprint;
+            stringsHashCodes[setId] = stringsHashCode;
+            powerSums[setId] = powerSum;
+            calculated.set(setId);
+        }
+        int setId = getTransitionSetId(DAWGNode.START);
+        fingerprint = fingerprintNode(isAcceptNode(DAWGNode.START), setId < 0 ? 0L : fingerprints[setId]);
+        hashCode = setId < 0 ? 0 : stringsHashCodes[setId];
+    }
+
+    /**
+     * Returns the id of the transition set of a node pointed by a transition at a given index
+     * or -1 if the node has no outgoing transitions.
+     */
+    private int getTransitionSetId(int index) {
+        return getOutgoingTransitionsSize(index) == 0 ? -1 : getTransitionSetBeginIndex(index) / getOutgoingTransitionSizeInInts();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this)
             return true;
-        if (obj instanceof CompressedDAWGSet) {
-            CompressedDAWGSet other = (CompressedDAWGSet)obj;
-            return isWithIncomingTransitions() == other.isWithIncomingTransitions() &&
-                   Arrays.equals(letters, other.letters) &&
-                   Arrays.equals(outgoingData, other.outgoingData) &&
-                   Arrays.equals(incomingData, other.incomingData);
-        }
+        // Other layouts store the same words differently.
+        if (obj instanceof CompressedDAWGSet && obj.getClass() == getClass() && hasSameData((CompressedDAWGSet)obj))
+            return true;
         return super.equals(obj);
     }
+    
+    /**
+     * Returns whether a DAWG of the same layout stores exactly the same data.
+     */
+    boolean hasSameData(CompressedDAWGSet other) {
+        return isWithIncomingTransitions() == other.isWithIncomingTransitions() &&
+               Arrays.equals(letters, other.letters) &&
+               Arrays.equals(outgoingData, other.outgoingData) &&
+               Arrays.equals(getIncomingData(), other.getIncomingData());
+    }
 
     @Override
     public NavigableSet<Character> getAlphabet() {
@@ -234,6 +874,153 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
         return alphabet;
     }
     
+    /**
+     * Creates an equivalent DAWG with transition sets reordered by the frequency of their use.
+     * Transition sets visited by the given sample of queries are placed at the beginning in breadth-first order
+     * (more visited children first), so hot paths occupy a small contiguous region of memory.
+     * Other transition sets follow in their current order.
+     * @param hotWords  a sample of queried words; words absent in this set contribute their longest stored prefix
+     * @return a new instance of the same layout containing the same words
+     */
+    public CompressedDAWGSet relayout(Iterable<? extends CharSequence> hotWords) {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int capacity = getIndexCapacity() / transitionSize;
+        int pointers[] = new int[capacity];
+        int order[] = orderTransitionSets(hotWords, pointers);
+        int newBegins[] = new int[capacity];
+        int cursor = transitionSize;
+        for (int setId : order) {
+            newBegins[setId] = cursor;
+            cursor += getOutgoingTransitionsSize(pointers[setId]) * transitionSize;
+        }
+        int newData[] = new int[outgoingData.length];
+        System.arraycopy(outgoingData, 0, newData, 0, transitionSize);
+        relocateTransition(newData, DAWGNode.START, newBegins);
+        for (int setId : order) {
+            int length = getOutgoingTransitionsSize(pointers[setId]) * transitionSize;
+            System.arraycopy(outgoingData, setId * transitionSize, newData, newBegins[setId], length);
+            for (int child = newBegins[setId]; child < newBegins[setId] + length; child += transitionSize)
+                relocateTransition(newData, child, newBegins);
+        }
+        CompressedDAWGSet ret = newInstance();
+        ret.letters = letters;
+        ret.outgoingData = newData;
+        copyRelaidOutValues(ret);
+        return ret;
+    }
+
+    /**
+     * Copies values which don't depend on the order of transition sets to a relaid out instance
+     * and calculates its cached values.
+     */
+    void copyRelaidOutValues(CompressedDAWGSet ret) {
+        ret.incomingData = getIncomingData();
+        ret.suffixIndex = getSuffixIndex();
+        ret.size = size;
+        ret.maxLength = maxLength;
+        ret.alphabet = alphabet;
+        ret.statistics = statistics;
+        ret.hashCode = hashCode;
+        ret.fingerprint = fingerprint;
+        ret.calculateCachedValues();
+    }
+
+    /**
+     * Orders transition sets reachable from the source node for {@link #relayout}.
+     * The transition set of the source node goes first.
+     * @param pointers  filled with a transition pointing to each set, indexed by set id (a begin index divided by the transition size)
+     * @return ids of the transition sets in their new order
+     */
+    int[] orderTransitionSets(Iterable<? extends CharSequence> hotWords, int pointers[]) {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int capacity = pointers.length;
+        // Indexed by set id: the quantity of visits.
+        int visits[] = new int[capacity];
+        for (CharSequence word : hotWords) {
+            int index = DAWGNode.START;
+            for (int i = 0; getOutgoingTransitionsSize(index) > 0; i++) {
+                visits[getTransitionSetBeginIndex(index) / transitionSize]++;
+                if (i == word.length())
+                    break;
+                index = getTransitionIndex(index, word.charAt(i));
+                if (index < 0)
+                    break;
+            }
+        }
+        int order[] = new int[capacity];
+        int orderSize = 0;
+        BitSet placed = new BitSet(capacity);
+        BitSet known = new BitSet(capacity);
+        Deque<Integer> stack = new ArrayDeque<Integer>();
+        stack.add(DAWGNode.START);
+        while (!stack.isEmpty()) {
+            int index = stack.pollLast();
+            int size = getOutgoingTransitionsSize(index);
+            if (size == 0)
+                continue;
+            int begin = getTransitionSetBeginIndex(index);
+            if (known.get(begin / transitionSize))
+                continue;
+            known.set(begin / transitionSize);
+            pointers[begin / transitionSize] = index;
+            if (index == DAWGNode.START) {
+                order[orderSize++] = begin / transitionSize;
+                placed.set(begin / transitionSize);
+            }
+            for (int i = 0, child = begin; i < size; i++, child = getNextTransitionIndex(child))
+                stack.add(child);
+        }
+        // Breadth-first traversal of the hot region.
+        for (int head = 0; head < orderSize; head++) {
+            int index = pointers[order[head]];
+            List<Integer> hotChildren = new ArrayList<Integer>();
+            for (int i = 0, child = getTransitionSetBeginIndex(index), size = getOutgoingTransitionsSize(index); i < size; i++, child = getNextTransitionIndex(child)) {
+                if (getOutgoingTransitionsSize(child) == 0)
+                    continue;
+                int setId = getTransitionSetBeginIndex(child) / transitionSize;
+                if (visits[setId] > 0 && !placed.get(setId)) {
+                    placed.set(setId);
+                    hotChildren.add(setId);
+                }
+            }
+            final int v[] = visits;
+            Collections.sort(hotChildren, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return v[a] != v[b] ? (v[a] > v[b] ? -1 : 1) : a.compareTo(b);
+                }
+            });
+            for (int setId : hotChildren)
+                order[orderSize++] = setId;
+        }
+        // Cold sets keep their relative order.
+        for (int setId = known.nextSetBit(0); setId >= 0; setId = known.nextSetBit(setId + 1))
+            if (!placed.get(setId))
+                order[orderSize++] = setId;
+        return Arrays.copyOf(order, orderSize);
+    }
+    
+    /**
+     * Rewrites the transition set begin index of a transition copied to a given index of a relaid out array.
+     * Transitions to nodes without outgoing transitions are left intact.
+     */
+    void relocateTransition(int data[], int index, int newBegins[]) {
+        int transitionSize = getOutgoingTransitionSizeInInts();
+        int begin = data[index] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK;
+        boolean empty = true;
+        for (int i = index + 1; i < index + transitionSize; i++)
+            empty &= data[i] == 0;
+        if (!empty)
+            data[index] = (data[index] & CompressedDAWGNode.ACCEPT_NODE_MASK) | newBegins[begin / transitionSize];
+    }
+    
+    /**
+     * Creates an empty instance of the same layout.
+     */
+    CompressedDAWGSet newInstance() {
+        return new CompressedDAWGSet();
+    }
+    
     public ModifiableDAWGSet uncompress() {
         ModifiableDAWGSet ret = new ModifiableDAWGSet(isWithIncomingTransitions());
         ret.addAll(this);
@@ -359,6 +1146,7 @@ public class CompressedDAWGSet extends DAWGSet implements Serializable {
     private class IncomingTransitionsMap implements SemiNavigableMap<Character, Collection<? extends DAWGNode>> {
         private final CompressedDAWGNode cparent;
         private final boolean desc;
+        private final int incomingData[] = getIncomingData();
         private final int from;
         private final int to;
         
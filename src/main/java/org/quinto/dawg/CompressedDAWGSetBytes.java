@@ -0,0 +1,467 @@
+package org.quinto.dawg;
+
+import org.quinto.dawg.util.SemiNavigableMap;
+import org.quinto.dawg.util.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compressed DAWG with a byte-oriented variable-length layout.
+ * Transitions of a node are stored contiguously in ascending order of letters, the last one is marked with {@link #LAST}.
+ * Each node is stored either as a list or as a bitmap depending on its fan-out.
+ * In a list each transition is a record of a flags byte, a byte with the index of its letter in the alphabet
+ * and (unless a flag says otherwise) the offset of the transition set of its target node
+ * encoded with 7 bits per byte, least significant bits first.
+ * No offset is stored when the target node has no outgoing transitions ({@link #LEAF})
+ * or when its transition set immediately follows the transition set of the parent ({@link #NEXT}).
+ * A node with many transitions ({@link #BITMAP}) is preceded by a bitmap of its letters, and its records
+ * have a fixed size ({@link #FIXED}): a flags byte and 4 bytes of an offset. Thus the position of a transition
+ * is calculated from the bitmap instead of a linear scan.
+ * Nodes are laid out in depth-first order, so the first child of a node usually follows it.
+ * {@link #relayout} places frequently visited nodes first instead, so more offsets are stored.
+ * The record at offset 0 is a transition pointing to the source node.
+ * Transition indexes of this class are offsets in bytes.
+ */
+class CompressedDAWGSetBytes extends CompressedDAWGSet {
+    private static final long serialVersionUID = 1L;
+    static final int ACCEPT = 1;
+    static final int LAST = 2;
+    static final int NEXT = 4;
+    static final int LEAF = 8;
+    static final int BITMAP = 16;
+    static final int FIXED = 32;
+    static final int MAX_LETTERS = 256;
+    static final int BITMAP_MIN_FAN_OUT = 4;
+    private static final int RECORD_HEADER_SIZE = 2;
+    private static final int FIXED_RECORD_SIZE = 5;
+
+    byte data[];
+
+    int transitionCount;
+    
+    private transient int bitmapSize;
+
+    CompressedDAWGSetBytes() {
+    }
+
+    /**
+     * Fills {@link #data} with the transitions reachable from a given node.
+     * {@link #letters} should be filled before.
+     */
+    void encode(ModifiableDAWGNode sourceNode) {
+        List<ModifiableDAWGNode> order = new ArrayList<ModifiableDAWGNode>();
+        Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        if (sourceNode.hasOutgoingTransitions())
+            layOut(sourceNode, order, positions);
+        int begins[] = new int[order.size() + 1];
+        for (int p = 0; p < order.size(); p++)
+            begins[p + 1] = begins[p] + order.get(p).getOutgoingTransitionCount();
+        int letterIndexes[] = new int[begins[order.size()]];
+        int targets[] = new int[letterIndexes.length];
+        BitSet accepts = new BitSet(letterIndexes.length);
+        int t = 0;
+        for (ModifiableDAWGNode node : order) {
+            for (Map.Entry<Character, ModifiableDAWGNode> e : node.getOutgoingTransitions().entrySet()) {
+                ModifiableDAWGNode target = e.getValue();
+                letterIndexes[t] = Arrays.binarySearch(letters, e.getKey());
+                targets[t] = target.hasOutgoingTransitions() ? positions.get(target.getId()) : -1;
+                if (target.isAcceptNode())
+                    accepts.set(t);
+                t++;
+            }
+        }
+        write(sourceNode.isAcceptNode(), begins, letterIndexes, targets, accepts);
+    }
+
+    private static void layOut(ModifiableDAWGNode node, List<ModifiableDAWGNode> order, Map<Integer, Integer> positions) {
+        positions.put(node.getId(), order.size());
+        order.add(node);
+        // Children are visited in descending order, so the child following its parent is pointed
+        // by one of the last transitions: finding the end of the list from it is cheap.
+        for (ModifiableDAWGNode child : node.getOutgoingTransitions().descendingMap().values())
+            if (child.hasOutgoingTransitions() && !positions.containsKey(child.getId()))
+                layOut(child, order, positions);
+    }
+
+    /**
+     * Fills {@link #data} with the transitions of nodes placed in a given order. Nodes are identified by their positions
+     * and only nodes with outgoing transitions are placed. The source node goes first.
+     * {@link #letters} should be filled before.
+     * @param begins            indexes of the first transitions of nodes followed by the quantity of transitions
+     * @param letterIndexes     indexes of letters of transitions in the alphabet
+     * @param targets           positions of target nodes of transitions or -1 for nodes without outgoing transitions
+     * @param accepts           transitions to accept nodes
+     */
+    private void write(boolean sourceAccept, int begins[], int letterIndexes[], int targets[], BitSet accepts) {
+        calculateCachedValues();
+        int nodeCount = begins.length - 1;
+        // Offsets of transition sets in the order of nodes and the total size at the end.
+        // The size of an offset depends on its value, so offsets are recalculated until they stop growing.
+        int offsets[] = new int[nodeCount + 1];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int offset = RECORD_HEADER_SIZE;
+            for (int p = 0; p <= nodeCount; p++) {
+                boolean bitmap = p < nodeCount && isBitmap(begins, p);
+                if (bitmap)
+                    offset += bitmapSize;
+                if (offsets[p] != offset) {
+                    offsets[p] = offset;
+                    changed = true;
+                }
+                if (p == nodeCount)
+                    continue;
+                if (bitmap)
+                    offset += FIXED_RECORD_SIZE * (begins[p + 1] - begins[p]);
+                else
+                    for (int t = begins[p]; t < begins[p + 1]; t++) {
+                        int address = getAddress(p, targets[t], offsets);
+                        offset += RECORD_HEADER_SIZE + (address < 0 ? 0 : getVarIntSize(address));
+                    }
+            }
+        }
+        data = new byte[offsets[nodeCount]];
+        data[0] = (byte)(getFlags(sourceAccept, nodeCount == 0 ? -1 : 0, begins) | LAST | (nodeCount > 0 ? NEXT : 0));
+        transitionCount = letterIndexes.length;
+        for (int p = 0; p < nodeCount; p++) {
+            boolean bitmap = isBitmap(begins, p);
+            int pos = offsets[p];
+            for (int t = begins[p]; t < begins[p + 1]; t++) {
+                int letter = letterIndexes[t];
+                int flags = getFlags(accepts.get(t), targets[t], begins);
+                if (t == begins[p + 1] - 1)
+                    flags |= LAST;
+                if (bitmap) {
+                    data[offsets[p] - bitmapSize + (letter >>> 3)] |= 1 << (letter & 7);
+                    data[pos++] = (byte)(flags | FIXED);
+                    int address = targets[t] < 0 ? 0 : offsets[targets[t]];
+                    for (int i = 0; i < 4; i++, address >>>= 8)
+                        data[pos++] = (byte)address;
+                } else {
+                    int address = getAddress(p, targets[t], offsets);
+                    if (targets[t] >= 0 && address < 0)
+                        flags |= NEXT;
+                    data[pos++] = (byte)flags;
+                    data[pos++] = (byte)letter;
+                    if (address >= 0) {
+                        while (address >= 0x80) {
+                            data[pos++] = (byte)(address | 0x80);
+                            address >>>= 7;
+                        }
+                        data[pos++] = (byte)address;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isBitmap(int begins[], int position) {
+        return begins[position + 1] - begins[position] >= BITMAP_MIN_FAN_OUT;
+    }
+
+    /**
+     * Returns flags describing a target node of a transition.
+     */
+    private static int getFlags(boolean accept, int target, int begins[]) {
+        int ret = accept ? ACCEPT : 0;
+        if (target < 0)
+            ret |= LEAF;
+        else if (isBitmap(begins, target))
+            ret |= BITMAP;
+        return ret;
+    }
+
+    /**
+     * Returns the offset to be stored in a transition from a node at a given position to a given target
+     * or -1 if no offset should be stored.
+     */
+    private static int getAddress(int position, int target, int offsets[]) {
+        if (target < 0)
+            return -1;
+        return target == position + 1 ? -1 : offsets[target];
+    }
+
+    private static int getVarIntSize(int value) {
+        int ret = 1;
+        while ((value >>>= 7) != 0)
+            ret++;
+        return ret;
+    }
+
+    @Override
+    int getOutgoingTransitionSizeInInts() {
+        return 1;
+    }
+
+    @Override
+    void calculateCachedValues() {
+        bitmapSize = (letters.length + 7) >>> 3;
+        createSharedValues();
+    }
+
+    @Override
+    int getIndexCapacity() {
+        return data.length;
+    }
+
+    @Override
+    int getNextTransitionIndex(int index) {
+        int flags = data[index];
+        if ((flags & FIXED) != 0)
+            return index + FIXED_RECORD_SIZE;
+        index += RECORD_HEADER_SIZE;
+        if ((flags & (LEAF | NEXT)) == 0)
+            while (data[index++] < 0) {
+            }
+        return index;
+    }
+
+    @Override
+    int getTransitionIndexAt(int index, int position) {
+        int begin = getTransitionSetBeginIndex(index);
+        if ((data[index] & BITMAP) != 0)
+            return begin + position * FIXED_RECORD_SIZE;
+        for (; position > 0; position--)
+            begin = getNextTransitionIndex(begin);
+        return begin;
+    }
+
+    @Override
+    int getTransitionPosition(int parentIndex, int index) {
+        int begin = getTransitionSetBeginIndex(parentIndex);
+        if ((data[parentIndex] & BITMAP) != 0)
+            return (index - begin) / FIXED_RECORD_SIZE;
+        int ret = 0;
+        for (int i = begin; i != index; i = getNextTransitionIndex(i))
+            ret++;
+        return ret;
+    }
+
+    @Override
+    boolean isAcceptNode(int index) {
+        return (data[index] & ACCEPT) != 0;
+    }
+
+    @Override
+    int getTransitionSetBeginIndex(int index) {
+        int flags = data[index];
+        if ((flags & LEAF) != 0)
+            return 0;
+        if ((flags & FIXED) != 0)
+            return (data[index + 1] & 0xFF) | (data[index + 2] & 0xFF) << 8 | (data[index + 3] & 0xFF) << 16 | data[index + 4] << 24;
+        if ((flags & NEXT) != 0) {
+            while ((data[index] & LAST) == 0)
+                index = getNextTransitionIndex(index);
+            index = getNextTransitionIndex(index);
+            return (flags & BITMAP) == 0 ? index : index + bitmapSize;
+        }
+        index += RECORD_HEADER_SIZE;
+        int ret = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data[index++];
+            ret |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return ret;
+        }
+    }
+
+    @Override
+    int getOutgoingTransitionsSize(int index) {
+        int flags = data[index];
+        if ((flags & LEAF) != 0)
+            return 0;
+        int begin = getTransitionSetBeginIndex(index);
+        int ret = 0;
+        if ((flags & BITMAP) != 0) {
+            for (int i = begin - bitmapSize; i < begin; i++)
+                ret += Integer.bitCount(data[i] & 0xFF);
+        } else {
+            ret = 1;
+            for (int i = begin; (data[i] & LAST) == 0; i = getNextTransitionIndex(i))
+                ret++;
+        }
+        return ret;
+    }
+
+    @Override
+    char getLetter(int parentIndex, int index) {
+        if ((data[index] & FIXED) == 0)
+            return letters[data[index + 1] & 0xFF];
+        int begin = getTransitionSetBeginIndex(parentIndex);
+        int pos = (index - begin) / FIXED_RECORD_SIZE;
+        for (int i = begin - bitmapSize; ; i++) {
+            int bits = data[i] & 0xFF;
+            int count = Integer.bitCount(bits);
+            if (pos < count) {
+                for (; pos > 0; pos--)
+                    bits &= bits - 1;
+                return letters[((i - begin + bitmapSize) << 3) + Integer.numberOfTrailingZeros(bits)];
+            }
+            pos -= count;
+        }
+    }
+
+    @Override
+    char getFirstLetter(int index) {
+        int begin = getTransitionSetBeginIndex(index);
+        if ((data[index] & BITMAP) == 0)
+            return letters[data[begin + 1] & 0xFF];
+        for (int i = begin - bitmapSize; ; i++)
+            if (data[i] != 0)
+                return letters[((i - begin + bitmapSize) << 3) + Integer.numberOfTrailingZeros(data[i])];
+    }
+
+    @Override
+    int getTransitionIndex(int index, char letter) {
+        int flags = data[index];
+        if ((flags & LEAF) != 0)
+            return -1;
+        int lp = Arrays.binarySearch(letters, letter);
+        if (lp < 0)
+            return -1;
+        int begin = getTransitionSetBeginIndex(index);
+        if ((flags & BITMAP) != 0) {
+            int bitmapBegin = begin - bitmapSize;
+            int bitmapEnd = bitmapBegin + (lp >>> 3);
+            int bits = data[bitmapEnd] & 0xFF;
+            if ((bits & (1 << (lp & 7))) == 0)
+                return -1;
+            int pos = Integer.bitCount(bits & ((1 << (lp & 7)) - 1));
+            for (int i = bitmapBegin; i < bitmapEnd; i++)
+                pos += Integer.bitCount(data[i] & 0xFF);
+            return begin + pos * FIXED_RECORD_SIZE;
+        }
+        // Letters of a transition set are sorted, so the scan stops at the first greater letter.
+        for (int i = begin; ; i = getNextTransitionIndex(i)) {
+            int l = data[i + 1] & 0xFF;
+            if (l == lp)
+                return i;
+            if (l > lp || (data[i] & LAST) != 0)
+                return -1;
+        }
+    }
+
+    /**
+     * Records have variable lengths, so nodes are encoded again in the new order.
+     * Offsets become explicit where a transition set no longer follows the one of its parent.
+     */
+    @Override
+    public CompressedDAWGSet relayout(Iterable<? extends CharSequence> hotWords) {
+        // Set ids of this layout are begin indexes.
+        int pointers[] = new int[data.length];
+        int order[] = orderTransitionSets(hotWords, pointers);
+        int positions[] = new int[data.length];
+        int begins[] = new int[order.length + 1];
+        for (int p = 0; p < order.length; p++) {
+            positions[order[p]] = p;
+            begins[p + 1] = begins[p] + getOutgoingTransitionsSize(pointers[order[p]]);
+        }
+        int letterIndexes[] = new int[begins[order.length]];
+        int targets[] = new int[letterIndexes.length];
+        BitSet accepts = new BitSet(letterIndexes.length);
+        for (int p = 0, t = 0; p < order.length; p++) {
+            int parent = pointers[order[p]];
+            for (int child = order[p]; t < begins[p + 1]; t++, child = getNextTransitionIndex(child)) {
+                letterIndexes[t] = Arrays.binarySearch(letters, getLetter(parent, child));
+                targets[t] = (data[child] & LEAF) != 0 ? -1 : positions[getTransitionSetBeginIndex(child)];
+                if (isAcceptNode(child))
+                    accepts.set(t);
+            }
+        }
+        CompressedDAWGSetBytes ret = new CompressedDAWGSetBytes();
+        ret.letters = letters;
+        ret.write(isAcceptNode(DAWGNode.START), begins, letterIndexes, targets, accepts);
+        copyRelaidOutValues(ret);
+        return ret;
+    }
+
+    @Override
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    @Override
+    long estimateOutgoingDataBytes() {
+        return DAWGMemoryFootprint.arrayBytes(data.length, 1);
+    }
+
+    @Override
+    CompressedDAWGNode getSourceNode() {
+        if (sourceNode == null)
+            sourceNode = new CompressedDAWGNodeBytes(this, DAWGNode.START);
+        return sourceNode;
+    }
+
+    @Override
+    boolean hasSameData(CompressedDAWGSet other) {
+        return Arrays.equals(letters, other.letters) && Arrays.equals(data, ((CompressedDAWGSetBytes)other).data);
+    }
+
+    @Override
+    SemiNavigableMap<Character, DAWGNode> getOutgoingTransitions(DAWGNode parent) {
+        return new OutgoingTransitionsMap((CompressedDAWGNode)parent, false);
+    }
+
+    private class OutgoingTransitionsMap implements SemiNavigableMap<Character, DAWGNode> {
+        private final CompressedDAWGNode cparent;
+        private final boolean desc;
+        private final int children[];
+        private final char childLetters[];
+
+        public OutgoingTransitionsMap(CompressedDAWGNode cparent, boolean desc) {
+            this.cparent = cparent;
+            this.desc = desc;
+            // Records have variable lengths, so they cannot be traversed backwards without collecting offsets.
+            children = new int[cparent.getOutgoingTransitionsSize()];
+            childLetters = new char[children.length];
+            for (int i = 0, child = cparent.getTransitionSetBeginIndex(); i < children.length; i++, child = getNextTransitionIndex(child)) {
+                children[i] = child;
+                childLetters[i] = getLetter(cparent.getIndex(), child);
+            }
+        }
+
+        @Override
+        public Iterator<SimpleEntry<Character, DAWGNode>> iterator() {
+            return new Iterator<SimpleEntry<Character, DAWGNode>>() {
+                private int current = desc ? children.length - 1 : 0;
+
+                @Override
+                public boolean hasNext() {
+                    return desc ? current >= 0 : current < children.length;
+                }
+
+                @Override
+                public SimpleEntry<Character, DAWGNode> next() {
+                    int index = children[current];
+                    char letter = childLetters[current];
+                    if (desc)
+                        current--;
+                    else
+                        current++;
+                    return new SimpleEntry<Character, DAWGNode>(letter, new CompressedDAWGNodeBytes(CompressedDAWGSetBytes.this, index));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return children.length == 0;
+        }
+
+        @Override
+        public SemiNavigableMap<Character, DAWGNode> descendingMap() {
+            return new OutgoingTransitionsMap(cparent, !desc);
+        }
+    }
+}
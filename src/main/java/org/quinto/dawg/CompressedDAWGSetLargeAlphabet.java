@@ -18,6 +18,50 @@ class CompressedDAWGSetLargeAlphabet extends CompressedDAWGSet {
     
     @Override
     void calculateCachedValues() {
+        createSharedValues();
+    }
+
+    @Override
+    boolean isAcceptNode(int index) {
+        return (outgoingData[index + 1] & CompressedDAWGNode.ACCEPT_NODE_MASK) == CompressedDAWGNode.ACCEPT_NODE_MASK;
+    }
+
+    @Override
+    int getTransitionSetBeginIndex(int index) {
+        return outgoingData[index + 1] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK;
+    }
+
+    @Override
+    int getOutgoingTransitionsSize(int index) {
+        return outgoingData[index + 2];
+    }
+
+    @Override
+    char getLetter(int parentIndex, int index) {
+        return (char)outgoingData[index];
+    }
+
+    @Override
+    char getFirstLetter(int index) {
+        return (char)outgoingData[getTransitionSetBeginIndex(index)];
+    }
+
+    @Override
+    int getTransitionIndex(int index, char letter) {
+        int begin = getTransitionSetBeginIndex(index);
+        int to = begin + outgoingData[index + 2] * OUTGOING_TRANSITION_SIZE_IN_INTS;
+        return binarySearchFirstOccurrence(outgoingData, begin, to, letter, OUTGOING_TRANSITION_SIZE_IN_INTS);
+    }
+
+    @Override
+    void relocateTransition(int data[], int index, int newBegins[]) {
+        if (data[index + 2] > 0)
+            data[index + 1] = (data[index + 1] & CompressedDAWGNode.ACCEPT_NODE_MASK) | newBegins[(data[index + 1] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK) / OUTGOING_TRANSITION_SIZE_IN_INTS];
+    }
+
+    @Override
+    CompressedDAWGSet newInstance() {
+        return new CompressedDAWGSetLargeAlphabet();
     }
 
     @Override
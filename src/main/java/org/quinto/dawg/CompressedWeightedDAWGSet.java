@@ -0,0 +1,68 @@
+package org.quinto.dawg;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Map;
+
+public class CompressedWeightedDAWGSet extends WeightedDAWGSet implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximal score reachable from a node indexed by id of a transition leading to that node.
+     * Only nodes located before the score separator are filled.
+     */
+    private transient int maxScores[];
+
+    CompressedWeightedDAWGSet(CompressedDAWGSet dawg) {
+        super(dawg);
+        calculateMaxScores();
+    }
+
+    public ModifiableWeightedDAWGSet uncompress() {
+        return new ModifiableWeightedDAWGSet(((CompressedDAWGSet)dawg).uncompress());
+    }
+
+    private void calculateMaxScores() {
+        CompressedDAWGSet compressed = (CompressedDAWGSet)dawg;
+        maxScores = new int[compressed.getIndexCapacity() / compressed.getOutgoingTransitionSizeInInts() + 1];
+        fillMaxScores(compressed.getSourceNode(), new BitSet(maxScores.length));
+    }
+
+    private int fillMaxScores(DAWGNode node, BitSet calculated) {
+        int id = node.getId();
+        if (calculated.get(id))
+            return maxScores[id];
+        int ret = Integer.MIN_VALUE;
+        for (Map.Entry<Character, DAWGNode> e : dawg.getOutgoingTransitions(node)) {
+            int score = e.getKey() == SCORE_SEPARATOR ? readScore(e.getValue()) : fillMaxScores(e.getValue(), calculated);
+            if (ret < score)
+                ret = score;
+        }
+        maxScores[id] = ret;
+        calculated.set(id);
+        return ret;
+    }
+
+    @Override
+    int getMaxScore(DAWGNode node) {
+        return maxScores[node.getId()];
+    }
+
+    /**
+     * This method is invoked when the object is read from input stream.
+     * @see Serializable
+     */
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        dawg = (CompressedDAWGSet)ois.readObject();
+        calculateMaxScores();
+    }
+
+    private void writeObject(ObjectOutputStream oos) throws IOException {
+        oos.defaultWriteObject();
+        oos.writeObject(dawg);
+    }
+}
@@ -0,0 +1,104 @@
+package org.quinto.dawg;
+
+/**
+ * Counters collected while a {@link ModifiableDAWGSet} is being built and compressed.
+ * Counters are updated by the thread modifying the set, so they should be read either from that thread
+ * (e.g. in a {@link ModifiableDAWGSet.BuildListener}) or after the building is finished.
+ */
+public class DAWGBuildMetrics {
+    private final ModifiableDAWGSet dawg;
+    long wordsProcessed;
+    long clones;
+    long registerLookups;
+    long registerHits;
+    long minimizationNanos;
+    long compressionNanos;
+
+    DAWGBuildMetrics(ModifiableDAWGSet dawg) {
+        this.dawg = dawg;
+    }
+
+    /**
+     * Returns the quantity of words passed to {@link ModifiableDAWGSet#add} and {@link ModifiableDAWGSet#addAll}.
+     */
+    public long getWordsProcessed() {
+        return wordsProcessed;
+    }
+
+    /**
+     * Returns the quantity of nodes cloned because a new word passed through a confluence node.
+     */
+    public long getClones() {
+        return clones;
+    }
+
+    /**
+     * Returns the quantity of lookups in the register of equivalence classes during minimization.
+     */
+    public long getRegisterLookups() {
+        return registerLookups;
+    }
+
+    /**
+     * Returns the quantity of register lookups that found an equivalent node, i.e. merged a node.
+     */
+    public long getRegisterHits() {
+        return registerHits;
+    }
+
+    /**
+     * Returns the share of register lookups that found an equivalent node or 0 if there were no lookups.
+     */
+    public double getRegisterHitRatio() {
+        return registerLookups == 0L ? 0.0 : (double)registerHits / registerLookups;
+    }
+
+    /**
+     * Returns the current quantity of nodes in the register of equivalence classes.
+     */
+    public int getRegisterSize() {
+        return dawg.getEquivalenceClassCount();
+    }
+
+    /**
+     * Returns the current quantity of transitions.
+     */
+    public int getTransitionCount() {
+        return dawg.getTransitionCount();
+    }
+
+    /**
+     * Returns the current quantity of nodes. Unlike other counters, this one traverses the whole graph.
+     */
+    public int getNodeCount() {
+        return dawg.getNodeCount();
+    }
+
+    public long getMinimizationNanos() {
+        return minimizationNanos;
+    }
+
+    public long getCompressionNanos() {
+        return compressionNanos;
+    }
+
+    /**
+     * Sets all the counters to zero.
+     */
+    public void reset() {
+        wordsProcessed = 0L;
+        clones = 0L;
+        registerLookups = 0L;
+        registerHits = 0L;
+        minimizationNanos = 0L;
+        compressionNanos = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "words: " + wordsProcessed + ", clones: " + clones + ", register lookups: " + registerLookups +
+                ", register hits: " + registerHits + ", register size: " + getRegisterSize() +
+                ", transitions: " + getTransitionCount() + ", minimization ms: " + minimizationNanos / 1000000L +
+                ", compression ms: " + compressionNanos / 1000000L;
+    }
+}
@@ -0,0 +1,474 @@
+package org.quinto.dawg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import org.quinto.dawg.util.SimpleEntry;
+
+/**
+ * A position in an ordered query over strings of a {@link DAWGSet} or keys of a {@link DAWGMap}
+ * for fetching the results page by page.
+ * <p>
+ * A cursor keeps the query and the last fetched string. For a compressed set it also keeps the traversal stack,
+ * i.e. positions of the transitions along the path of that string within their transition sets,
+ * and the {@linkplain DAWGSet#getFingerprint fingerprint} of the set. When the fingerprint matches
+ * and the transitions at the stored positions spell the last string, the next page continues the traversal
+ * from them. Otherwise, e.g. for a modified set or a modifiable one, the next page descends the path
+ * of the last string once and continues from there. Either way the strings of the previous pages
+ * aren't enumerated again and the next page starts right after the last string.
+ * <p>
+ * A cursor can be converted to an opaque token with {@link #toToken} and restored with {@link #fromToken},
+ * e.g. to be passed to a client of a paginated API.
+ */
+public class DAWGCursor {
+    private static final int TOKEN_VERSION = 1;
+    private static final char BASE64[] = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private final String prefix;
+    private final boolean descending;
+    private final String from;
+    private final boolean inclFrom;
+    private final String to;
+    private final boolean inclTo;
+    private String last;
+    private boolean exhausted;
+    private long fingerprint;
+    // Positions of the transitions along the path of the last string in a compressed graph or null.
+    private int path[];
+
+    /**
+     * Creates a cursor positioned before the first result of a query.
+
+     * @param prefix        a prefix or null
+     * @param descending    whether the results should be returned in descending order
+     * @param from          a lower bound or null
+     * @param inclFrom      whether the lower bound is inclusive
+     * @param to            an upper bound or null
+     * @param inclTo        whether the upper bound is inclusive
+     */
+    public DAWGCursor(String prefix, boolean descending, String from, boolean inclFrom, String to, boolean inclTo) {
+        this(prefix == null ? "" : prefix, descending, from, inclFrom, to, inclTo, null, false, 0L, null);
+    }
+
+    private DAWGCursor(String prefix, boolean descending, String from, boolean inclFrom, String to, boolean inclTo, String last, boolean exhausted, long fingerprint, int path[]) {
+        this.prefix = prefix;
+        this.descending = descending;
+        this.from = from;
+        this.inclFrom = inclFrom;
+        this.to = to;
+        this.inclTo = inclTo;
+        this.last = last;
+        this.exhausted = exhausted;
+        this.fingerprint = fingerprint;
+        this.path = path;
+    }
+
+    /**
+     * Fetches the next strings of a set and moves this cursor after them.
+     * Only the returned strings and the following one are traversed.
+
+     * @param dawg      a set
+     * @param limit     a maximal quantity of strings
+     * @return          up to {@code limit} strings
+     */
+    public List<String> next(DAWGSet dawg, int limit) {
+        return fetch(dawg, false, limit);
+    }
+
+    /**
+     * Fetches the next entries of a map and moves this cursor after them.
+     * Bounds and the prefix of this cursor are applied to keys.
+
+     * @param map       a map
+     * @param limit     a maximal quantity of entries
+     * @return          up to {@code limit} entries
+     */
+    public List<Entry<String, String>> next(DAWGMap map, int limit) {
+        List<String> strings = fetch(map.dawg, true, limit);
+        List<Entry<String, String>> entries = new ArrayList<Entry<String, String>>(strings.size());
+        for (String s : strings) {
+            int idx = s.indexOf(AbstractDAWGMap.KEY_VALUE_SEPARATOR);
+            entries.add(new SimpleEntry<String, String>(s.substring(0, idx), s.substring(idx + 1)));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns whether the last fetch has reached the end of the results. Strings added later are not fetched then.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    private List<String> fetch(DAWGSet dawg, boolean map, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        List<String> ret = new ArrayList<String>(Math.min(limit, 64));
+        if (exhausted || limit == 0)
+            return ret;
+        String from = this.from;
+        boolean inclFrom = this.inclFrom;
+        String to = this.to;
+        boolean inclTo = this.inclTo;
+        if (map) {
+            AbstractDAWGMap.checkNotNullAndContainsNoZeros(prefix);
+            // Bounds of keys are converted to bounds of "key\0value" strings as in DAWGMap.subMap.
+            if (from != null) {
+                AbstractDAWGMap.checkNotNullAndContainsNoZeros(from);
+                from += inclFrom ? AbstractDAWGMap.KEY_VALUE_SEPARATOR : AbstractDAWGMap.KEY_VALUE_SEPARATOR_EXCLUSIVE;
+                inclFrom = true;
+            }
+            if (to != null) {
+                AbstractDAWGMap.checkNotNullAndContainsNoZeros(to);
+                to += inclTo ? AbstractDAWGMap.KEY_VALUE_SEPARATOR_EXCLUSIVE : AbstractDAWGMap.KEY_VALUE_SEPARATOR;
+                inclTo = false;
+            }
+        }
+        DAWGSet graph = dawg.getGraph();
+        CompressedDAWGSet compressed = graph instanceof CompressedDAWGSet ? (CompressedDAWGSet)graph : null;
+        boolean utf8 = dawg.isUtf8();
+        String bound = descending ? from : to;
+        String graphBound = toGraph(bound, utf8);
+        if (compressed != null && path != null && (bound == null || graphBound != null) && fingerprint == dawg.getFingerprint()) {
+            Walk walk = Walk.resume(compressed, toGraph(prefix, utf8), descending, graphBound, descending ? inclFrom : inclTo, toGraph(last, utf8), path);
+            if (walk != null) {
+                String s;
+                while (ret.size() < limit && (s = walk.next()) != null)
+                    ret.add(utf8 ? Utf8DAWGSet.decode(s) : s);
+                if (ret.isEmpty())
+                    exhausted = true;
+                else {
+                    last = ret.get(ret.size() - 1);
+                    path = walk.getPath();
+                    exhausted = ret.size() < limit || walk.next() == null;
+                }
+                return ret;
+            }
+        }
+        // The last fetched string is within the bounds, so it replaces the bound it was approaching.
+        if (last != null) {
+            if (descending) {
+                to = last;
+                inclTo = false;
+            } else {
+                from = last;
+                inclFrom = false;
+            }
+        }
+        Iterator<String> it = dawg.getStrings(prefix, null, null, descending, from, inclFrom, to, inclTo).iterator();
+        while (ret.size() < limit && it.hasNext())
+            ret.add(it.next());
+        if (!ret.isEmpty()) {
+            last = ret.get(ret.size() - 1);
+            String graphLast = toGraph(last, utf8);
+            path = compressed == null || graphLast == null ? null : Walk.locate(compressed, graphLast);
+            if (path != null)
+                fingerprint = dawg.getFingerprint();
+        }
+        exhausted = !it.hasNext();
+        return ret;
+    }
+
+    /**
+     * Converts a string to the string stored in the graph of a set.
+
+     * @return      the converted string or null if the string is null or can't be stored in the graph
+     */
+    private static String toGraph(String s, boolean utf8) {
+        return s == null || !utf8 ? s : Utf8DAWGSet.encode(s);
+    }
+
+    /**
+     * A traversal of strings of a compressed graph in the order of a query. It follows transitions by indexes,
+     * so it moves to the next string in constant time on average.
+     */
+    private static class Walk {
+        private final CompressedDAWGSet graph;
+        // The depth of the node of the prefix: siblings of the transitions above it are out of the query.
+        private final int minDepth;
+        private final boolean descending;
+        // The bound which the traversal approaches or null.
+        private final String bound;
+        private final boolean inclBound;
+        private final StringBuilder sb = new StringBuilder();
+        // Indexes of the transitions along the current string, their positions and sizes of their transition sets.
+        // The element 0 is the transition to the source node.
+        private int indexes[];
+        private int positions[];
+        private int sizes[];
+        private int depth;
+
+        private Walk(CompressedDAWGSet graph, int minDepth, boolean descending, String bound, boolean inclBound, int capacity) {
+            this.graph = graph;
+            this.minDepth = minDepth;
+            this.descending = descending;
+            this.bound = bound;
+            this.inclBound = inclBound;
+            indexes = new int[capacity + 1];
+            positions = new int[capacity + 1];
+            sizes = new int[capacity + 1];
+            indexes[0] = DAWGNode.START;
+        }
+
+        /**
+         * Restores a traversal positioned at the last string. Positions are checked against the graph
+         * and the letters of the string, so stale positions never lead to a wrong string.
+
+         * @return      the traversal or null if the positions don't lead to the last string in the graph
+         */
+        static Walk resume(CompressedDAWGSet graph, String prefix, boolean descending, String bound, boolean inclBound, String last, int path[]) {
+            if (prefix == null || last == null || path.length != last.length() || !last.startsWith(prefix))
+                return null;
+            Walk ret = new Walk(graph, prefix.length(), descending, bound, inclBound, path.length);
+            for (int i = 0; i < path.length; i++) {
+                int parent = ret.indexes[i];
+                int size = graph.getOutgoingTransitionsSize(parent);
+                if (path[i] < 0 || path[i] >= size)
+                    return null;
+                int index = graph.getTransitionIndexAt(parent, path[i]);
+                if (graph.getLetter(parent, index) != last.charAt(i))
+                    return null;
+                ret.push(index, path[i], size, last.charAt(i));
+            }
+            return graph.isAcceptNode(ret.indexes[ret.depth]) ? ret : null;
+        }
+
+        /**
+         * Returns positions of the transitions along the path of a string or null if there is no such path.
+         */
+        static int[] locate(CompressedDAWGSet graph, String s) {
+            int ret[] = new int[s.length()];
+            int index = DAWGNode.START;
+            for (int i = 0; i < ret.length; i++) {
+                int child = graph.getTransitionIndex(index, s.charAt(i));
+                if (child < 0)
+                    return null;
+                ret[i] = graph.getTransitionPosition(index, child);
+                index = child;
+            }
+            return ret;
+        }
+
+        /**
+         * Returns positions of the transitions along the current string.
+         */
+        int[] getPath() {
+            return Arrays.copyOfRange(positions, 1, depth + 1);
+        }
+
+        /**
+         * Moves to the next string of the query.
+
+         * @return      the string or null if there are no more strings
+         */
+        String next() {
+            if (descending ? !moveBackward() : !moveForward())
+                return null;
+            String ret = sb.toString();
+            if (bound != null) {
+                int cmp = ret.compareTo(bound);
+                if (descending ? cmp < 0 || cmp == 0 && !inclBound : cmp > 0 || cmp == 0 && !inclBound)
+                    return null;
+            }
+            return ret;
+        }
+
+        private boolean moveForward() {
+            // Strings starting with the current one follow it.
+            if (graph.getOutgoingTransitionsSize(indexes[depth]) > 0)
+                pushChild(false);
+            else {
+                while (true) {
+                    if (depth == minDepth)
+                        return false;
+                    int position = positions[depth] + 1;
+                    if (position < sizes[depth]) {
+                        replace(graph.getNextTransitionIndex(indexes[depth]), position);
+                        break;
+                    }
+                    pop();
+                }
+            }
+            // The least string of a subtree is the shortest one along its first transitions.
+            while (!graph.isAcceptNode(indexes[depth]))
+                pushChild(false);
+            return true;
+        }
+
+        private boolean moveBackward() {
+            while (depth > minDepth) {
+                int position = positions[depth] - 1;
+                if (position >= 0) {
+                    replace(graph.getTransitionIndexAt(indexes[depth - 1], position), position);
+                    // The greatest string of a subtree is the longest one along its last transitions.
+                    while (graph.getOutgoingTransitionsSize(indexes[depth]) > 0)
+                        pushChild(true);
+                    return true;
+                }
+                // Strings of a node precede strings of its subtrees in ascending order, so they follow them here.
+                pop();
+                if (graph.isAcceptNode(indexes[depth]))
+                    return true;
+            }
+            return false;
+        }
+
+        private void pushChild(boolean lastChild) {
+            int parent = indexes[depth];
+            int size = graph.getOutgoingTransitionsSize(parent);
+            int position = lastChild ? size - 1 : 0;
+            int index = lastChild ? graph.getTransitionIndexAt(parent, position) : graph.getTransitionSetBeginIndex(parent);
+            push(index, position, size, graph.getLetter(parent, index));
+        }
+
+        private void push(int index, int position, int size, char letter) {
+            if (++depth == indexes.length) {
+                indexes = Arrays.copyOf(indexes, depth * 2);
+                positions = Arrays.copyOf(positions, depth * 2);
+                sizes = Arrays.copyOf(sizes, depth * 2);
+            }
+            indexes[depth] = index;
+            positions[depth] = position;
+            sizes[depth] = size;
+            sb.append(letter);
+        }
+
+        private void replace(int index, int position) {
+            indexes[depth] = index;
+            positions[depth] = position;
+            sb.setCharAt(depth - 1, graph.getLetter(indexes[depth - 1], index));
+        }
+
+        private void pop() {
+            sb.setLength(--depth);
+        }
+    }
+
+    /**
+     * Converts this cursor to a URL-safe string.
+     */
+    public String toToken() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        try {
+            dos.writeByte(TOKEN_VERSION);
+            dos.writeByte((descending ? 1 : 0) | (inclFrom ? 2 : 0) | (inclTo ? 4 : 0) | (exhausted ? 8 : 0));
+            writeString(dos, prefix);
+            writeString(dos, from);
+            writeString(dos, to);
+            writeString(dos, last);
+            dos.writeLong(fingerprint);
+            if (path == null)
+                dos.writeInt(-1);
+            else {
+                dos.writeInt(path.length);
+                for (int position : path)
+                    dos.writeInt(position);
+            }
+            dos.flush();
+        } catch (IOException e) {
+            // Never thrown by ByteArrayOutputStream.
+            throw new IllegalStateException(e);
+        }
+        return encode(baos.toByteArray());
+    }
+
+    /**
+     * Restores a cursor from a string returned by {@link #toToken}.
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static DAWGCursor fromToken(String token) {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(decode(token)));
+        try {
+            if (dis.readByte() != TOKEN_VERSION)
+                throw new IllegalArgumentException("Unsupported token version");
+            int flags = dis.readByte();
+            String prefix = readString(dis);
+            String from = readString(dis);
+            String to = readString(dis);
+            String last = readString(dis);
+            long fingerprint = dis.readLong();
+            int length = dis.readInt();
+            int path[] = null;
+            if (length >= 0) {
+                if (length > dis.available() / 4)
+                    throw new IllegalArgumentException("Malformed token");
+                path = new int[length];
+                for (int i = 0; i < length; i++)
+                    path[i] = dis.readInt();
+            }
+            if (prefix == null || dis.read() >= 0)
+                throw new IllegalArgumentException("Malformed token");
+            return new DAWGCursor(prefix, (flags & 1) != 0, from, (flags & 2) != 0, to, (flags & 4) != 0, last, (flags & 8) != 0, fingerprint, path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed token", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        if (s == null)
+            dos.writeInt(-1);
+        else {
+            dos.writeInt(s.length());
+            dos.writeChars(s);
+        }
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length < 0)
+            return null;
+        // The remaining bytes limit the length, so a malformed token can't make us allocate too much.
+        if (length > dis.available() / 2)
+            throw new IllegalArgumentException("Malformed token");
+        char chars[] = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = dis.readChar();
+        return new String(chars);
+    }
+
+    // Base64 with the URL and filename safe alphabet and without padding.
+    private static String encode(byte data[]) {
+        StringBuilder sb = new StringBuilder((data.length * 4 + 2) / 3);
+        for (int i = 0; i < data.length; i += 3) {
+            int bits = (data[i] & 0xFF) << 16;
+            if (i + 1 < data.length)
+                bits |= (data[i + 1] & 0xFF) << 8;
+            if (i + 2 < data.length)
+                bits |= data[i + 2] & 0xFF;
+            int chars = Math.min(4, (data.length - i) * 4 / 3 + 1);
+            for (int j = 0; j < chars; j++)
+                sb.append(BASE64[(bits >>> (18 - 6 * j)) & 63]);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] decode(String token) {
+        if (token.length() % 4 == 1)
+            throw new IllegalArgumentException("Malformed token");
+        byte ret[] = new byte[token.length() * 3 / 4];
+        int bits = 0;
+        int bitCount = 0;
+        int pos = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            int value = c >= 'A' && c <= 'Z' ? c - 'A' : c >= 'a' && c <= 'z' ? c - 'a' + 26 : c >= '0' && c <= '9' ? c - '0' + 52 : c == '-' ? 62 : c == '_' ? 63 : -1;
+            if (value < 0)
+                throw new IllegalArgumentException("Malformed token");
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                ret[pos++] = (byte)(bits >>> bitCount);
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,380 @@
+package org.quinto.dawg;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.quinto.dawg.util.LookaheadIterator;
+
+/**
+ * Loads words separated by delimiters from a file or a channel into a {@link ModifiableDAWGSet}.
+ * Bytes are decoded on a separate producer thread straight from a memory-mapped file region
+ * (or from a large direct buffer when reading a channel or a gzipped file).
+ * Decoded words are handed to the calling thread in batches, and the calling thread adds all of them
+ * in a single {@link ModifiableDAWGSet#addAll(Iterable)} pass, so sorted input uses the incremental construction.
+ */
+public class DAWGLoader {
+    private static final String END_OF_INPUT[] = new String[0];
+    private static final int MAPPED_REGION_SIZE = 64 << 20;
+    private static final int DIRECT_BUFFER_SIZE = 1 << 20;
+    private static final int CHAR_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Receives progress notifications from the calling thread of {@link DAWGLoader#load}.
+     */
+    public interface ProgressListener {
+        /**
+         * @param bytes             quantity of bytes read so far (compressed bytes in case of gzip)
+         * @param lines             quantity of words added so far
+         * @param bytesPerSecond    average reading speed
+         * @param linesPerSecond    average adding speed
+         */
+        public void progress(long bytes, long lines, double bytesPerSecond, double linesPerSecond);
+    }
+
+    private final Charset charset;
+    private boolean gzip;
+    private boolean trim;
+    private String delimiters = "\n\r";
+    private int batchSize = 1024;
+    private int queueCapacity = 16;
+    private ProgressListener progressListener;
+    private long progressIntervalNanos;
+
+    public DAWGLoader(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Sets whether the input is compressed with gzip. Default is false.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Sets whether leading and trailing whitespaces of words should be removed. Default is false.
+     * Empty words are always skipped.
+     */
+    public void setTrim(boolean trim) {
+        this.trim = trim;
+    }
+
+    /**
+     * Sets the chars each of which separates words. Default is line breaks.
+     */
+    public void setDelimiters(String delimiters) {
+        if (delimiters.isEmpty())
+            throw new IllegalArgumentException("No delimiters");
+        this.delimiters = delimiters;
+    }
+
+    /**
+     * Sets the quantity of words handed from the decoding thread to the calling thread at once
+     * and the maximal quantity of batches waiting to be added.
+     */
+    public void setBatchSize(int batchSize, int queueCapacity) {
+        if (batchSize <= 0 || queueCapacity <= 0)
+            throw new IllegalArgumentException("Sizes should be positive");
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets a listener notified at most once per a given interval and once at the end of loading.
+     */
+    public void setProgressListener(ProgressListener progressListener, long intervalMillis) {
+        this.progressListener = progressListener;
+        this.progressIntervalNanos = intervalMillis * 1000000L;
+    }
+
+    /**
+     * Adds all the words of a given file to a given set.
+
+     * @return true if and only if the set was changed as a result of this call
+     * @throws IOException      if a file cannot be opened, read or decoded
+     */
+    public boolean load(ModifiableDAWGSet dawg, File file) throws IOException {
+        FileInputStream fis = null;
+        IOException ex = null;
+        boolean ret = false;
+        try {
+            fis = new FileInputStream(file);
+            ret = load(dawg, fis.getChannel());
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException e) {
+                    ex = e;
+                }
+            }
+        }
+        if (ex != null)
+            throw ex;
+        return ret;
+    }
+
+    /**
+     * Adds all the words read from a given channel to a given set. The channel is not closed.
+
+     * @return true if and only if the set was changed as a result of this call
+     * @throws IOException      if a channel cannot be read or decoded
+     */
+    public boolean load(ModifiableDAWGSet dawg, ReadableByteChannel channel) throws IOException {
+        final Producer producer = new Producer(channel);
+        Thread thread = new Thread(producer, "DAWGLoader");
+        thread.setDaemon(true);
+        thread.start();
+        final long start = System.nanoTime();
+        final long lines[] = new long[1];
+        boolean ret;
+        try {
+            ret = dawg.addAll(new Iterable<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new LookaheadIterator<String>() {
+                        private String batch[] = new String[0];
+                        private int position;
+                        private long lastProgress = start;
+
+                        @Override
+                        public String nextElement() {
+                            while (position == batch.length) {
+                                if (batch == END_OF_INPUT)
+                                    throw NO_SUCH_ELEMENT_EXCEPTION;
+                                batch = producer.take();
+                                position = 0;
+                                if (progressListener != null) {
+                                    long now = System.nanoTime();
+                                    if (now - lastProgress >= progressIntervalNanos) {
+                                        lastProgress = now;
+                                        notifyProgress(producer.bytes.get(), lines[0], now - start);
+                                    }
+                                }
+                            }
+                            lines[0]++;
+                            return batch[position++];
+                        }
+                    };
+                }
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException && (e.getCause() == producer.failure || e.getCause() instanceof InterruptedIOException))
+                throw (IOException)e.getCause();
+            throw e;
+        } finally {
+            thread.interrupt();
+        }
+        if (progressListener != null)
+            notifyProgress(producer.bytes.get(), lines[0], System.nanoTime() - start);
+        return ret;
+    }
+
+    private void notifyProgress(long bytes, long lines, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        progressListener.progress(bytes, lines, bytes / seconds, lines / seconds);
+    }
+
+    private class Producer implements Runnable {
+        private final ReadableByteChannel channel;
+        private final BlockingQueue<String[]> queue = new ArrayBlockingQueue<String[]>(queueCapacity);
+        private final CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        private final StringBuilder word = new StringBuilder();
+        private final AtomicLong bytes = new AtomicLong();
+        private String batch[] = new String[batchSize];
+        private int batchLength;
+        private volatile Throwable failure;
+
+        public Producer(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Returns the next batch of words; invoked by the calling thread.
+         */
+        public String[] take() {
+            try {
+                String ret[] = queue.take();
+                if (ret == END_OF_INPUT && failure != null)
+                    throw failure instanceof RuntimeException ? (RuntimeException)failure : new RuntimeException(failure);
+                return ret;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(new InterruptedIOException());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    if (!gzip && channel instanceof FileChannel)
+                        readMapped((FileChannel)channel);
+                    else
+                        read(gzip ? Channels.newChannel(new GZIPInputStream(Channels.newInputStream(new CountingChannel(channel)))) : new CountingChannel(channel));
+                    flushBatch();
+                } catch (InterruptedException e) {
+                    // The calling thread stopped reading.
+                    return;
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                queue.put(END_OF_INPUT);
+            } catch (InterruptedException e) {
+                // The calling thread stopped reading.
+            }
+        }
+
+        private void readMapped(FileChannel fileChannel) throws IOException, InterruptedException {
+            long size = fileChannel.size();
+            long start = fileChannel.position();
+            long offset = start;
+            while (offset < size) {
+                long regionSize = Math.min(MAPPED_REGION_SIZE, size - offset);
+                MappedByteBuffer region = fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, regionSize);
+                boolean last = offset + regionSize == size;
+                decode(region, last, offset - start);
+                // Incomplete trailing bytes of a char are decoded as a part of the next region.
+                int consumed = region.position();
+                if (consumed == 0 && !last)
+                    throw new IOException("Cannot decode a char at offset " + offset);
+                offset += consumed;
+                if (last)
+                    break;
+            }
+            finishDecoding();
+        }
+
+        private void read(ReadableByteChannel source) throws IOException, InterruptedException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                decode(buffer, false, -1);
+                buffer.compact();
+            }
+            buffer.flip();
+            decode(buffer, true, -1);
+            finishDecoding();
+        }
+
+        /**
+         * @param base  the quantity of bytes read before a given mapped region, whose progress is counted as it is decoded,
+         *              or -1 if bytes are counted as they are read from a channel
+         */
+        private void decode(ByteBuffer in, boolean endOfInput, long base) throws IOException, InterruptedException {
+            while (true) {
+                CoderResult result = decoder.decode(in, chars, endOfInput);
+                if (result.isError())
+                    result.throwException();
+                // Words of the decoded chars may wait for a place in the queue, so progress is published before.
+                if (base >= 0)
+                    bytes.set(base + in.position());
+                drainChars();
+                if (result.isUnderflow())
+                    break;
+            }
+        }
+
+        private void finishDecoding() throws IOException, InterruptedException {
+            while (true) {
+                CoderResult result = decoder.flush(chars);
+                if (result.isError())
+                    result.throwException();
+                drainChars();
+                if (result.isUnderflow())
+                    break;
+            }
+            addWord();
+        }
+
+        private void drainChars() throws InterruptedException {
+            chars.flip();
+            while (chars.hasRemaining()) {
+                char c = chars.get();
+                if (delimiters.indexOf(c) >= 0)
+                    addWord();
+                else
+                    word.append(c);
+            }
+            chars.clear();
+        }
+
+        private void addWord() throws InterruptedException {
+            int from = 0;
+            int to = word.length();
+            if (trim) {
+                while (from < to && Character.isWhitespace(word.charAt(from)))
+                    from++;
+                while (to > from && Character.isWhitespace(word.charAt(to - 1)))
+                    to--;
+            }
+            if (from < to) {
+                batch[batchLength++] = word.substring(from, to);
+                if (batchLength == batch.length)
+                    flushBatch();
+            }
+            word.setLength(0);
+        }
+
+        private void flushBatch() throws InterruptedException {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (batchLength == 0)
+                return;
+            String ret[] = batch;
+            if (batchLength < ret.length) {
+                ret = new String[batchLength];
+                System.arraycopy(batch, 0, ret, 0, batchLength);
+            }
+            queue.put(ret);
+            batch = new String[batchSize];
+            batchLength = 0;
+        }
+
+        /**
+         * Counts bytes read from the underlying channel.
+         */
+        private class CountingChannel implements ReadableByteChannel {
+            private final ReadableByteChannel delegate;
+
+            public CountingChannel(ReadableByteChannel delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int ret = delegate.read(dst);
+                if (ret > 0)
+                    bytes.addAndGet(ret);
+                return ret;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return delegate.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+        }
+    }
+}
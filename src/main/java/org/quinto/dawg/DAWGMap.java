@@ -1,12 +1,15 @@
 package org.quinto.dawg;
 
+import java.nio.CharBuffer;
 import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
@@ -33,7 +36,92 @@ public class DAWGMap extends AbstractDAWGMap<String> {
     @Override
     public String get(Object key) {
         checkNotNullAndContainsNoZeros(key);
-        return valueOfStringEntry(getFirstElement(dawg.getStringsStartingWith((String)key + KEY_VALUE_SEPARATOR)), key);
+        return dawg.getFirstSuffix((String)key, KEY_VALUE_SEPARATOR);
+    }
+    
+    /**
+     * Returns the value of a given key without converting it to a String.
+     */
+    public String get(CharSequence key) {
+        checkNotNullAndContainsNoZeros(key);
+        return dawg.getFirstSuffix(key, KEY_VALUE_SEPARATOR);
+    }
+    
+    /**
+     * Returns the value of a key given as a range of a char array.
+     */
+    public String get(char key[], int offset, int length) {
+        return get(CharBuffer.wrap(key, offset, length));
+    }
+
+    /**
+     * Returns the values of given keys.
+     * Consecutive keys share the traversal of their common prefix, so a sorted batch of keys
+     * with long common prefixes is looked up much faster than by separate calls of {@link #get}.
+     
+     * @param keys      keys whose values are to be returned
+     * @param sort      whether this method should process the keys in sorted order; the given array is not changed
+     * @return          values indexed as the keys or nulls for absent keys
+     */
+    public String[] getAll(String keys[], boolean sort) {
+        for (String key : keys)
+            checkNotNullAndContainsNoZeros(key);
+        return dawg.getFirstSuffixes(keys, KEY_VALUE_SEPARATOR, sort);
+    }
+    
+    /**
+     * Returns the values of given keys processing them in the given order.
+     * @see #getAll(String[], boolean)
+     */
+    public String[] getAll(String keys[]) {
+        return getAll(keys, false);
+    }
+
+    /**
+     * Returns the entries whose keys fold to the same chars as a given key, e.g. all the stored casings of a key.
+     * Entries are returned in ascending order of keys.
+     */
+    public Iterable<Entry<String, String>> getEntriesFolded(String key, CharFolding folding) {
+        checkNotNullAndContainsNoZeros(key);
+        List<Entry<String, String>> ret = new ArrayList<Entry<String, String>>();
+        for (String k : dawg.getFoldedPrefixes(key, folding, false)) {
+            String value = dawg.getFirstSuffix(k, KEY_VALUE_SEPARATOR);
+            if (value != null)
+                ret.add(new MapEntry(k, value));
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * Returns the entries whose keys have a prefix folding to the same chars as a given prefix,
+     * in ascending order of keys.
+     * @see DAWGSet#getStringsStartingWithFolded
+     */
+    public Iterable<Entry<String, String>> getEntriesStartingWithFolded(String keyPrefix, CharFolding folding) {
+        checkNotNullAndContainsNoZeros(keyPrefix);
+        final Iterable<String> strings = dawg.getStringsStartingWithFolded(keyPrefix, folding);
+        return new Iterable<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                final Iterator<String> it = strings.iterator();
+                return new Iterator<Entry<String, String>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        return entryOfStringEntry(it.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
     }
 
     @Override
@@ -141,7 +229,7 @@ public class DAWGMap extends AbstractDAWGMap<String> {
 
     @Override
     public NavigableMap<String, String> subMap(String fromKey, boolean fromInclusive, String toKey, boolean toInclusive) {
-        if (fromKey.compareTo(toKey) > 0)
+        if (dawg.compare(fromKey, toKey) > 0)
             throw new IllegalArgumentException("fromKey > toKey");
         if (fromInclusive && fromKey.isEmpty())
             fromKey = null;
@@ -167,7 +255,7 @@ public class DAWGMap extends AbstractDAWGMap<String> {
 
     @Override
     public NavigableMap<String, String> subMap(String fromKey, String toKey) {
-        if (fromKey.compareTo(toKey) > 0)
+        if (dawg.compare(fromKey, toKey) > 0)
             throw new IllegalArgumentException("fromKey > toKey");
         if (fromKey.isEmpty())
             fromKey = null;
@@ -666,7 +754,7 @@ public class DAWGMap extends AbstractDAWGMap<String> {
 
         @Override
         public NavigableMap<String, String> subMap(String fromKey, boolean fromInclusive, String toKey, boolean toInclusive) {
-            if (fromKey.compareTo(toKey) > 0)
+            if (dawg.compare(fromKey, toKey) > 0)
                 throw new IllegalArgumentException("fromKey > toKey");
             if (fromInclusive && fromKey.isEmpty())
                 fromKey = null;
@@ -692,7 +780,7 @@ public class DAWGMap extends AbstractDAWGMap<String> {
 
         @Override
         public SortedMap<String, String> subMap(String fromKey, String toKey) {
-            if (fromKey.compareTo(toKey) > 0)
+            if (dawg.compare(fromKey, toKey) > 0)
                 throw new IllegalArgumentException("fromKey > toKey");
             if (fromKey.isEmpty())
                 fromKey = null;
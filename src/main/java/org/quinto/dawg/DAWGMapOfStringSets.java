@@ -17,10 +17,9 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import org.quinto.dawg.util.ExtraMethodsMap;
 import org.quinto.dawg.util.Objects;
+import org.quinto.dawg.util.SimpleEntry;
 
 class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
-    private transient Integer size;
-    
     DAWGMapOfStringSets() {
     }
     
@@ -30,16 +29,7 @@ class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
 
     @Override
     public int size() {
-        if (size == null) {
-            int s = 0;
-            for (Iterator<String> it = DAWGMapOfStringSets.this.uniqueKeysIterator(false); it.hasNext(); it.next())
-                s++;
-            if (dawg.isImmutable())
-                size = s;
-            else
-                return s;
-        }
-        return size;
+        return dawg.getKeyCount();
     }
     
     public int flatSize() {
@@ -77,12 +67,12 @@ class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
     @Override
     public Set<String> get(Object key) {
         checkNotNullAndContainsNoZeros(key);
-        return new ValuesSetFromIterable(dawg.getStringsStartingWith((String)key + KEY_VALUE_SEPARATOR), (String)key);
+        return new ValuesSetFromIterable(dawg.getStringsStartingWith((String)key + KEY_VALUE_SEPARATOR), (String)key, true);
     }
 
     private Set<String> get(Object key, boolean desc) {
         checkNotNullAndContainsNoZeros(key);
-        return new ValuesSetFromIterable(dawg.getStrings((String)key + KEY_VALUE_SEPARATOR, null, null, desc, null, false, null, false), (String)key);
+        return new ValuesSetFromIterable(dawg.getStrings((String)key + KEY_VALUE_SEPARATOR, null, null, desc, null, false, null, false), (String)key, true);
     }
 
     @Override
@@ -189,33 +179,30 @@ class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
                 }
             });
         } else {
-            put(key, (String)value);
-            return dawg.addAll(new Iterable<String>() {
+            boolean ret = put(key, (String)value);
+            final Iterator<Entry<String, String>> stringEntryIt = new Iterator<Entry<String, String>>() {
                 @Override
-                public Iterator<String> iterator() {
-                    return new Iterator<String>() {
-                        @Override
-                        public String next() {
-                            Entry e = (Entry)entryIt.next();
-                            String key = (String)e.getKey();
-                            checkNotNullAndContainsNoZeros(key);
-                            String value = (String)e.getValue();
-                            checkNotNullAndContainsNoZeros(value);
-                            return key + KEY_VALUE_SEPARATOR + value;
-                        }
+                public Entry<String, String> next() {
+                    Entry<?, ?> e = (Entry<?, ?>)entryIt.next();
+                    return new SimpleEntry<String, String>((String)e.getKey(), (String)e.getValue());
+                }
 
-                        @Override
-                        public boolean hasNext() {
-                            return entryIt.hasNext();
-                        }
+                @Override
+                public boolean hasNext() {
+                    return entryIt.hasNext();
+                }
 
-                        @Override
-                        public void remove() {
-                            throw new UnsupportedOperationException();
-                        }
-                    };
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
                 }
-            });
+            };
+            return dawg.addAll(new Iterable<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return stringEntries(stringEntryIt);
+                }
+            }) || ret;
         }
     }
     
@@ -586,15 +573,23 @@ class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
     private class ValuesSetFromIterable extends AbstractSet<String> implements Set<String> {
         private final Iterable<String> values;
         private final String key;
+        
+        /**
+         * True if values are not restricted by a range, so that they can be looked up directly in the DAWG.
+         */
+        private final boolean direct;
         private int size = -1;
         
-        public ValuesSetFromIterable(Iterable<String> values, String key) {
+        public ValuesSetFromIterable(Iterable<String> values, String key, boolean direct) {
             this.values = values;
             this.key = key;
+            this.direct = direct;
         }
 
         @Override
         public int size() {
+            if (direct)
+                return dawg.countStringsStartingWith(key, KEY_VALUE_SEPARATOR);
             if (size < 0) {
                 int s = 0;
                 for (String value : values)
@@ -609,7 +604,17 @@ class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
 
         @Override
         public boolean isEmpty() {
-            return size < 0 ? !values.iterator().hasNext() : size == 0;
+            if (size >= 0)
+                return size == 0;
+            return direct ? !dawg.containsStringsStartingWith(key, KEY_VALUE_SEPARATOR) : !values.iterator().hasNext();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!direct)
+                return super.contains(o);
+            checkNotNullAndContainsNoZeros(o);
+            return dawg.contains(key + KEY_VALUE_SEPARATOR + o);
         }
 
         @Override
@@ -1524,7 +1529,7 @@ class DAWGMapOfStringSets extends AbstractDAWGMap<Set<String>> {
         @Override
         public Set<String> get(Object key) {
             checkNotNullAndContainsNoZeros(key);
-            return new ValuesSetFromIterable(((StringsFilter)delegate).getStringsStartingWith((String)key + KEY_VALUE_SEPARATOR), (String)key);
+            return new ValuesSetFromIterable(((StringsFilter)delegate).getStringsStartingWith((String)key + KEY_VALUE_SEPARATOR), (String)key, false);
         }
 
         @Override
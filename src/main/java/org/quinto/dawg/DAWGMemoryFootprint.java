@@ -0,0 +1,156 @@
+package org.quinto.dawg;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An estimation of memory retained by a DAWG with a breakdown by components.
+ * Sizes are estimated for a 64-bit JVM with compressed references: 12 bytes of an object header,
+ * 16 bytes of an array header, 4 bytes per reference and objects aligned by 8 bytes.
+ * Boxed chars and integers from the JVM caches are considered free.
+ */
+public class DAWGMemoryFootprint {
+    public enum Component {
+        /**
+         * Outgoing transitions: arrays of a compressed DAWG, map entries of a modifiable one.
+         */
+        OUTGOING_DATA,
+        /**
+         * Incoming transitions or a suffix index used for suffix search.
+         */
+        INCOMING_DATA,
+        /**
+         * The alphabet and its indexes.
+         */
+        LETTERS,
+        /**
+         * Node objects themselves.
+         */
+        NODES,
+        /**
+         * Empty {@link java.util.TreeMap} objects backing the transitions of nodes.
+         */
+        TREE_MAPS,
+        /**
+         * The register of equivalence classes of a modifiable DAWG.
+         */
+        REGISTER,
+        /**
+         * Lazily calculated values: hash codes, word counts, rank offsets.
+         */
+        CACHES
+    }
+
+    static final int OBJECT_HEADER_BYTES = 12;
+    static final int ARRAY_HEADER_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+    static final int BOXED_BYTES = 16;
+    static final int TREE_MAP_BYTES = 48;
+    static final int TREE_MAP_ENTRY_BYTES = 40;
+    static final int HASH_MAP_BYTES = 48;
+    static final int HASH_MAP_ENTRY_BYTES = 32;
+
+    private final Map<Component, Long> bytes = new EnumMap<Component, Long>(Component.class);
+    private int fanOutHistogram[] = new int[0];
+    private long rawStringBytes;
+
+    DAWGMemoryFootprint() {
+        for (Component component : Component.values())
+            bytes.put(component, 0L);
+    }
+
+    void add(Component component, long size) {
+        bytes.put(component, bytes.get(component) + size);
+    }
+
+    void addNodeFanOut(int fanOut) {
+        if (fanOut >= fanOutHistogram.length) {
+            int newHistogram[] = new int[fanOut + 1];
+            System.arraycopy(fanOutHistogram, 0, newHistogram, 0, fanOutHistogram.length);
+            fanOutHistogram = newHistogram;
+        }
+        fanOutHistogram[fanOut]++;
+    }
+
+    void setRawStringBytes(long rawStringBytes) {
+        this.rawStringBytes = rawStringBytes;
+    }
+
+    static long align(long size) {
+        return (size + 7L) & ~7L;
+    }
+
+    static long arrayBytes(int length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + (long)length * elementBytes);
+    }
+
+    static long boxedCharBytes(char c) {
+        return c < 128 ? 0L : BOXED_BYTES;
+    }
+
+    static long boxedIntBytes(int i) {
+        return i >= -128 && i < 128 ? 0L : BOXED_BYTES;
+    }
+
+    /**
+     * Estimates a {@link java.util.HashMap} with a given quantity of entries, excluding keys and values.
+     */
+    static long hashMapBytes(int size) {
+        int capacity = 16;
+        while (capacity * 3 < size * 4)
+            capacity <<= 1;
+        return HASH_MAP_BYTES + (size == 0 ? 0L : arrayBytes(capacity, REFERENCE_BYTES)) + (long)size * HASH_MAP_ENTRY_BYTES;
+    }
+
+    public long getBytes(Component component) {
+        return bytes.get(component);
+    }
+
+    public long getTotalBytes() {
+        long ret = 0L;
+        for (long size : bytes.values())
+            ret += size;
+        return ret;
+    }
+
+    /**
+     * Returns estimated sizes of all the components in bytes.
+     */
+    public Map<Component, Long> getBreakdown() {
+        return Collections.unmodifiableMap(bytes);
+    }
+
+    /**
+     * Returns quantities of distinct nodes indexed by the quantity of their outgoing transitions.
+     */
+    public int[] getFanOutHistogram() {
+        return fanOutHistogram.clone();
+    }
+
+    /**
+     * Returns the size of all the words of a DAWG as UTF-16 chars, i.e. two bytes per char.
+     */
+    public long getRawStringBytes() {
+        return rawStringBytes;
+    }
+
+    /**
+     * Returns the ratio of the raw size of words to the estimated size of a DAWG.
+     * Values greater than 1 mean that a DAWG is smaller than its words.
+     */
+    public double getCompressionRatio() {
+        long total = getTotalBytes();
+        return total == 0L ? 0.0 : (double)rawStringBytes / total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("total: ").append(getTotalBytes());
+        for (Map.Entry<Component, Long> e : bytes.entrySet())
+            sb.append(", ").append(e.getKey().name().toLowerCase()).append(": ").append(e.getValue());
+        sb.append(", raw strings: ").append(rawStringBytes);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,289 @@
+package org.quinto.dawg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import org.quinto.dawg.util.Objects;
+import org.quinto.dawg.util.SimpleEntry;
+
+/**
+ * A bounded cache of results of prefix queries over a {@link DAWGSet} or keys of a {@link DAWGMap}.
+ * It keeps the first results of up to a given quantity of distinct queries and evicts the least recently used
+ * query when it's full. The cache is cleared automatically when the underlying {@link ModifiableDAWGSet} changes.
+ * <p>
+ * The cache may be shared by concurrent readers if the underlying set is safe for concurrent reads
+ * (e.g. it's a {@link CompressedDAWGSet}). A query missing in the cache is executed outside of the lock,
+ * so two threads may execute the same query at once; the later result replaces the earlier one.
+ */
+public class DAWGQueryCache {
+    private final DAWGSet dawg;
+    private final boolean map;
+    private final int maxResults;
+    private final LinkedHashMap<Query, Object> results;
+    private int modificationCount;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a cache of queries over strings of a given set.
+
+     * @param dawg          a set
+     * @param capacity      a maximal quantity of cached queries
+     * @param maxResults    a maximal quantity of strings returned by each query
+     */
+    public DAWGQueryCache(DAWGSet dawg, int capacity, int maxResults) {
+        this(dawg, false, capacity, maxResults);
+    }
+
+    /**
+     * Creates a cache of queries over keys of a given map.
+
+     * @param map           a map
+     * @param capacity      a maximal quantity of cached queries
+     * @param maxResults    a maximal quantity of entries returned by each query
+     */
+    public DAWGQueryCache(DAWGMap map, int capacity, int maxResults) {
+        this(map.dawg, true, capacity, maxResults);
+    }
+
+    private DAWGQueryCache(DAWGSet dawg, boolean map, final int capacity, int maxResults) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        if (maxResults < 0)
+            throw new IllegalArgumentException("Negative maxResults: " + maxResults);
+        this.dawg = dawg;
+        this.map = map;
+        this.maxResults = maxResults;
+        modificationCount = dawg.getModificationCount();
+        results = new LinkedHashMap<Query, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<Query, Object> eldest) {
+                if (size() <= capacity)
+                    return false;
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the first strings (or map keys) starting with a given prefix.
+     */
+    public List<String> getStringsStartingWith(String prefix) {
+        return getStrings(prefix, false, null, false, null, false);
+    }
+
+    /**
+     * Returns the first strings (or map keys) starting with a given prefix and lying in a given range.
+
+     * @param prefix        a prefix or null
+     * @param descending    whether the strings should be returned in descending order
+     * @param from          a lower bound or null
+     * @param inclFrom      whether the lower bound is inclusive
+     * @param to            an upper bound or null
+     * @param inclTo        whether the upper bound is inclusive
+     * @return              an unmodifiable list of up to {@code maxResults} strings
+     */
+    public List<String> getStrings(String prefix, boolean descending, String from, boolean inclFrom, String to, boolean inclTo) {
+        String strings[] = getRawStrings(prefix, descending, from, inclFrom, to, inclTo);
+        if (!map)
+            return Collections.unmodifiableList(Arrays.asList(strings));
+        List<String> keys = new ArrayList<String>(strings.length);
+        for (String s : strings)
+            keys.add(s.substring(0, s.indexOf(AbstractDAWGMap.KEY_VALUE_SEPARATOR)));
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Returns the first entries of a map whose keys start with a given prefix and lie in a given range.
+
+     * @throws UnsupportedOperationException if this cache was created over a set
+     * @see #getStrings
+     */
+    public List<Entry<String, String>> getEntries(String prefix, boolean descending, String from, boolean inclFrom, String to, boolean inclTo) {
+        if (!map)
+            throw new UnsupportedOperationException("Not a map");
+        String strings[] = getRawStrings(prefix, descending, from, inclFrom, to, inclTo);
+        List<Entry<String, String>> entries = new ArrayList<Entry<String, String>>(strings.length);
+        for (String s : strings) {
+            int idx = s.indexOf(AbstractDAWGMap.KEY_VALUE_SEPARATOR);
+            entries.add(new SimpleEntry<String, String>(s.substring(0, idx), s.substring(idx + 1)));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the quantity of strings (or map keys) starting with a given prefix.
+     */
+    public int countStringsStartingWith(String prefix) {
+        if (prefix == null)
+            prefix = "";
+        if (map)
+            AbstractDAWGMap.checkNotNullAndContainsNoZeros(prefix);
+        Query query = new Query(prefix, false, null, false, null, false, true);
+        int modificationCount = dawg.getModificationCount();
+        Object cached = get(query, modificationCount);
+        if (cached != null)
+            return (Integer)cached;
+        int count = prefix.isEmpty() ? (map ? dawg.getKeyCount() : dawg.size()) : dawg.countStringsStartingWith(prefix.substring(0, prefix.length() - 1), prefix.charAt(prefix.length() - 1));
+        put(query, count, modificationCount);
+        return count;
+    }
+
+    private String[] getRawStrings(String prefix, boolean descending, String from, boolean inclFrom, String to, boolean inclTo) {
+        if (prefix == null)
+            prefix = "";
+        if (map) {
+            AbstractDAWGMap.checkNotNullAndContainsNoZeros(prefix);
+            // Bounds of keys are converted to bounds of "key\0value" strings as in DAWGMap.subMap.
+            if (from != null) {
+                AbstractDAWGMap.checkNotNullAndContainsNoZeros(from);
+                from += inclFrom ? AbstractDAWGMap.KEY_VALUE_SEPARATOR : AbstractDAWGMap.KEY_VALUE_SEPARATOR_EXCLUSIVE;
+                inclFrom = true;
+            }
+            if (to != null) {
+                AbstractDAWGMap.checkNotNullAndContainsNoZeros(to);
+                to += inclTo ? AbstractDAWGMap.KEY_VALUE_SEPARATOR_EXCLUSIVE : AbstractDAWGMap.KEY_VALUE_SEPARATOR;
+                inclTo = false;
+            }
+        }
+        Query query = new Query(prefix, descending, from, inclFrom, to, inclTo, false);
+        int modificationCount = dawg.getModificationCount();
+        Object cached = get(query, modificationCount);
+        if (cached != null)
+            return (String[])cached;
+        List<String> strings = new ArrayList<String>();
+        if (maxResults > 0) {
+            for (String s : dawg.getStrings(prefix, null, null, descending, from, inclFrom, to, inclTo)) {
+                strings.add(s);
+                if (strings.size() == maxResults)
+                    break;
+            }
+        }
+        String ret[] = strings.toArray(new String[strings.size()]);
+        put(query, ret, modificationCount);
+        return ret;
+    }
+
+    private Object get(Query query, int modificationCount) {
+        synchronized (results) {
+            if (this.modificationCount != modificationCount) {
+                results.clear();
+                this.modificationCount = modificationCount;
+            }
+            Object ret = results.get(query);
+            if (ret == null)
+                missCount++;
+            else
+                hitCount++;
+            return ret;
+        }
+    }
+
+    private void put(Query query, Object result, int modificationCount) {
+        synchronized (results) {
+            // Don't cache a result of a query executed over a stale set.
+            if (this.modificationCount == modificationCount)
+                results.put(query, result);
+        }
+    }
+
+    /**
+     * Removes all cached queries. Counters are not reset.
+     */
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    /**
+     * Returns the current quantity of cached queries.
+     */
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    /**
+     * Returns the quantity of queries answered from the cache.
+     */
+    public long getHitCount() {
+        synchronized (results) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Returns the quantity of queries executed over the underlying set.
+     */
+    public long getMissCount() {
+        synchronized (results) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Returns the share of queries answered from the cache or 0 if there were no queries.
+     */
+    public double getHitRatio() {
+        synchronized (results) {
+            long total = hitCount + missCount;
+            return total == 0L ? 0.0 : (double)hitCount / total;
+        }
+    }
+
+    /**
+     * Returns the quantity of queries evicted because the cache was full.
+     * Queries removed because the underlying set changed are not counted.
+     */
+    public long getEvictionCount() {
+        synchronized (results) {
+            return evictionCount;
+        }
+    }
+
+    private static class Query {
+        private final String prefix;
+        private final boolean descending;
+        private final String from;
+        private final boolean inclFrom;
+        private final String to;
+        private final boolean inclTo;
+        private final boolean count;
+
+        public Query(String prefix, boolean descending, String from, boolean inclFrom, String to, boolean inclTo, boolean count) {
+            this.prefix = prefix;
+            this.descending = descending;
+            this.from = from;
+            this.inclFrom = inclFrom;
+            this.to = to;
+            this.inclTo = inclTo;
+            this.count = count;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = prefix.hashCode();
+            hash = 31 * hash + Objects.hashCode(from);
+            hash = 31 * hash + Objects.hashCode(to);
+            return hash ^ (descending ? 1 : 0) ^ (inclFrom ? 2 : 0) ^ (inclTo ? 4 : 0) ^ (count ? 8 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof Query))
+                return false;
+            Query q = (Query)obj;
+            return prefix.equals(q.prefix) && descending == q.descending && Objects.equals(from, q.from) && inclFrom == q.inclFrom &&
+                    Objects.equals(to, q.to) && inclTo == q.inclTo && count == q.count;
+        }
+    }
+}
@@ -1,25 +1,36 @@
 package org.quinto.dawg;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import org.quinto.dawg.util.SemiNavigableMap;
 import org.quinto.dawg.util.LookaheadIterator;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.CharBuffer;
 import java.text.SimpleDateFormat;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.Set;
 
-public abstract class DAWGSet extends AbstractSet<String> implements NavigableSet<String>, StringsFilter {
+public abstract class DAWGSet extends AbstractSet<String> implements NavigableSet<String>, FoldedStringsFilter {
     private static final SimpleDateFormat dotFileNameDateFormat = new SimpleDateFormat("yyyyMMddHHmmssSSS");
     
     /**
@@ -32,6 +43,8 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
      */
     private static String dotExecutablePath = "dot";
 
+    private transient volatile AhoCorasickAutomaton automaton;
+
     public static String getImagesPath() {
         return imagesPath;
     }
@@ -58,107 +71,156 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
     abstract SemiNavigableMap<Character, Collection<? extends DAWGNode>> getIncomingTransitions(DAWGNode parent);
   
     public String toGraphViz(boolean withNodeIds, boolean withIncomingTransitions) {
+        StringWriter dot = new StringWriter();
+        try {
+            writeGraphViz(dot, "", -1, -1, withNodeIds, withIncomingTransitions, false);
+        } catch (IOException e) {
+            // StringWriter doesn't throw it.
+            throw new RuntimeException(e);
+        }
+        return dot.toString();
+    }
+
+    /**
+     * Writes a part of this DAWG in GraphViz DOT format without building the whole text in memory.
+     * Nodes that are reached but not expanded because of the limits are drawn dotted.
+     
+     * @param out                       a destination
+     * @param prefix                    a prefix leading to the first node to draw; the empty string means the source node
+     * @param maxDepth                  a maximal quantity of transitions from the first node or -1 for no limit
+     * @param maxNodes                  a maximal quantity of expanded nodes or -1 for no limit
+     * @param withNodeIds               whether nodes should be labeled with their ids
+     * @param withIncomingTransitions   whether incoming transitions should be drawn as dashed edges
+     *                                  (ignored if this DAWG doesn't store them)
+     * @param collapseChains            whether paths through non-accept nodes with a single outgoing transition
+     *                                  should be drawn as a single edge labeled with all their letters
+     */
+    public void writeGraphViz(Writer out, String prefix, int maxDepth, int maxNodes, boolean withNodeIds, boolean withIncomingTransitions, boolean collapseChains) throws IOException {
         if (withIncomingTransitions)
             withIncomingTransitions = isWithIncomingTransitions();
-        StringBuilder dot = new StringBuilder("digraph dawg {\n");
-        dot.append("graph [rankdir=LR, ratio=fill];\n");
-        dot.append("node [fontsize=14, shape=circle];\n");
-        dot.append("edge [fontsize=12];\n");
-        Deque<DAWGNode> stack = new ArrayDeque<DAWGNode>();
+        out.write("digraph dawg {\n");
+        out.write("graph [rankdir=LR, ratio=fill];\n");
+        out.write("node [fontsize=14, shape=circle];\n");
+        out.write("edge [fontsize=12];\n");
+        DAWGNode startNode = prefix.isEmpty() ? getSourceNode() : transition(prefix.substring(0, prefix.length() - 1), prefix.charAt(prefix.length() - 1));
+        if (startNode == null) {
+            out.write('}');
+            return;
+        }
+        // Breadth-first order, so a node is expanded at its minimal depth.
+        Deque<DAWGNode> queue = new ArrayDeque<DAWGNode>();
+        Deque<Integer> depths = new ArrayDeque<Integer>();
         BitSet visited = new BitSet();
-        stack.add(getSourceNode());
-        visited.set(getSourceNode().getId());
-        if (withIncomingTransitions) {
-            stack.add(getEndNode());
+        queue.add(startNode);
+        depths.add(0);
+        visited.set(startNode.getId());
+        if (withIncomingTransitions && prefix.isEmpty()) {
+            queue.add(getEndNode());
+            depths.add(0);
             visited.set(getEndNode().getId());
         }
+        int expanded = 0;
+        StringBuilder label = new StringBuilder();
         while (true) {
-            DAWGNode node = stack.pollLast();
+            DAWGNode node = queue.pollFirst();
             if (node == null)
                 break;
-            dot.append('n').append(node.getId()).append(" [label=\"").append(node.isAcceptNode() ? 'O' : ' ').append('\"');
-            if (withNodeIds) {
-                dot.append(", xlabel=\"");
-                if (node.getId() == DAWGNode.START)
-                    dot.append("START");
-                else if (node.getId() == DAWGNode.END)
-                    dot.append("END");
-                else
-                    dot.append(node.getId());
-                dot.append('\"');
-            }
-            dot.append("];\n");
+            int depth = depths.pollFirst();
+            boolean expand = (maxDepth < 0 || depth < maxDepth) && (maxNodes < 0 || expanded < maxNodes);
+            writeGraphVizNode(out, node, withNodeIds, !expand);
+            if (!expand)
+                continue;
+            expanded++;
             for (Map.Entry<Character, DAWGNode> e : getOutgoingTransitions(node)) {
                 DAWGNode nextNode = e.getValue();
-                dot.append('n').append(node.getId()).append(" -> n").append(nextNode.getId()).append(" [label=\"");
-                char label = e.getKey();
-                if (label < 32)
-                  dot.append('<').append((int)label).append('>');
-                else
-                  dot.append(label);
-                dot.append("\"];\n");
+                label.setLength(0);
+                appendGraphVizLabel(label, e.getKey());
+                if (collapseChains) {
+                    while (!nextNode.isAcceptNode()) {
+                        Iterator<? extends Map.Entry<Character, DAWGNode>> it = getOutgoingTransitions(nextNode).iterator();
+                        if (!it.hasNext())
+                            break;
+                        Map.Entry<Character, DAWGNode> chain = it.next();
+                        if (it.hasNext())
+                            break;
+                        appendGraphVizLabel(label, chain.getKey());
+                        nextNode = chain.getValue();
+                    }
+                }
+                out.write("n" + node.getId() + " -> n" + nextNode.getId() + " [label=\"" + label + "\"];\n");
                 if (!visited.get(nextNode.getId())) {
-                    stack.addLast(nextNode);
+                    queue.addLast(nextNode);
+                    depths.addLast(depth + 1);
                     visited.set(nextNode.getId());
                 }
             }
             if (withIncomingTransitions) {
                 for (Map.Entry<Character, Collection<? extends DAWGNode>> e : getIncomingTransitions(node)) {
+                    label.setLength(0);
+                    appendGraphVizLabel(label, e.getKey());
                     for (DAWGNode prevNode : e.getValue()) {
-                        dot.append('n').append(node.getId()).append(" -> n").append(prevNode.getId()).append(" [label=\"");
-                        char label = e.getKey();
-                        if (label < 32)
-                            dot.append('<').append((int)label).append('>');
-                        else
-                            dot.append(label);
-                        dot.append("\", style=dashed];\n");
+                        out.write("n" + node.getId() + " -> n" + prevNode.getId() + " [label=\"" + label + "\", style=dashed];\n");
                         if (!visited.get(prevNode.getId())) {
-                            stack.addLast(prevNode);
+                            queue.addLast(prevNode);
+                            depths.addLast(depth + 1);
                             visited.set(prevNode.getId());
                         }
                     }
                 }
             }
         }
-        dot.append('}');
-        return dot.toString();
+        out.write('}');
+    }
+    
+    private static void writeGraphVizNode(Writer out, DAWGNode node, boolean withNodeIds, boolean truncated) throws IOException {
+        out.write("n" + node.getId() + " [label=\"" + (node.isAcceptNode() ? 'O' : ' ') + '\"');
+        if (withNodeIds) {
+            out.write(", xlabel=\"");
+            if (node.getId() == DAWGNode.START)
+                out.write("START");
+            else if (node.getId() == DAWGNode.END)
+                out.write("END");
+            else
+                out.write(Integer.toString(node.getId()));
+            out.write('\"');
+        }
+        if (truncated)
+            out.write(", style=dotted");
+        out.write("];\n");
+    }
+    
+    private static void appendGraphVizLabel(StringBuilder sb, char label) {
+        if (label < 32)
+            sb.append('<').append((int)label).append('>');
+        else if (label == '"' || label == '\\')
+            sb.append('\\').append(label);
+        else
+            sb.append(label);
     }
 
+    /**
+     * Renders this DAWG to a PNG file in {@link #getImagesPath} using GraphViz.
+     * The DOT text is streamed to a temporary file, so this method works for large graphs too.
+     */
     public void saveAsImage(boolean withNodeIds, boolean withIncomingTransitions) throws IOException {
-        String graphViz = toGraphViz(withNodeIds, withIncomingTransitions);
         File dotFile = File.createTempFile("dawg", ".dot");
-        byte bytes[] = graphViz.getBytes("UTF-8");
-        FileOutputStream fos = null;
-        IOException ex = null;
         try {
-            fos = new FileOutputStream(dotFile);
-            int len = bytes.length;
-            int rem = len;
-            while (rem > 0) {
-                int n = Math.min(rem, 8192);
-                fos.write(bytes, len - rem, n);
-                rem -= n;
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(dotFile), "UTF-8"));
+            try {
+                writeGraphViz(out, "", -1, -1, withNodeIds, withIncomingTransitions, false);
+            } finally {
+                out.close();
             }
-        } finally {
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException e) {
-                    ex = e;
-                }
+            File dir = new File(imagesPath);
+            if (!dir.exists())
+                dir.mkdirs();
+            File imageFile = File.createTempFile("dawg" + dotFileNameDateFormat.format(new Date()) + (System.nanoTime() % 1000000L), ".png", dir);
+            ProcessBuilder pb = new ProcessBuilder(dotExecutablePath, "-Tpng", dotFile.getAbsolutePath(), "-o", imageFile.getAbsolutePath());
+            try {
+                pb.start().waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        }
-        if (ex != null)
-            throw ex;
-        File dir = new File(imagesPath);
-        if (!dir.exists())
-            dir.mkdirs();
-        File imageFile = File.createTempFile("dawg" + dotFileNameDateFormat.format(new Date()) + (System.nanoTime() % 1000000L), ".png", dir);
-        ProcessBuilder pb = new ProcessBuilder(dotExecutablePath, "-Tpng", dotFile.getAbsolutePath(), "-o", imageFile.getAbsolutePath());
-        try {
-            pb.start().waitFor();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
         } finally {
             dotFile.delete();
         }
@@ -187,6 +249,401 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
         return targetNode != null && targetNode.isAcceptNode();
     }
 
+    /**
+     * Follows the transition path of a given prefix and then a transition labeled with a given char.
+     
+     * @return          the reached node or null if there is no such path
+     */
+    private DAWGNode transition(CharSequence prefix, char last) {
+        DAWGNode node = getSourceNode();
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.transition(prefix.charAt(i));
+            if (node == null)
+                return null;
+        }
+        return node.transition(last);
+    }
+    
+    /**
+     * Determines whether there are strings starting with a given prefix followed by a given char.
+     * Unlike {@link #getStringsStartingWith} this method doesn't start an iteration.
+     */
+    boolean containsStringsStartingWith(CharSequence prefix, char last) {
+        // Every node of a minimal DAWG is on a path to some accept node.
+        return transition(prefix, last) != null;
+    }
+    
+    /**
+     * Returns the quantity of strings starting with a given prefix followed by a given char.
+     * This method takes time proportional to the length of a prefix.
+     */
+    abstract int countStringsStartingWith(CharSequence prefix, char last);
+    
+    /**
+     * Returns the quantity of distinct map keys stored in this set, i.e. the quantity of
+     * distinct parts of strings preceding {@link AbstractDAWGMap#KEY_VALUE_SEPARATOR}.
+     */
+    abstract int getKeyCount();
+    
+    /**
+     * Returns a counter that changes whenever the contents of this set change.
+     * Immutable sets always return 0.
+     */
+    int getModificationCount() {
+        return 0;
+    }
+    
+    /**
+     * Returns the lexicographically smallest of the strings starting with a given prefix followed by a given char
+     * with that prefix and char stripped.
+     * Unlike {@link #getStringsStartingWith} this method doesn't start an iteration: it follows the path once
+     * and then reads the rest of the string straight off the graph (a single chain in case of map entries).
+     
+     * @return          the suffix of the first string or null if there are no such strings
+     */
+    String getFirstSuffix(CharSequence prefix, char last) {
+        return getFirstSuffix(transition(prefix, last));
+    }
+    
+    private String getFirstSuffix(DAWGNode node) {
+        if (node == null)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        while (!node.isAcceptNode()) {
+            Map.Entry<Character, DAWGNode> e = getOutgoingTransitions(node).iterator().next();
+            sb.append(e.getKey().charValue());
+            node = e.getValue();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the order in which given strings should be processed by batch lookups: indexes of strings
+     * sorted by their values or null if strings should be processed as they are.
+     */
+    static int[] getBatchOrder(final String words[], boolean sort) {
+        if (!sort)
+            return null;
+        Integer order[] = new Integer[words.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return words[a].compareTo(words[b]);
+            }
+        });
+        int ret[] = new int[order.length];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = order[i];
+        return ret;
+    }
+    
+    /**
+     * Returns the length of the common prefix of given strings.
+     */
+    static int getCommonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++)
+            if (a.charAt(i) != b.charAt(i))
+                return i;
+        return length;
+    }
+    
+    /**
+     * Follows the paths of given strings in a given order. The path of the previous string is kept,
+     * so each string is followed from the end of its longest common prefix with the previous one.
+     
+     * @param order     indexes of strings in the order of processing or null to process them as they are
+     * @return          reached nodes indexed as the strings or nulls for strings without a path
+     */
+    DAWGNode[] transitionAll(String words[], int order[]) {
+        DAWGNode ret[] = new DAWGNode[words.length];
+        DAWGNode path[] = new DAWGNode[16];
+        path[0] = getSourceNode();
+        // Quantity of chars of the previous string having nodes in the path.
+        int pathLength = 0;
+        String previous = "";
+        for (int k = 0; k < words.length; k++) {
+            int idx = order == null ? k : order[k];
+            String word = words[idx];
+            int i = Math.min(pathLength, getCommonPrefixLength(previous, word));
+            if (path.length <= word.length())
+                path = Arrays.copyOf(path, Math.max(path.length * 2, word.length() + 1));
+            DAWGNode node = path[i];
+            for (; i < word.length(); i++) {
+                node = node.transition(word.charAt(i));
+                if (node == null)
+                    break;
+                path[i + 1] = node;
+            }
+            pathLength = i;
+            previous = word;
+            ret[idx] = node;
+        }
+        return ret;
+    }
+    
+    /**
+     * Determines for each of given strings whether it is present in this set.
+     * Consecutive strings share the traversal of their common prefix, so a sorted batch of strings
+     * with long common prefixes is checked much faster than by separate calls of {@link #contains}.
+     
+     * @param words     strings to be searched for
+     * @param out       a bit set that receives the results: the bit of a present string is set,
+     *                  the bit of an absent one is cleared
+     * @param sort      whether this method should process the strings in sorted order;
+     *                  the given array is not changed
+     */
+    public void containsAll(String words[], BitSet out, boolean sort) {
+        DAWGNode nodes[] = transitionAll(words, getBatchOrder(words, sort));
+        for (int i = 0; i < nodes.length; i++)
+            out.set(i, nodes[i] != null && nodes[i].isAcceptNode());
+    }
+    
+    /**
+     * Determines for each of given strings whether it is present in this set processing them in the given order.
+     * @see #containsAll(String[], BitSet, boolean)
+     */
+    public void containsAll(String words[], BitSet out) {
+        containsAll(words, out, false);
+    }
+    
+    /**
+     * Returns {@link #getFirstSuffix} for each of given prefixes.
+     * Consecutive prefixes share the traversal of their common part.
+     
+     * @param sort      whether this method should process the prefixes in sorted order
+     * @return          suffixes indexed as the prefixes or nulls for prefixes without strings
+     */
+    String[] getFirstSuffixes(String prefixes[], char last, boolean sort) {
+        DAWGNode nodes[] = transitionAll(prefixes, getBatchOrder(prefixes, sort));
+        String ret[] = new String[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            if (nodes[i] != null)
+                ret[i] = getFirstSuffix(nodes[i].transition(last));
+        return ret;
+    }
+
+    /**
+     * Receives the differences found by {@link DAWGSet#diff}.
+     */
+    public interface DiffListener {
+        /**
+         * Invoked for a string contained in the new set only.
+         */
+        public void added(String str);
+
+        /**
+         * Invoked for a string contained in the old set only.
+         */
+        public void removed(String str);
+    }
+
+    /**
+     * Reports the strings added to and removed from a set. Both graphs are walked in lockstep,
+     * and a pair of nodes whose right languages were once found equal isn't walked again,
+     * so shared suffixes of the two versions are compared only once.
+     * The strings are reported in ascending order of the sets.
+     
+     * @param oldSet    an old version of a set
+     * @param newSet    a new version of a set
+     * @param listener  a receiver of the differences
+     * @throws IllegalArgumentException if only one of the sets is a {@link Utf8DAWGSet}
+     */
+    public static void diff(DAWGSet oldSet, DAWGSet newSet, final DiffListener listener) {
+        boolean utf8 = oldSet.isUtf8();
+        if (utf8 != newSet.isUtf8())
+            throw new IllegalArgumentException("Cannot compare a UTF-8 set with a set of chars");
+        DiffListener target = listener;
+        if (utf8) {
+            target = new DiffListener() {
+                @Override
+                public void added(String str) {
+                    listener.added(Utf8DAWGSet.decode(str));
+                }
+
+                @Override
+                public void removed(String str) {
+                    listener.removed(Utf8DAWGSet.decode(str));
+                }
+            };
+        }
+        DAWGSet oldGraph = oldSet.getGraph();
+        DAWGSet newGraph = newSet.getGraph();
+        if (oldGraph == newGraph)
+            return;
+        diff(oldGraph, oldGraph.getSourceNode(), newGraph, newGraph.getSourceNode(), new StringBuilder(), new HashSet<Long>(), target);
+    }
+
+    /**
+     * Walks two graphs in lockstep and reports the differences.
+     * @param listener  a receiver of the differences or null to stop at the first difference
+     * @return whether the right languages of the nodes differ
+     */
+    private static boolean diff(DAWGSet oldGraph, DAWGNode oldNode, DAWGSet newGraph, DAWGNode newNode, StringBuilder sb, Set<Long> equalPairs, DiffListener listener) {
+        Long pair = ((long)oldNode.getId() << 32) | (newNode.getId() & 0xFFFFFFFFL);
+        if (equalPairs.contains(pair))
+            return false;
+        boolean changed = false;
+        if (oldNode.isAcceptNode() != newNode.isAcceptNode()) {
+            if (listener == null)
+                return true;
+            changed = true;
+            if (oldNode.isAcceptNode())
+                listener.removed(sb.toString());
+            else
+                listener.added(sb.toString());
+        }
+        Iterator<? extends Map.Entry<Character, DAWGNode>> oldIt = oldGraph.getOutgoingTransitions(oldNode).iterator();
+        Iterator<? extends Map.Entry<Character, DAWGNode>> newIt = newGraph.getOutgoingTransitions(newNode).iterator();
+        Map.Entry<Character, DAWGNode> oldEntry = oldIt.hasNext() ? oldIt.next() : null;
+        Map.Entry<Character, DAWGNode> newEntry = newIt.hasNext() ? newIt.next() : null;
+        int length = sb.length();
+        while (oldEntry != null || newEntry != null) {
+            int cmp = oldEntry == null ? 1 : newEntry == null ? -1 : oldEntry.getKey().compareTo(newEntry.getKey());
+            if (cmp != 0 && listener == null)
+                return true;
+            if (cmp < 0) {
+                sb.append(oldEntry.getKey());
+                reportAll(oldGraph, oldEntry.getValue(), sb, listener, false);
+                changed = true;
+            } else if (cmp > 0) {
+                sb.append(newEntry.getKey());
+                reportAll(newGraph, newEntry.getValue(), sb, listener, true);
+                changed = true;
+            } else {
+                sb.append(oldEntry.getKey());
+                changed |= diff(oldGraph, oldEntry.getValue(), newGraph, newEntry.getValue(), sb, equalPairs, listener);
+                if (changed && listener == null)
+                    return true;
+            }
+            sb.setLength(length);
+            if (cmp <= 0)
+                oldEntry = oldIt.hasNext() ? oldIt.next() : null;
+            if (cmp >= 0)
+                newEntry = newIt.hasNext() ? newIt.next() : null;
+        }
+        if (!changed)
+            equalPairs.add(pair);
+        return changed;
+    }
+
+    private static void reportAll(DAWGSet graph, DAWGNode node, StringBuilder sb, DiffListener listener, boolean added) {
+        if (node.isAcceptNode()) {
+            if (added)
+                listener.added(sb.toString());
+            else
+                listener.removed(sb.toString());
+        }
+        int length = sb.length();
+        for (Map.Entry<Character, DAWGNode> e : graph.getOutgoingTransitions(node)) {
+            sb.append(e.getKey());
+            reportAll(graph, e.getValue(), sb, listener, added);
+            sb.setLength(length);
+        }
+    }
+
+    /**
+     * Receives the occurrences of strings of a set found by {@link DAWGSet#scan}.
+     */
+    public interface MatchListener {
+        /**
+         * Invoked for an occurrence of a string at a given range of a text.
+         * @param start     the index of the first char of the occurrence
+         * @param end       the index after the last char of the occurrence
+         */
+        public void match(int start, int end);
+    }
+
+    /**
+     * Finds the occurrences of strings of this set in a text in a single pass. The empty string is never reported.
+     * Matches are reported in ascending order of their end, then of their start.
+     * The first scan builds an Aho-Corasick automaton of the strings, which is kept until this set is modified.
+     * Unlike a minimal DAWG, the automaton is a trie: it takes about 20 bytes per distinct prefix of the strings.
+     * Scanning allocates no objects per match or per char of the text.
+     
+     * @param text          a text
+     * @param longestOnly   whether only leftmost-longest non-overlapping occurrences should be reported
+     * @param listener      a receiver of the occurrences
+     */
+    public void scan(CharSequence text, boolean longestOnly, MatchListener listener) {
+        scan(text, 0, text.length(), 0, longestOnly, listener);
+    }
+
+    /**
+     * Finds the occurrences of strings of this set in a range of a char array.
+     * Reported indexes are indexes in the array.
+     * @see #scan(CharSequence, boolean, MatchListener)
+     */
+    public void scan(char text[], int offset, int length, boolean longestOnly, MatchListener listener) {
+        scan(CharBuffer.wrap(text, offset, length).slice(), 0, length, offset, longestOnly, listener);
+    }
+
+    /**
+     * Finds the occurrences of strings of this set in a stream of chars.
+     * The stream is read through a buffer holding at least twice the longest string of this set.
+     * Reported indexes are counted from the current position of the reader.
+     * @see #scan(CharSequence, boolean, MatchListener)
+     */
+    public void scan(Reader reader, boolean longestOnly, MatchListener listener) throws IOException {
+        AhoCorasickAutomaton automaton = getAutomaton();
+        char buffer[] = new char[Math.max(8192, automaton.getMaxLength() * 2)];
+        CharBuffer text = CharBuffer.wrap(buffer);
+        int base = 0;
+        int length = 0;
+        int pos = 0;
+        int state = 0;
+        boolean eof = false;
+        while (!eof) {
+            // Leftmost-longest scanning leaves an occurrence in progress in the buffer to scan it again.
+            System.arraycopy(buffer, pos, buffer, 0, length - pos);
+            base += pos;
+            length -= pos;
+            pos = 0;
+            while (!eof && length < buffer.length) {
+                int n = reader.read(buffer, length, buffer.length - length);
+                if (n < 0)
+                    eof = true;
+                else
+                    length += n;
+            }
+            if (longestOnly)
+                pos = automaton.scanLongest(text, pos, length, eof, base, listener);
+            else {
+                state = automaton.scanAll(text, pos, length, state, base, listener);
+                pos = length;
+            }
+        }
+    }
+
+    private void scan(CharSequence text, int from, int to, int base, boolean longestOnly, MatchListener listener) {
+        AhoCorasickAutomaton automaton = getAutomaton();
+        if (longestOnly)
+            automaton.scanLongest(text, from, to, true, base, listener);
+        else
+            automaton.scanAll(text, from, to, 0, base, listener);
+    }
+
+    /**
+     * Returns an Aho-Corasick automaton of the strings of this set built after its last modification.
+     */
+    AhoCorasickAutomaton getAutomaton() {
+        AhoCorasickAutomaton ret = automaton;
+        if (ret == null || ret.getModificationCount() != getModificationCount()) {
+            ret = new AhoCorasickAutomaton(this);
+            automaton = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the set whose nodes back this one: this set itself unless it's a decorator.
+     */
+    DAWGSet getGraph() {
+        return this;
+    }
+
     @Override
     public boolean remove(Object o) {
         throw new UnsupportedOperationException();
@@ -257,6 +714,99 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
     
     public abstract int getNodeCount();
     
+    /**
+     * Calculates the quantities of nodes and transitions, lengths of words, the used alphabet and a histogram
+     * of depths of nodes in a single pass over the distinct nodes of this DAWG.
+     * @return statistics of the graph
+     */
+    public abstract DAWGStatistics getStatistics();
+    
+    /**
+     * Returns a 64-bit fingerprint of the strings of this DAWG. It's calculated from the accept flag of each node
+     * and the labels and fingerprints of its outgoing transitions, so it depends on the strings only.
+     * Different fingerprints mean different sets; equal fingerprints mean equal sets with a high probability.
+     * It's cached along with the nodes, so it's cheap to compare with the fingerprint of a replica
+     * to detect changes. A {@link Utf8DAWGSet} returns the fingerprint of its bytes.
+     * @return a fingerprint of the strings
+     */
+    public abstract long getFingerprint();
+    
+    /**
+     * Mixes the label of a transition with the fingerprint of its target.
+     * The results are summed up over the transitions of a node.
+     */
+    static long fingerprintTransition(char letter, long childFingerprint) {
+        return mix(childFingerprint * 0x9E3779B97F4A7C15L + letter);
+    }
+    
+    /**
+     * Calculates the fingerprint of a node from its accept flag and the sum of its mixed transitions.
+     */
+    static long fingerprintNode(boolean accept, long transitionsFingerprint) {
+        return mix(transitionsFingerprint + (accept ? 0x3C6EF372FE94F82BL : 0xA54FF53A5F1D36F1L));
+    }
+    
+    // The finalizer of SplitMix64.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Compares this set with a given object as specified by {@link java.util.Set#equals}.
+     * Two DAWGs of the same encoding are compared by their sizes and fingerprints first,
+     * so different sets are usually told apart without a traversal.
+     * Equal fingerprints are confirmed by a walk of both graphs in lockstep
+     * which visits each pair of nodes once rather than looking up each string.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj instanceof DAWGSet) {
+            DAWGSet other = (DAWGSet)obj;
+            if (isUtf8() == other.isUtf8()) {
+                if (size() != other.size() || getFingerprint() != other.getFingerprint())
+                    return false;
+                DAWGSet graph = getGraph();
+                DAWGSet otherGraph = other.getGraph();
+                return graph == otherGraph || !diff(graph, graph.getSourceNode(), otherGraph, otherGraph.getSourceNode(), new StringBuilder(), new HashSet<Long>(), null);
+            }
+        }
+        return super.equals(obj);
+    }
+    
+    /**
+     * Returns whether strings are stored as bytes of UTF-8, see {@link Utf8DAWGSet}.
+     */
+    boolean isUtf8() {
+        return false;
+    }
+    
+    /**
+     * Estimates the quantity of bytes retained by this DAWG. The whole graph and all the words are traversed,
+     * so this method is intended for sizing and diagnostics rather than for frequent calls.
+     * @return estimated sizes of components, a histogram of fan-outs of nodes and the raw size of words
+     */
+    public DAWGMemoryFootprint getMemoryFootprint() {
+        DAWGMemoryFootprint ret = new DAWGMemoryFootprint();
+        estimateMemoryFootprint(ret);
+        AhoCorasickAutomaton automaton = this.automaton;
+        if (automaton != null)
+            ret.add(DAWGMemoryFootprint.Component.CACHES, automaton.estimateBytes());
+        long chars = 0L;
+        for (String word : this)
+            chars += word.length();
+        ret.setRawStringBytes(2L * chars);
+        return ret;
+    }
+    
+    /**
+     * Adds sizes of components of this DAWG and fan-outs of its distinct nodes to a given footprint.
+     */
+    abstract void estimateMemoryFootprint(DAWGMemoryFootprint footprint);
+    
     abstract Collection<? extends DAWGNode> getNodesBySuffix(String suffix);
     
     abstract int getMaxLength();
@@ -657,6 +1207,114 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
         };
     }
     
+    /**
+     * Returns the strings that fold to the same chars as a given string, e.g. all the stored casings of a word.
+     * Strings are returned in ascending order.
+     */
+    public Iterable<String> getStringsFolded(String str, CharFolding folding) {
+        return Collections.unmodifiableList(getFoldedPrefixes(str, folding, true));
+    }
+
+    /**
+     * Returns the strings whose prefix folds to the same chars as a given prefix.
+     * @see #getStringsStartingWithFolded(String, CharFolding, boolean, String, boolean, String, boolean)
+     */
+    public Iterable<String> getStringsStartingWithFolded(String prefix, CharFolding folding) {
+        return getStringsStartingWithFolded(prefix, folding, false, null, false, null, false);
+    }
+
+    /**
+     * Returns the strings whose prefix folds to the same chars as a given prefix and that lie in a given range.
+     * The stored prefixes matching the given one are found by following only the transitions whose letters fold
+     * to the letters of the prefix. The strings are returned in the order of this set, exactly as
+     * {@link #getStrings} would return their union, and bounds are compared with the stored (not folded) strings.
+     
+     * @param prefix        a prefix
+     * @param folding       a folding of chars
+     * @param descending    whether the strings should be returned in descending order
+     * @param fromString    a lower bound or null
+     * @param inclFrom      whether the lower bound is inclusive
+     * @param toString      an upper bound or null
+     * @param inclTo        whether the upper bound is inclusive
+     */
+    public Iterable<String> getStringsStartingWithFolded(String prefix, CharFolding folding, boolean descending, String fromString, boolean inclFrom, String toString, boolean inclTo) {
+        return getStringsStartingWithFolded(null, prefix, folding, descending, fromString, inclFrom, toString, inclTo);
+    }
+
+    /**
+     * Returns the strings starting with an exact prefix and with a prefix matching a folded query.
+     
+     * @param exactPrefix   a prefix that should be matched exactly or null
+     */
+    private Iterable<String> getStringsStartingWithFolded(String exactPrefix, String query, CharFolding folding, final boolean descending, final String fromString, final boolean inclFrom, final String toString, final boolean inclTo) {
+        final List<String> prefixes = new ArrayList<String>();
+        for (String p : getFoldedPrefixes(query, folding, false)) {
+            if (exactPrefix != null) {
+                if (p.length() >= exactPrefix.length() ? !p.startsWith(exactPrefix) : !exactPrefix.startsWith(p))
+                    continue;
+                if (p.length() < exactPrefix.length())
+                    p = exactPrefix;
+            }
+            // All strings starting with p are greater than toString or less than fromString.
+            if (toString != null && compare(p, toString) > 0 || fromString != null && compare(p, fromString) < 0 && !fromString.startsWith(p))
+                continue;
+            prefixes.add(p);
+        }
+        if (descending)
+            Collections.reverse(prefixes);
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new LookaheadIterator<String>() {
+                    private final Iterator<String> prefixesIt = prefixes.iterator();
+                    private Iterator<String> it = Collections.<String>emptyList().iterator();
+
+                    @Override
+                    public String nextElement() {
+                        while (!it.hasNext()) {
+                            if (!prefixesIt.hasNext())
+                                throw NO_SUCH_ELEMENT_EXCEPTION;
+                            it = getStrings(prefixesIt.next(), null, null, descending, fromString, inclFrom, toString, inclTo).iterator();
+                        }
+                        return it.next();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the stored strings of the same length as a given query whose chars fold to the same chars
+     * as the chars of the query, in ascending order.
+     
+     * @param acceptOnly    whether only the strings of this set should be returned, not any prefixes of them
+     */
+    List<String> getFoldedPrefixes(String query, CharFolding folding, boolean acceptOnly) {
+        char folded[] = new char[query.length()];
+        for (int i = 0; i < folded.length; i++)
+            folded[i] = folding.fold(query.charAt(i));
+        List<String> ret = new ArrayList<String>();
+        DAWGSet graph = getGraph();
+        collectFoldedPrefixes(graph, graph.getSourceNode(), folded, folding, new StringBuilder(), acceptOnly, ret);
+        return ret;
+    }
+
+    private static void collectFoldedPrefixes(DAWGSet graph, DAWGNode node, char folded[], CharFolding folding, StringBuilder sb, boolean acceptOnly, List<String> ret) {
+        int length = sb.length();
+        if (length == folded.length) {
+            if (!acceptOnly || node.isAcceptNode())
+                ret.add(sb.toString());
+            return;
+        }
+        for (Map.Entry<Character, DAWGNode> e : graph.getOutgoingTransitions(node)) {
+            if (folding.fold(e.getKey()) == folded[length]) {
+                sb.append(e.getKey());
+                collectFoldedPrefixes(graph, e.getValue(), folded, folding, sb, acceptOnly, ret);
+                sb.setLength(length);
+            }
+        }
+    }
+
     /**
      * Determines the longest prefix of a given String that is
  the prefix of another String previously added to the DAWGSet.
@@ -732,6 +1390,21 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
         if (e == null)
             throw new NullPointerException();
     }
+    
+    /**
+     * Compares two strings in the order of iteration of this set.
+     * It's the natural order of strings unless {@link #comparator} says otherwise.
+     */
+    int compare(String a, String b) {
+        return a.compareTo(b);
+    }
+
+    /**
+     * Returns {@link #comparator} typed for strings, i.e. null for the natural order.
+     */
+    Comparator<String> stringComparator() {
+        return null;
+    }
 
     @Override
     public String lower(String e) {
@@ -790,7 +1463,7 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
 
     @Override
     public NavigableSet<String> subSet(String fromElement, boolean fromInclusive, String toElement, boolean toInclusive) {
-        if (fromElement.compareTo(toElement) > 0)
+        if (compare(fromElement, toElement) > 0)
             throw new IllegalArgumentException("fromElement > toElement");
         if (fromInclusive && fromElement.isEmpty())
             fromElement = null;
@@ -815,7 +1488,7 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
 
     @Override
     public NavigableSet<String> subSet(String fromElement, String toElement) {
-        if (fromElement.compareTo(toElement) > 0)
+        if (compare(fromElement, toElement) > 0)
             throw new IllegalArgumentException("fromElement > toElement");
         if (fromElement.isEmpty())
             fromElement = null;
@@ -841,7 +1514,7 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
         return new SubSet(prefix, false, null, false, null, false);
     }
     
-    private class SubSet extends AbstractSet<String> implements NavigableSet<String>, StringsFilter {
+    private class SubSet extends AbstractSet<String> implements NavigableSet<String>, FoldedStringsFilter {
         private final String prefix;
         private final boolean desc;
         private final String from;
@@ -860,12 +1533,12 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
         }
         
         private String absLower(String e, boolean incl) {
-            int cmp = to == null ? -1 : e.compareTo(to);
+            int cmp = to == null ? -1 : compare(e, to);
             return getFirstElement(getStrings(prefix, null, null, true, from, inclFrom, cmp > 0 ? to : e, cmp > 0 ? inclTo : cmp < 0 ? incl : incl && inclTo));
         }
         
         private String absHigher(String e, boolean incl) {
-            int cmp = from == null ? 1 : e.compareTo(from);
+            int cmp = from == null ? 1 : compare(e, from);
             return getFirstElement(getStrings(prefix, null, null, false, cmp < 0 ? from : e, cmp < 0 ? inclFrom : cmp > 0 ? incl : incl && inclFrom, to, inclTo));
         }
 
@@ -933,6 +1606,11 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
             return getStrings(prefix, null, suffix, desc, from, inclFrom, to, inclTo);
         }
 
+        @Override
+        public Iterable<String> getStringsStartingWithFolded(String prefix, CharFolding folding) {
+            return DAWGSet.this.getStringsStartingWithFolded(this.prefix, prefix, folding, desc, from, inclFrom, to, inclTo);
+        }
+
         @Override
         public Iterator<String> iterator() {
             return getStrings(prefix, null, null, desc, from, inclFrom, to, inclTo).iterator();
@@ -1035,7 +1713,10 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
 
         @Override
         public Comparator<? super String> comparator() {
-            return desc ? Collections.reverseOrder() : null;
+            Comparator<String> comparator = stringComparator();
+            if (!desc)
+                return comparator;
+            return comparator == null ? Collections.<String>reverseOrder() : Collections.reverseOrder(comparator);
         }
 
         @Override
@@ -1061,12 +1742,12 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
             if (!s.startsWith(prefix))
                 return false;
             if (from != null) {
-                int cmp = s.compareTo(from);
+                int cmp = compare(s, from);
                 if (cmp < 0 || cmp == 0 && !inclFrom)
                     return false;
             }
             if (to != null) {
-                int cmp = s.compareTo(to);
+                int cmp = compare(s, to);
                 if (cmp > 0 || cmp == 0 && !inclTo)
                     return false;
             }
@@ -1077,8 +1758,8 @@ public abstract class DAWGSet extends AbstractSet<String> implements NavigableSe
             if (inclusive)
                 return inRange(s);
             return s.startsWith(prefix) &&
-                   (from == null || s.compareTo(from) >= 0) &&
-                   (to == null || s.compareTo(to) <= 0);
+                   (from == null || compare(s, from) >= 0) &&
+                   (to == null || compare(s, to) <= 0);
         }
 
         @Override
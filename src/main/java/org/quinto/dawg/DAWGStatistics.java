@@ -0,0 +1,166 @@
+package org.quinto.dawg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import org.quinto.dawg.util.UnmodifiableNavigableSet;
+
+/**
+ * Structural statistics of a DAWG calculated in a single pass over its distinct nodes.
+ * Unlike traversals of words, the cost of the calculation doesn't depend on the quantity of paths
+ * through shared nodes, and no recursion is used, so long words don't overflow the stack.
+ */
+public class DAWGStatistics {
+    private final int nodeCount;
+    private final int transitionCount;
+    private final int minLength;
+    private final int maxLength;
+    private final NavigableSet<Character> alphabet;
+    private final int depthHistogram[];
+
+    private DAWGStatistics(int nodeCount, int transitionCount, int minLength, int maxLength, NavigableSet<Character> alphabet, int depthHistogram[]) {
+        this.nodeCount = nodeCount;
+        this.transitionCount = transitionCount;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.alphabet = new UnmodifiableNavigableSet<Character>(alphabet);
+        this.depthHistogram = depthHistogram;
+    }
+
+    /**
+     * Returns the quantity of distinct nodes reachable from the source node, including the source node itself.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the quantity of transitions between the distinct nodes.
+     */
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Returns the length of the shortest word or 0 if the DAWG is empty.
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * Returns the length of the longest word or 0 if the DAWG is empty.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the chars labeling the transitions, i.e. the chars used by the words.
+     */
+    public NavigableSet<Character> getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Returns quantities of distinct nodes indexed by their depth, i.e. the length of the longest path
+     * from the source node to a node. Each transition leads to a deeper node.
+     */
+    public int[] getDepthHistogram() {
+        return depthHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "nodes: " + nodeCount + ", transitions: " + transitionCount + ", min length: " + minLength +
+                ", max length: " + maxLength + ", alphabet size: " + alphabet.size() + ", depth histogram: " + Arrays.toString(depthHistogram);
+    }
+
+    /**
+     * Collects distinct nodes and transitions of a DAWG. Nodes are numbered in the order they are added
+     * and all the transitions of a node are added right after the node. The source node has number 0.
+     */
+    static class Builder {
+        private final NavigableSet<Character> alphabet = new TreeSet<Character>();
+        private final BitSet acceptTransitions = new BitSet();
+        private final boolean acceptSource;
+        private int transitionBegins[] = new int[16];
+        private int targets[] = new int[16];
+        private int nodeCount;
+        private int transitionCount;
+
+        /**
+         * @param acceptSource  whether the DAWG contains an empty string
+         */
+        Builder(boolean acceptSource) {
+            this.acceptSource = acceptSource;
+        }
+
+        /**
+         * Adds a node whose transitions will follow.
+         */
+        void addNode() {
+            if (nodeCount == transitionBegins.length)
+                transitionBegins = Arrays.copyOf(transitionBegins, nodeCount * 2);
+            transitionBegins[nodeCount++] = transitionCount;
+        }
+
+        /**
+         * Adds a transition of the last added node.
+         * @param target    the number of the target node, which may be not added yet
+         * @param accept    whether the transition completes a word
+         */
+        void addTransition(char letter, int target, boolean accept) {
+            if (transitionCount == targets.length)
+                targets = Arrays.copyOf(targets, transitionCount * 2);
+            if (accept)
+                acceptTransitions.set(transitionCount);
+            targets[transitionCount++] = target;
+            alphabet.add(letter);
+        }
+
+        DAWGStatistics build() {
+            // Nodes are ordered topologically by removing the nodes without incoming transitions left.
+            int incoming[] = new int[nodeCount];
+            for (int i = 0; i < transitionCount; i++)
+                incoming[targets[i]]++;
+            int order[] = new int[nodeCount];
+            int orderSize = 0;
+            for (int node = 0; node < nodeCount; node++)
+                if (incoming[node] == 0)
+                    order[orderSize++] = node;
+            // Longest and shortest distances from the source node.
+            int longest[] = new int[nodeCount];
+            int shortest[] = new int[nodeCount];
+            Arrays.fill(shortest, Integer.MAX_VALUE);
+            shortest[0] = 0;
+            int minLength = acceptSource ? 0 : Integer.MAX_VALUE;
+            int maxLength = 0;
+            for (int i = 0; i < orderSize; i++) {
+                int node = order[i];
+                int end = node + 1 == nodeCount ? transitionCount : transitionBegins[node + 1];
+                for (int t = transitionBegins[node]; t < end; t++) {
+                    int target = targets[t];
+                    longest[target] = Math.max(longest[target], longest[node] + 1);
+                    shortest[target] = Math.min(shortest[target], shortest[node] + 1);
+                    if (acceptTransitions.get(t)) {
+                        minLength = Math.min(minLength, shortest[node] + 1);
+                        maxLength = Math.max(maxLength, longest[node] + 1);
+                    }
+                    if (--incoming[target] == 0)
+                        order[orderSize++] = target;
+                }
+            }
+            if (orderSize != nodeCount)
+                throw new IllegalStateException("Cycle in a DAWG");
+            int maxDepth = 0;
+            for (int node = 0; node < nodeCount; node++)
+                maxDepth = Math.max(maxDepth, longest[node]);
+            int depthHistogram[] = new int[nodeCount == 0 ? 0 : maxDepth + 1];
+            for (int node = 0; node < nodeCount; node++)
+                depthHistogram[longest[node]]++;
+            return new DAWGStatistics(nodeCount, transitionCount, minLength == Integer.MAX_VALUE ? 0 : minLength, maxLength, alphabet, depthHistogram);
+        }
+    }
+}
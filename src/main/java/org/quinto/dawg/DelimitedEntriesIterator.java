@@ -0,0 +1,100 @@
+package org.quinto.dawg;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads records like {@code key<delimiter>value} separated by line breaks
+ * and returns them encoded as {@code key + '\0' + value} strings.
+ * Records are read straight into a reusable buffer without creating intermediate strings.
+ * The first delimiter of a record separates a key from a value, other delimiters are a part of a value.
+ * Empty lines are skipped. Quoting is not supported.
+ * IOException thrown by the reader is stored in {@link #exception} and rethrown wrapped into RuntimeException.
+ */
+class DelimitedEntriesIterator implements Iterator<String> {
+    private final Reader reader;
+    private final char delimiter;
+    private final char buffer[] = new char[8192];
+    private final StringBuilder record = new StringBuilder();
+    private int position;
+    private int limit;
+    private int line;
+    private String next;
+    IOException exception;
+    
+    DelimitedEntriesIterator(Reader reader, char delimiter) {
+        if (delimiter == AbstractDAWGMap.KEY_VALUE_SEPARATOR || delimiter == '\n' || delimiter == '\r')
+            throw new IllegalArgumentException("Illegal delimiter");
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+    
+    private String readRecord() throws IOException {
+        while (true) {
+            record.setLength(0);
+            boolean delimiterFound = false;
+            boolean eof = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit < 0) {
+                        limit = 0;
+                        eof = true;
+                        break;
+                    }
+                }
+                char c = buffer[position++];
+                if (c == '\n')
+                    break;
+                if (c == AbstractDAWGMap.KEY_VALUE_SEPARATOR)
+                    throw new IllegalArgumentException("Line " + (line + 1) + " contains zero character");
+                if (c == delimiter && !delimiterFound) {
+                    record.append(AbstractDAWGMap.KEY_VALUE_SEPARATOR);
+                    delimiterFound = true;
+                } else
+                    record.append(c);
+            }
+            line++;
+            int length = record.length();
+            if (length > 0 && record.charAt(length - 1) == '\r')
+                record.setLength(--length);
+            if (length > 0) {
+                if (!delimiterFound)
+                    throw new IllegalArgumentException("Line " + line + " doesn't contain a delimiter");
+                return record.toString();
+            }
+            if (eof)
+                return null;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                exception = e;
+                throw new RuntimeException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        String ret = next;
+        next = null;
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,319 @@
+package org.quinto.dawg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a {@link CompressedDAWGSet} from an input that doesn't fit in memory.
+ * Added strings are collected in chunks limited by a memory budget. Each full chunk is sorted,
+ * deduplicated and spilled to a temporary file. At the end the sorted runs are merged
+ * and streamed into the incremental construction of a minimal DAWG,
+ * which freezes finished suffixes straight into the arrays of the result.
+ * Buffers of the runs merged at once fit in the budget, so the quantity of such runs is limited.
+ * If there are more runs, intermediate passes merge the oldest of them into longer runs
+ * until a single final pass remains.
+ * Neither the input nor a {@link ModifiableDAWGSet} is held in memory then: the memory needed
+ * for the input is bounded by the budget and the construction needs memory proportional
+ * to the size of the resulting compressed DAWG.
+ */
+public class ExternalDAWGBuilder {
+    /**
+     * Approximate memory occupied by a String besides its chars.
+     */
+    private static final int STRING_OVERHEAD_BYTES = 64;
+
+    private static final int RUN_BUFFER_BYTES = 1 << 16;
+    private static final int MIN_RUN_BUFFER_BYTES = 1 << 12;
+    private static final int MAX_FAN_IN = 64;
+
+    private static final Comparator<Run> RUNS_ORDER = new Comparator<Run>() {
+        @Override
+        public int compare(Run a, Run b) {
+            return a.current.compareTo(b.current);
+        }
+    };
+
+    private final long memoryBudget;
+    private final File tempDirectory;
+    private final boolean withIncomingTransitions;
+    private final List<File> runs = new ArrayList<File>();
+    private final List<String> chunk = new ArrayList<String>();
+    private final BitSet alphabet = new BitSet();
+    private long chunkBytes;
+    private long peakMemoryEstimate;
+    private int mergePassCount;
+    private boolean built;
+
+    /**
+     * @param memoryBudget              approximate quantity of bytes which the collected input strings
+     *                                  or buffers of the merged runs may occupy
+     * @param tempDirectory             a directory for temporary files or null to use the default one
+     * @param withIncomingTransitions   whether the resulting DAWG should support search by suffixes
+     */
+    public ExternalDAWGBuilder(long memoryBudget, File tempDirectory, boolean withIncomingTransitions) {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("memoryBudget should be positive");
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+        this.withIncomingTransitions = withIncomingTransitions;
+    }
+
+    public void add(String str) throws IOException {
+        if (built)
+            throw new IllegalStateException("DAWG is already built");
+        long bytes = STRING_OVERHEAD_BYTES + 2L * str.length();
+        // A chunk is spilled before it exceeds the budget.
+        if (!chunk.isEmpty() && chunkBytes + bytes > memoryBudget)
+            spill();
+        chunk.add(str);
+        for (int i = 0; i < str.length(); i++)
+            alphabet.set(str.charAt(i));
+        chunkBytes += bytes;
+        peakMemoryEstimate = Math.max(peakMemoryEstimate, chunkBytes);
+    }
+
+    public void addAll(Iterable<? extends String> strCollection) throws IOException {
+        for (String str : strCollection)
+            add(str);
+    }
+
+    /**
+     * Returns the quantity of sorted runs spilled to temporary files so far.
+     */
+    public int getSpillCount() {
+        return runs.size();
+    }
+
+    /**
+     * Returns the quantity of intermediate passes which merged some of the runs into a longer one.
+     */
+    public int getMergePassCount() {
+        return mergePassCount;
+    }
+
+    /**
+     * Returns an estimate of the peak quantity of bytes occupied by the collected strings,
+     * buffers of the merged runs and the arrays of the DAWG under construction.
+     */
+    public long getPeakMemoryEstimate() {
+        return peakMemoryEstimate;
+    }
+
+    private void spill() throws IOException {
+        String sorted[] = chunk.toArray(new String[chunk.size()]);
+        chunk.clear();
+        chunkBytes = 0;
+        Arrays.sort(sorted);
+        DataOutputStream dos = createRun(RUN_BUFFER_BYTES);
+        try {
+            String previous = null;
+            for (String str : sorted) {
+                if (!str.equals(previous))
+                    writeString(dos, str);
+                previous = str;
+            }
+        } finally {
+            dos.close();
+        }
+    }
+
+    private DataOutputStream createRun(int bufferBytes) throws IOException {
+        File file = File.createTempFile("dawg", ".run", tempDirectory);
+        runs.add(file);
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), bufferBytes));
+    }
+
+    private static void writeString(DataOutputStream dos, String str) throws IOException {
+        // Chars are written as is: unlike UTF-8 this keeps unpaired surrogates intact.
+        dos.writeInt(str.length());
+        dos.writeChars(str);
+    }
+
+    /**
+     * Merges the oldest runs into a new one until all the runs can be merged at once.
+     */
+    private void mergeRuns(int fanIn, int bufferBytes) throws IOException {
+        while (runs.size() > fanIn) {
+            List<File> merged = new ArrayList<File>(runs.subList(0, fanIn));
+            // The merged runs stay listed until they are written, so they are deleted in case of a failure too.
+            DataOutputStream dos = createRun(bufferBytes);
+            try {
+                Merge merge = new Merge(merged, bufferBytes);
+                try {
+                    for (String str = merge.next(); str != null; str = merge.next())
+                        writeString(dos, str);
+                } finally {
+                    merge.close();
+                }
+            } finally {
+                dos.close();
+            }
+            runs.subList(0, fanIn).clear();
+            for (File file : merged)
+                file.delete();
+            mergePassCount++;
+            peakMemoryEstimate = Math.max(peakMemoryEstimate, (fanIn + 1L) * bufferBytes);
+        }
+    }
+
+    /**
+     * Merges all the added strings into a minimal DAWG. Temporary files are deleted.
+     */
+    public CompressedDAWGSet build() throws IOException {
+        if (built)
+            throw new IllegalStateException("DAWG is already built");
+        built = true;
+        Merge merge = null;
+        try {
+            if (!runs.isEmpty() && !chunk.isEmpty())
+                spill();
+            // Each merged run and the output of an intermediate pass have a buffer.
+            int bufferBytes = (int)Math.max(MIN_RUN_BUFFER_BYTES, Math.min(RUN_BUFFER_BYTES, memoryBudget / (MAX_FAN_IN + 1)));
+            int fanIn = (int)Math.max(2, Math.min(MAX_FAN_IN, memoryBudget / bufferBytes - 1));
+            char letters[] = new char[alphabet.cardinality()];
+            for (int c = alphabet.nextSetBit(0), i = 0; c >= 0; c = alphabet.nextSetBit(c + 1))
+                letters[i++] = (char)c;
+            SortedStringsCompressor compressor = new SortedStringsCompressor(letters, withIncomingTransitions);
+            long inputBytes;
+            String previous = null;
+            if (runs.isEmpty()) {
+                // Everything fits in memory.
+                inputBytes = chunkBytes;
+                String sorted[] = chunk.toArray(new String[chunk.size()]);
+                chunk.clear();
+                Arrays.sort(sorted);
+                for (String str : sorted)
+                    if (!str.equals(previous))
+                        compressor.add(previous = str);
+            } else {
+                mergeRuns(fanIn, bufferBytes);
+                inputBytes = (long)bufferBytes * runs.size();
+                merge = new Merge(runs, bufferBytes);
+                for (String str = merge.next(); str != null; str = merge.next())
+                    compressor.add(str);
+            }
+            CompressedDAWGSet ret = compressor.compress();
+            peakMemoryEstimate = Math.max(peakMemoryEstimate, inputBytes + compressor.getPeakBytes());
+            return ret;
+        } finally {
+            if (merge != null)
+                merge.close();
+            for (File file : runs)
+                file.delete();
+            runs.clear();
+        }
+    }
+
+    /**
+     * Merges all the added strings into a minimal DAWG and serializes it to a given file.
+     */
+    public void build(File output) throws IOException {
+        CompressedDAWGSet dawg = build();
+        ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            oos.writeObject(dawg);
+        } finally {
+            oos.close();
+        }
+    }
+
+    /**
+     * Merges sorted runs into a sorted sequence of distinct strings.
+     */
+    private static class Merge {
+        private final List<Run> runs = new ArrayList<Run>();
+        private final PriorityQueue<Run> queue;
+        private String previous;
+
+        public Merge(List<File> files, int bufferBytes) throws IOException {
+            queue = new PriorityQueue<Run>(files.size(), RUNS_ORDER);
+            try {
+                for (File file : files) {
+                    Run run = new Run(file, bufferBytes);
+                    runs.add(run);
+                    if (run.current != null)
+                        queue.add(run);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the next string or null if there are no more strings.
+         */
+        public String next() throws IOException {
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                String str = run.current;
+                if (run.advance())
+                    queue.add(run);
+                // Runs are deduplicated individually, so equal strings of different runs are skipped here.
+                if (!str.equals(previous))
+                    return previous = str;
+            }
+            return null;
+        }
+
+        public void close() {
+            for (Run run : runs)
+                run.close();
+        }
+    }
+
+    /**
+     * A sorted run read from a temporary file.
+     */
+    private static class Run {
+        private final DataInputStream dis;
+        String current;
+
+        public Run(File file, int bufferBytes) throws IOException {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferBytes));
+            try {
+                advance();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        public boolean advance() throws IOException {
+            int length;
+            try {
+                length = dis.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            char chars[] = new char[length];
+            for (int i = 0; i < length; i++)
+                chars[i] = dis.readChar();
+            current = new String(chars);
+            return true;
+        }
+
+        public void close() {
+            try {
+                dis.close();
+            } catch (IOException e) {
+                // Temporary file is deleted anyway.
+            }
+        }
+    }
+}
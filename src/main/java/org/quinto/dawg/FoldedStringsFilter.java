@@ -0,0 +1,8 @@
+package org.quinto.dawg;
+
+/**
+ * A {@link StringsFilter} that also matches prefixes regardless of the chars a {@link CharFolding} doesn't distinguish.
+ */
+public interface FoldedStringsFilter extends StringsFilter {
+    public Iterable<String> getStringsStartingWithFolded(String prefix, CharFolding folding);
+}
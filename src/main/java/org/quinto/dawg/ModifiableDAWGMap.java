@@ -1,5 +1,17 @@
 package org.quinto.dawg;
 
+import java.io.FileInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
 public class ModifiableDAWGMap extends DAWGMap {
     public ModifiableDAWGMap() {
         super(new ModifiableDAWGSet());
@@ -13,7 +25,115 @@ public class ModifiableDAWGMap extends DAWGMap {
         super(dawg);
     }
     
+    /**
+     * Puts all the given entries into this map in a single pass.
+     * If this map already contains a key then its value is replaced.
+     * If a key is repeated then its last value wins.
+     * Entries sorted by key are added using the efficient incremental construction of a minimal DAWG.
+     
+     * @param entries       entries sorted by key
+     * @return true if and only if this map was changed as a result of this call
+     */
+    public boolean putAll(Iterable<? extends Entry<String, String>> entries) {
+        return putAllStringEntries(stringEntries(entries.iterator()));
+    }
+    
+    /**
+     * Puts all the entries read from a given reader into this map in a single pass.
+     * Each line should contain a key and a value separated by a delimiter (e.g. '\t' or ',').
+     * If this map already contains a key then its value is replaced.
+     * Lines sorted by key are added using the efficient incremental construction of a minimal DAWG.
+     
+     * @param reader        a source of lines
+     * @param delimiter     a char separating a key from a value
+     * @return true if and only if this map was changed as a result of this call
+     * @throws IOException  if a read operation cannot be carried out
+     */
+    public boolean putAll(Reader reader, char delimiter) throws IOException {
+        DelimitedEntriesIterator it = new DelimitedEntriesIterator(reader, delimiter);
+        try {
+            return putAllStringEntries(it);
+        } catch (RuntimeException e) {
+            if (e.getCause() == it.exception && it.exception != null)
+                throw it.exception;
+            throw e;
+        }
+    }
+    
+    /**
+     * Puts all the entries read from a given file into this map in a single pass.
+     * @see #putAll(Reader, char)
+     */
+    public boolean putAll(File dataFile, Charset charset, char delimiter) throws IOException {
+        FileInputStream fis = null;
+        IOException ex = null;
+        boolean ret = false;
+        try {
+            fis = new FileInputStream(dataFile);
+            ret = putAll(new InputStreamReader(fis, charset), delimiter);
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException e) {
+                    ex = e;
+                }
+            }
+        }
+        if (ex != null)
+            throw ex;
+        return ret;
+    }
+    
+    private boolean putAllStringEntries(final Iterator<String> stringEntries) {
+        // Replaced entries are removed after the pass to keep the construction incremental.
+        final Set<String> stale = new HashSet<String>();
+        boolean ret = dawg.addAll(new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return stringEntries.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        String stringEntry = stringEntries.next();
+                        int keyLength = stringEntry.indexOf(KEY_VALUE_SEPARATOR);
+                        CharSequence key = CharBuffer.wrap(stringEntry, 0, keyLength);
+                        // Previous strings are already added to the DAWG at this moment.
+                        if (dawg.containsStringsStartingWith(key, KEY_VALUE_SEPARATOR)) {
+                            for (String contained : dawg.getStringsStartingWith(stringEntry.substring(0, keyLength + 1)))
+                                if (!contained.equals(stringEntry))
+                                    stale.add(contained);
+                            stale.remove(stringEntry);
+                        }
+                        return stringEntry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        });
+        for (String stringEntry : stale)
+            ret |= dawg.remove(stringEntry);
+        return ret;
+    }
+    
     public CompressedDAWGMap compress() {
         return new CompressedDAWGMap(((ModifiableDAWGSet)dawg).compress());
     }
-}
\ No newline at end of file
+    
+    /**
+     * Creates an unmodifiable version of this map with a suffix index
+     * which speeds up {@link #containsValue} and search of keys by value.
+     * @see ModifiableDAWGSet#compressWithSuffixIndex
+     */
+    public CompressedDAWGMap compressWithSuffixIndex() {
+        return new CompressedDAWGMap(((ModifiableDAWGSet)dawg).compressWithSuffixIndex());
+    }
+}
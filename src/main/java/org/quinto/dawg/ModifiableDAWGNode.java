@@ -55,9 +55,20 @@ class ModifiableDAWGNode extends DAWGNode {
     //The int which will store this node's hash code after its been calculated (necessary due to how expensive the hashing calculation is)
     private Integer storedHashCode;
     
+    //The quantities of strings and of map keys in the right language of this node, cached and cleared along with storedHashCode
+    private int storedWordCount = -1;
+    private int storedKeyCount = -1;
+    
+    //Digests of the right language of this node, cached and cleared along with the quantities of strings
+    private boolean digestsStored;
+    private long storedFingerprint;
+    private int storedStringsHashCode;
+    private int storedPowerSum;
+    
     private final ModifiableDAWGSet graph;
     
-    private final NavigableMap<Character, Map<Integer, ModifiableDAWGNode>> incomingTransitionTreeMap;
+    //Created along with the node if the graph indexes incoming transitions or later when the graph builds the index
+    private NavigableMap<Character, Map<Integer, ModifiableDAWGNode>> incomingTransitionTreeMap;
     
     /**
      * Constructs an ModifiableDAWGNode.
@@ -70,7 +81,7 @@ class ModifiableDAWGNode extends DAWGNode {
         this.id = id;
         this.isAcceptNode = isAcceptNode;
         outgoingTransitionTreeMap = new TreeMap<Character, ModifiableDAWGNode>();
-        incomingTransitionTreeMap = graph == null || graph.isWithIncomingTransitions() ? new TreeMap<Character, Map<Integer, ModifiableDAWGNode>>() : null;
+        incomingTransitionTreeMap = graph == null || graph.isIndexingIncomingTransitions() ? new TreeMap<Character, Map<Integer, ModifiableDAWGNode>>() : null;
     }
     
     /**
@@ -85,7 +96,7 @@ class ModifiableDAWGNode extends DAWGNode {
         graph = node.graph;
         isAcceptNode = node.isAcceptNode;
         outgoingTransitionTreeMap = new TreeMap<Character, ModifiableDAWGNode>(node.outgoingTransitionTreeMap);
-        incomingTransitionTreeMap = graph == null || graph.isWithIncomingTransitions() ? new TreeMap<Character, Map<Integer, ModifiableDAWGNode>>() : null;
+        incomingTransitionTreeMap = graph == null || graph.isIndexingIncomingTransitions() ? new TreeMap<Character, Map<Integer, ModifiableDAWGNode>>() : null;
         
         //Loop through the nodes in this node's outgoing transition set, incrementing the number of
         //incoming transitions of each by 1 (to account for this newly created node's outgoing transitions)
@@ -94,18 +105,36 @@ class ModifiableDAWGNode extends DAWGNode {
     }
     
     public void addIncomingTransition(char letter, ModifiableDAWGNode node) {
-        if (graph == null || graph.isWithIncomingTransitions()) {
-            Map<Integer, ModifiableDAWGNode> letterIncomingTransitions = incomingTransitionTreeMap.get(letter);
-            if (letterIncomingTransitions == null)
-                incomingTransitionTreeMap.put(letter, letterIncomingTransitions = new HashMap<Integer, ModifiableDAWGNode>());
-            if (letterIncomingTransitions.put(node.getId(), node) != node)
-                incomingTransitionCount++;
-        } else
+        if (graph == null || graph.isIndexingIncomingTransitions())
+            indexIncomingTransition(letter, node, true);
+        else
             incomingTransitionCount++;
     }
     
+    /**
+     * Stores an incoming transition in the index of this node.
+     * @param count     whether the incoming transition count should be updated, i.e. it doesn't account this transition yet
+     */
+    void indexIncomingTransition(char letter, ModifiableDAWGNode node, boolean count) {
+        if (incomingTransitionTreeMap == null)
+            incomingTransitionTreeMap = new TreeMap<Character, Map<Integer, ModifiableDAWGNode>>();
+        Map<Integer, ModifiableDAWGNode> letterIncomingTransitions = incomingTransitionTreeMap.get(letter);
+        if (letterIncomingTransitions == null)
+            incomingTransitionTreeMap.put(letter, letterIncomingTransitions = new HashMap<Integer, ModifiableDAWGNode>());
+        if (letterIncomingTransitions.put(node.getId(), node) != node && count)
+            incomingTransitionCount++;
+    }
+    
+    /**
+     * Creates an empty index of incoming transitions if there is none.
+     */
+    void createIncomingTransitionsIndex() {
+        if (incomingTransitionTreeMap == null)
+            incomingTransitionTreeMap = new TreeMap<Character, Map<Integer, ModifiableDAWGNode>>();
+    }
+    
     public void removeIncomingTransition(char letter, ModifiableDAWGNode node) {
-        if (graph == null || graph.isWithIncomingTransitions()) {
+        if (graph == null || graph.isIndexingIncomingTransitions()) {
             Map<Integer, ModifiableDAWGNode> letterIncomingTransitions = incomingTransitionTreeMap.get(letter);
             if (letterIncomingTransitions != null) {
                 if (letterIncomingTransitions.remove(node.getId()) != null)
@@ -196,6 +225,8 @@ class ModifiableDAWGNode extends DAWGNode {
     public boolean setAcceptStateStatus(boolean isAcceptNode) {
         boolean result = this.isAcceptNode != isAcceptNode;
         this.isAcceptNode = isAcceptNode;
+        if (result)
+            clearStoredCounts();
         return result;
     }
     
@@ -282,6 +313,10 @@ class ModifiableDAWGNode extends DAWGNode {
         return nodeStack;
     }
     
+    boolean isHashCodeStored() {
+        return storedHashCode != null;
+    }
+    
     /**
      * Retrieves this node's outgoing transitions.
      
@@ -315,7 +350,7 @@ class ModifiableDAWGNode extends DAWGNode {
     public void reassignOutgoingTransition(char letter, ModifiableDAWGNode oldTargetNode, ModifiableDAWGNode newTargetNode) {
         oldTargetNode.removeIncomingTransition(letter, this);
         newTargetNode.addIncomingTransition(letter, this);
-        if (graph != null && graph.isWithIncomingTransitions()) {
+        if (graph != null && graph.isIndexingIncomingTransitions()) {
             if (oldTargetNode.isAcceptNode() && !oldTargetNode.hasIncomingTransition(letter))
                 ((ModifiableDAWGNode)graph.getEndNode()).removeIncomingTransition(letter, oldTargetNode);
             if (newTargetNode.isAcceptNode())
@@ -323,6 +358,7 @@ class ModifiableDAWGNode extends DAWGNode {
         }
         
         outgoingTransitionTreeMap.put(letter, newTargetNode);
+        clearStoredCounts();
     }
     
     /**
@@ -339,6 +375,7 @@ class ModifiableDAWGNode extends DAWGNode {
         newTargetNode.addIncomingTransition(letter, this);
         
         outgoingTransitionTreeMap.put(letter, newTargetNode);
+        clearStoredCounts();
         return newTargetNode;
     }
     
@@ -350,6 +387,7 @@ class ModifiableDAWGNode extends DAWGNode {
      */
     public void removeOutgoingTransition(char letter) {
         outgoingTransitionTreeMap.remove(letter);
+        clearStoredCounts();
     }
     
     /**
@@ -357,6 +395,108 @@ class ModifiableDAWGNode extends DAWGNode {
      */
     public void clearStoredHashCode() {
         storedHashCode = null;
+        clearStoredCounts();
+    }
+    
+    private void clearStoredCounts() {
+        storedWordCount = -1;
+        storedKeyCount = -1;
+        digestsStored = false;
+    }
+    
+    /**
+     * Returns the quantity of strings in the right language of this node.
+     * The result is cached until the right language of this node changes.
+     */
+    public int getWordCount() {
+        if (storedWordCount < 0) {
+            int count = isAcceptNode ? 1 : 0;
+            for (ModifiableDAWGNode child : outgoingTransitionTreeMap.values())
+                count += child.getWordCount();
+            storedWordCount = count;
+        }
+        return storedWordCount;
+    }
+    
+    /**
+     * Returns the quantity of distinct map keys in the right language of this node, i.e. the quantity of
+     * distinct parts of strings preceding {@link AbstractDAWGMap#KEY_VALUE_SEPARATOR}.
+     * The result is cached until the right language of this node changes.
+     */
+    public int getKeyCount() {
+        if (storedKeyCount < 0) {
+            int count = 0;
+            for (Entry<Character, ModifiableDAWGNode> transition : outgoingTransitionTreeMap.entrySet())
+                count += transition.getKey() == AbstractDAWGMap.KEY_VALUE_SEPARATOR ? 1 : transition.getValue().getKeyCount();
+            storedKeyCount = count;
+        }
+        return storedKeyCount;
+    }
+    
+    /**
+     * Returns a fingerprint of the right language of this node.
+     * The result is cached until the right language of this node changes.
+     * @see DAWGSet#getFingerprint
+     */
+    public long getFingerprint() {
+        calculateDigests();
+        return storedFingerprint;
+    }
+    
+    /**
+     * Returns the sum of hash codes of strings in the right language of this node.
+     * The result is cached until the right language of this node changes.
+     */
+    public int getStringsHashCode() {
+        calculateDigests();
+        return storedStringsHashCode;
+    }
+    
+    private void calculateDigests() {
+        if (digestsStored)
+            return;
+        //Nodes are calculated after their children, so long strings don't overflow the stack
+        Deque<ModifiableDAWGNode> stack = new ArrayDeque<ModifiableDAWGNode>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            ModifiableDAWGNode node = stack.peek();
+            if (node.digestsStored) {
+                stack.pop();
+                continue;
+            }
+            boolean ready = true;
+            for (ModifiableDAWGNode child : node.outgoingTransitionTreeMap.values()) {
+                if (!child.digestsStored) {
+                    stack.push(child);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                node.storeDigests();
+            }
+        }
+    }
+    
+    /**
+     * Stores digests of this node calculated from the stored digests of its children.
+     */
+    private void storeDigests() {
+        long transitionsFingerprint = 0L;
+        int stringsHashCode = 0;
+        int powerSum = 0;
+        for (Entry<Character, ModifiableDAWGNode> transition : outgoingTransitionTreeMap.entrySet()) {
+            char letter = transition.getKey();
+            ModifiableDAWGNode child = transition.getValue();
+            transitionsFingerprint += DAWGSet.fingerprintTransition(letter, child.storedFingerprint);
+            stringsHashCode += letter * child.storedPowerSum + child.storedStringsHashCode;
+            powerSum += child.storedPowerSum;
+        }
+        storedFingerprint = DAWGSet.fingerprintNode(isAcceptNode, transitionsFingerprint);
+        storedStringsHashCode = stringsHashCode;
+        //The sum of 31^length over the strings: the weight of a char preceding them in their hash codes
+        storedPowerSum = (isAcceptNode ? 1 : 0) + 31 * powerSum;
+        digestsStored = true;
     }
     
     /**
@@ -394,6 +534,7 @@ class ModifiableDAWGNode extends DAWGNode {
 
     public void removeAllOutgoingTransitions() {
         outgoingTransitionTreeMap.clear();
+        clearStoredCounts();
     }
 
     public void removeAllIncomingTransitions() {
@@ -32,6 +32,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -45,7 +46,9 @@ import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import org.quinto.dawg.util.UnmodifiableNavigableSet;
 
 /**
@@ -61,6 +64,10 @@ public class ModifiableDAWGSet extends DAWGSet {
     
     private final boolean withIncomingTransitions;
     
+    //Whether nodes keep their incoming transitions up to date. A DAWG created without an explicit flag
+    //only counts them until the first suffix search or compression with incoming transitions.
+    private boolean incomingTransitionsIndexed;
+    
     //ModifiableDAWGNode from which all others in the structure are reachable
     private final ModifiableDAWGNode sourceNode;
     
@@ -80,6 +87,9 @@ public class ModifiableDAWGSet extends DAWGSet {
     //Total number of words contained in this ModifiableDAWGSet.
     private int size;
     
+    //Incremented on each change of the contents, used to invalidate caches of query results.
+    private int modificationCount;
+    
     /**
      * A flag indicating that the optimization of the alphabet won't change it
      * (i.e. no removals were performed). False value means that the alphabet probably
@@ -90,12 +100,39 @@ public class ModifiableDAWGSet extends DAWGSet {
     //Maximal length of all words added to this DAWG. Does not decrease on removing.
     private int maxLength;
     
+    private final DAWGBuildMetrics buildMetrics = new DAWGBuildMetrics(this);
+    
+    private BuildListener buildListener;
+    
+    //Quantity of processed words between two notifications of buildListener.
+    private long progressInterval;
+    
+    //Set by cancelBuild, possibly from another thread, and checked by addAll before each word.
+    private volatile boolean cancelled;
+    
+    /**
+     * Receives progress notifications from the thread building a {@link ModifiableDAWGSet}.
+     */
+    public interface BuildListener {
+        /**
+         * Invoked periodically while words are being added, at the end of {@link ModifiableDAWGSet#addAll}
+         * and at the end of {@link ModifiableDAWGSet#compress}.
+         * The building may be aborted from here with {@link ModifiableDAWGSet#cancelBuild}.
+         * @param dawg      the set being built
+         * @param metrics   counters of the set being built
+         */
+        public void progress(ModifiableDAWGSet dawg, DAWGBuildMetrics metrics);
+    }
+    
     /**
      * Creates a DAWG from an iterable of Strings with incoming transitions for fast suffix search.
+     * Incoming transitions are indexed on the first suffix search or compression, so building
+     * doesn't pay for them if they are never used.
      * @param strCollection     an {@link java.util.Iterable} containing Strings that the DAWG will contain
      */
     public ModifiableDAWGSet(Iterable<? extends String> strCollection) {
-        this(true, strCollection);
+        this();
+        addAll(strCollection);
     }
     
     /**
@@ -111,18 +148,25 @@ public class ModifiableDAWGSet extends DAWGSet {
     
     /**
      * Creates empty DAWG with incoming transitions for fast suffix search. Use {@link #addString} to fill it.
+     * Incoming transitions are indexed on the first suffix search or compression, so building
+     * doesn't pay for them if they are never used.
      */
     public ModifiableDAWGSet() {
-        this(true);
+        this(true, false);
     }
     
     /**
      * Creates empty DAWG. Use {@link #addString} to fill it.
      * @param withIncomingTransitions a flag indicating that the DAWG should store incoming transitions
-     * for fast suffix search
+     * for fast suffix search; they are kept up to date on each modification
      */
     public ModifiableDAWGSet(boolean withIncomingTransitions) {
+        this(withIncomingTransitions, withIncomingTransitions);
+    }
+    
+    private ModifiableDAWGSet(boolean withIncomingTransitions, boolean incomingTransitionsIndexed) {
         this.withIncomingTransitions = withIncomingTransitions;
+        this.incomingTransitionsIndexed = incomingTransitionsIndexed;
         sourceNode = new ModifiableDAWGNode(this, false, id++);
         endNode = new ModifiableDAWGNode(this, false, id++);
     }
@@ -265,6 +309,13 @@ public class ModifiableDAWGSet extends DAWGSet {
 
         //Add all the Strings in strCollection to the ModifiableDAWGSet.
         for (String currentString : strCollection) {
+            if (cancelled) {
+                cancelled = false;
+                //Leave the DAWG minimal: only the last added String is not minimized yet.
+                if (!previousString.isEmpty())
+                    minimize(sourceNode, previousString);
+                throw new CancellationException("Building of DAWG was cancelled after " + buildMetrics.wordsProcessed + " words");
+            }
             empty = false;
             int mpsIndex = calculateMinimizationProcessingStartIndex(previousString, currentString);
 
@@ -273,19 +324,23 @@ public class ModifiableDAWGSet extends DAWGSet {
             if (mpsIndex != -1) {
                 String transitionSubstring = previousString.substring(0, mpsIndex);
                 String minimizationProcessingSubString = previousString.substring(mpsIndex);
-                replaceOrRegister(sourceNode.transition(transitionSubstring), minimizationProcessingSubString);
+                minimize(sourceNode.transition(transitionSubstring), minimizationProcessingSubString);
             }
 
             result |= addStringInternal(currentString);
             previousString = currentString;
+            wordProcessed();
         }
+        cancelled = false;
 
         if (!empty) {
             //Since we delay the minimization of the previously-added String
             //until after we read the next one, we need to have a seperate
             //statement to minimize the absolute last String.
             if (!previousString.isEmpty())
-                replaceOrRegister(sourceNode, previousString);
+                minimize(sourceNode, previousString);
+            if (buildListener != null)
+                buildListener.progress(this, buildMetrics);
         }
         return result;
     }
@@ -300,15 +355,91 @@ public class ModifiableDAWGSet extends DAWGSet {
     public boolean add(String str) {
         boolean result = addStringInternal(str);
         if (!str.isEmpty())
-            replaceOrRegister(sourceNode, str);
+            minimize(sourceNode, str);
+        wordProcessed();
         return result;
     }
+    
+    private void wordProcessed() {
+        buildMetrics.wordsProcessed++;
+        if (buildListener != null && buildMetrics.wordsProcessed % progressInterval == 0L)
+            buildListener.progress(this, buildMetrics);
+    }
+    
+    /**
+     * Returns the counters of building of this set. They are accumulated until {@link DAWGBuildMetrics#reset}.
+     */
+    public DAWGBuildMetrics getBuildMetrics() {
+        return buildMetrics;
+    }
+    
+    /**
+     * Sets a listener notified once per a given quantity of processed words, at the end of each
+     * {@link #addAll} and at the end of {@link #compress}.
+     * @param buildListener     a listener or null to remove the current one
+     * @param wordsInterval     quantity of words between two notifications
+     */
+    public void setBuildListener(BuildListener buildListener, long wordsInterval) {
+        if (wordsInterval <= 0L)
+            throw new IllegalArgumentException("wordsInterval should be positive");
+        this.buildListener = buildListener;
+        this.progressInterval = wordsInterval;
+    }
+    
+    /**
+     * Requests the running (or the next) {@link #addAll} to stop. This method may be called from any thread.
+     * The aborted {@link #addAll} throws {@link CancellationException}; the words added before
+     * remain in the set, and the set stays minimal.
+     */
+    public void cancelBuild() {
+        cancelled = true;
+    }
 
     @Override
     public boolean isWithIncomingTransitions() {
         return withIncomingTransitions;
     }
     
+    /**
+     * Determines whether nodes keep their incoming transitions now rather than only count them.
+     */
+    boolean isIndexingIncomingTransitions() {
+        return incomingTransitionsIndexed;
+    }
+    
+    /**
+     * Builds the index of incoming transitions of all nodes in a single pass over the transitions
+     * if the DAWG was created with lazy indexing. Since then the index is kept up to date on each modification.
+     */
+    private void indexIncomingTransitions() {
+        if (incomingTransitionsIndexed || !withIncomingTransitions)
+            return;
+        endNode.removeAllIncomingTransitions();
+        endNode.createIncomingTransitionsIndex();
+        Deque<ModifiableDAWGNode> stack = new ArrayDeque<ModifiableDAWGNode>();
+        BitSet visited = new BitSet();
+        stack.add(sourceNode);
+        visited.set(sourceNode.getId());
+        while (true) {
+            ModifiableDAWGNode node = stack.pollLast();
+            if (node == null)
+                break;
+            node.createIncomingTransitionsIndex();
+            for (Entry<Character, ModifiableDAWGNode> e : node.getOutgoingTransitions().entrySet()) {
+                ModifiableDAWGNode child = e.getValue();
+                // Incoming transitions are already counted by nodes.
+                child.indexIncomingTransition(e.getKey(), node, false);
+                if (child.isAcceptNode())
+                    endNode.indexIncomingTransition(e.getKey(), child, true);
+                if (!visited.get(child.getId())) {
+                    visited.set(child.getId());
+                    stack.add(child);
+                }
+            }
+        }
+        incomingTransitionsIndexed = true;
+    }
+    
     private void splitTransitionPath(ModifiableDAWGNode originNode, String storedStringSubstr) {
         HashMap<String, Object> firstConfluenceNodeDataHashMap = getTransitionPathFirstConfluenceNodeData(originNode, storedStringSubstr);
         Integer toFirstConfluenceNodeTransitionCharIndex = (Integer)firstConfluenceNodeDataHashMap.get("toConfluenceNodeTransitionCharIndex");
@@ -318,6 +449,7 @@ public class ModifiableDAWGSet extends DAWGSet {
             ModifiableDAWGNode firstConfluenceNodeParent = originNode.transition(storedStringSubstr.substring(0, toFirstConfluenceNodeTransitionCharIndex));
             char letter = storedStringSubstr.charAt(toFirstConfluenceNodeTransitionCharIndex);
             ModifiableDAWGNode firstConfluenceNodeClone = firstConfluenceNode.clone(firstConfluenceNodeParent, letter, id++);
+            buildMetrics.clones++;
             if (firstConfluenceNodeClone.isAcceptNode())
                 endNode.addIncomingTransition(letter, firstConfluenceNodeClone);
             transitionCount += firstConfluenceNodeClone.getOutgoingTransitionCount();
@@ -380,11 +512,12 @@ public class ModifiableDAWGSet extends DAWGSet {
         if (str.isEmpty() || strEndNode.hasOutgoingTransitions()) {
             boolean result = strEndNode.setAcceptStateStatus(false);
             if (!str.isEmpty())
-                replaceOrRegister(sourceNode, str);
+                minimize(sourceNode, str);
             if (result) {
                 size--;
+                modificationCount++;
                 if (str.isEmpty()) {
-                    if (isWithIncomingTransitions())
+                    if (isIndexingIncomingTransitions())
                         for (char c : strEndNode.getIncomingTransitions().keySet())
                             endNode.removeIncomingTransition(c, strEndNode);
                 } else {
@@ -409,9 +542,10 @@ public class ModifiableDAWGSet extends DAWGSet {
                 latestNonSoloTransitionPathNode.removeOutgoingTransition(str.charAt(toBeRemovedTransitionLabelCharIndex));
                 transitionCount -= str.length() - toBeRemovedTransitionLabelCharIndex;
                 endNode.removeIncomingTransition(str.charAt(str.length() - 1), strEndNode);
-                replaceOrRegister(sourceNode, prefix);
+                minimize(sourceNode, prefix);
             }
             size--;
+            modificationCount++;
             optimized = false;
             return true;
         }
@@ -496,6 +630,12 @@ public class ModifiableDAWGSet extends DAWGSet {
      * @param originNode        the ModifiableDAWGNode that the transition path corresponding to str starts from
      * @param str              a String related to a transition path
      */
+    private void minimize(ModifiableDAWGNode originNode, String str) {
+        long start = System.nanoTime();
+        replaceOrRegister(originNode, str);
+        buildMetrics.minimizationNanos += System.nanoTime() - start;
+    }
+    
     private void replaceOrRegister(ModifiableDAWGNode originNode, String str) {
         char transitionLabelChar = str.charAt(0);
         ModifiableDAWGNode relevantTargetNode = originNode.transition(transitionLabelChar);
@@ -509,6 +649,7 @@ public class ModifiableDAWGSet extends DAWGSet {
         //transitions paths that can be traversed from them and nodes able to be reached from them;
         //nodes with the same equivalence classes will hash to the same bucket.
         ModifiableDAWGNode equivalentNode = equivalenceClassNodeHashMap.get(relevantTargetNode);
+        buildMetrics.registerLookups++;
         
         //if there is no node with the same right language as relevantTargetNode
         if (equivalentNode == null)
@@ -516,6 +657,7 @@ public class ModifiableDAWGSet extends DAWGSet {
         //if there is another node with the same right language as relevantTargetNode, reassign the
         //transition between originNode and relevantTargetNode, to originNode and the node representing the equivalence class of interest
         else if (equivalentNode != relevantTargetNode) {
+            buildMetrics.registerHits++;
             relevantTargetNode.decrementTargetIncomingTransitionCounts();
             transitionCount -= relevantTargetNode.getOutgoingTransitionCount(); //Since this method is recursive, the outgoing transitions of all of relevantTargetNode's child nodes have already been reassigned,
                                                                                 //so we only need to decrement the transition count by the relevantTargetNode's outgoing transition count
@@ -546,12 +688,14 @@ public class ModifiableDAWGSet extends DAWGSet {
                 alphabet.add(currentChar);
             }
             size++;
+            modificationCount++;
             return true;
         } else if (originNode.setAcceptStateStatus(true)) {
-            if (isWithIncomingTransitions())
+            if (isIndexingIncomingTransitions())
                 for (char c : originNode.getIncomingTransitions().keySet())
                     endNode.addIncomingTransition(c, originNode);
             size++;
+            modificationCount++;
             return true;
         } else
             return false;
@@ -564,6 +708,8 @@ public class ModifiableDAWGSet extends DAWGSet {
      */
     private void removeTransitionPathRegisterEntries(String str) {
         ModifiableDAWGNode currentNode = sourceNode;
+        //sourceNode is never registered but its cached values depend on the path as well.
+        currentNode.clearStoredHashCode();
 
         int charCount = str.length();
         
@@ -618,6 +764,7 @@ public class ModifiableDAWGSet extends DAWGSet {
             }
 
             transitionCount += clonedNode.getOutgoingTransitionCount();
+            buildMetrics.clones++;
 
             //If this isn't the first node we've cloned, reassign clonedNode's transition labeled
             //with the lastTransitionChar (which points to the last targetNode) to the last clone.
@@ -729,7 +876,8 @@ public class ModifiableDAWGSet extends DAWGSet {
         node.setTransitionSetBeginIndex(nodeStart);
         for (Map.Entry<Character, Map<Integer, ModifiableDAWGNode>> e : node.getIncomingTransitions().entrySet()) {
             char c = e.getKey();
-            for (ModifiableDAWGNode child : e.getValue().values()) {
+            // Ordered by ids, so the layout doesn't depend on the order the incoming transitions were indexed in.
+            for (ModifiableDAWGNode child : new TreeMap<Integer, ModifiableDAWGNode>(e.getValue()).values()) {
                 if (child.getTransitionSetBeginIndex() == -1) {
                     createCompressedIncomingTransitionsData(incomingData, child, childrenStart, c, nextFreeIndex[0], nextFreeIndex);
                     childrenStart += CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS;
@@ -761,11 +909,20 @@ public class ModifiableDAWGSet extends DAWGSet {
      * @return an instance of {@link CompressedDAWGSet} containing all the words added to this DAWG
      */
     public CompressedDAWGSet compress() {
+        return compress(isWithIncomingTransitions());
+    }
+    
+    private CompressedDAWGSet compress(boolean withIncomingTransitions) {
+        long start = System.nanoTime();
+        if (withIncomingTransitions)
+            indexIncomingTransitions();
         optimizeLetters();
         boolean largeAlphabet = alphabet.size() > 64;
         CompressedDAWGSet compressed = largeAlphabet ? new CompressedDAWGSetLargeAlphabet() : new CompressedDAWGSet();
         compressed.size = size();
         compressed.maxLength = getMaxLength();
+        compressed.hashCode = sourceNode.getStringsHashCode();
+        compressed.fingerprint = sourceNode.getFingerprint();
         compressed.alphabet = getAlphabet();
         compressed.letters = new char[alphabet.size()];
         int i = 0;
@@ -789,7 +946,7 @@ public class ModifiableDAWGSet extends DAWGSet {
             node.setTransitionSetLetters(null);
             stack.addAll(node.getOutgoingTransitions().values());
         }
-        if (isWithIncomingTransitions()) {
+        if (withIncomingTransitions) {
             compressed.incomingData = new int[(transitionCount + endNode.getIncomingTransitionCount() + 1) * CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS];
             createCompressedIncomingTransitionsData(compressed.incomingData, endNode, 0, '\0', CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS, new int[]{CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS});
             //Clear all transition begin indexes.
@@ -804,11 +961,66 @@ public class ModifiableDAWGSet extends DAWGSet {
                     stack.addAll(map.values());
             }
         }
+        buildMetrics.compressionNanos += System.nanoTime() - start;
+        if (buildListener != null)
+            buildListener.progress(this, buildMetrics);
+        return compressed;
+    }
+    
+    /**
+     * Creates a compact version of this DAWG where each transition occupies a few bytes.
+     * A node with fewer than 4 transitions stores a list of records: flags, an index of its letter
+     * and a variable-length offset of the target which is omitted for targets without transitions
+     * and for targets laid out right after their parents. Lookups scan such short lists linearly.
+     * A node with 4 or more transitions stores a bitmap of its letters followed by fixed-size records
+     * of flags and an offset, so a transition is located by counting bits of the bitmap without a scan.
+     * The result does not store incoming transitions, so suffix search enumerates all the words.
+     * If the alphabet contains more than 256 letters then this method is equivalent to {@link #compress}.
+     * @return an instance of {@link CompressedDAWGSet} containing all the words added to this DAWG
+     */
+    public CompressedDAWGSet compressToBytes() {
+        optimizeLetters();
+        if (alphabet.size() > CompressedDAWGSetBytes.MAX_LETTERS)
+            return compress();
+        long start = System.nanoTime();
+        CompressedDAWGSetBytes compressed = new CompressedDAWGSetBytes();
+        compressed.size = size();
+        compressed.maxLength = getMaxLength();
+        compressed.hashCode = sourceNode.getStringsHashCode();
+        compressed.fingerprint = sourceNode.getFingerprint();
+        compressed.alphabet = getAlphabet();
+        compressed.letters = new char[alphabet.size()];
+        int i = 0;
+        for (char c : alphabet)
+            compressed.letters[i++] = c;
+        compressed.encode(sourceNode);
+        buildMetrics.compressionNanos += System.nanoTime() - start;
+        if (buildListener != null)
+            buildListener.progress(this, buildMetrics);
+        return compressed;
+    }
+    
+    /**
+     * Creates a compressed version of this DAWG accompanied by a suffix index: a minimal DAWG of reversed words.
+     * Suffix search follows a single path in the index instead of expanding sets of nodes along incoming transitions,
+     * and its results are sorted in order of reversed strings.
+     * Incoming transitions are not stored in the result.
+     * @return an instance of {@link CompressedDAWGSet} containing all the words added to this DAWG
+     */
+    public CompressedDAWGSet compressWithSuffixIndex() {
+        CompressedDAWGSet compressed = compress(false);
+        String reversed[] = new String[size()];
+        int i = 0;
+        for (String word : this)
+            reversed[i++] = CompressedDAWGSet.reverse(word);
+        Arrays.sort(reversed);
+        compressed.suffixIndex = new ModifiableDAWGSet(false, Arrays.asList(reversed)).compress();
         return compressed;
     }
     
     @Override
     Collection<? extends DAWGNode> getNodesBySuffix(String suffix) {
+        indexIncomingTransitions();
         char suffixText[] = suffix.toCharArray();
         char lastChar = suffixText[suffixText.length - 1];
         Map<Integer, ModifiableDAWGNode> wordEndings = endNode.getIncomingTransitions().get(lastChar);
@@ -835,19 +1047,11 @@ public class ModifiableDAWGSet extends DAWGSet {
     private void optimizeLetters() {
         if (optimized)
             return;
-        NavigableSet<Character> newLetters = new TreeSet<Character>();
-        enumerateAllLetters(sourceNode, newLetters);
+        NavigableSet<Character> newLetters = getStatistics().getAlphabet();
         alphabet.clear();
         alphabet.addAll(newLetters);
         optimized = true;
     }
-    
-    private void enumerateAllLetters(ModifiableDAWGNode node, NavigableSet<Character> newLetters) {
-        for (Entry<Character, ModifiableDAWGNode> e : node.getOutgoingTransitions().entrySet()) {
-            newLetters.add(e.getKey());
-            enumerateAllLetters(e.getValue(), newLetters);
-        }
-    }
 
     @Override
     int getMaxLength() {
@@ -884,20 +1088,99 @@ public class ModifiableDAWGSet extends DAWGSet {
         return new UnmodifiableNavigableSet<Character>(alphabet);
     }
     
-    private void countNodes(ModifiableDAWGNode originNode, HashSet<Integer> nodeIDHashSet) {
-        nodeIDHashSet.add(originNode.getId());
-        
-        NavigableMap<Character, ModifiableDAWGNode> transitionTreeMap = originNode.getOutgoingTransitions();
-        
-        for (ModifiableDAWGNode transition : transitionTreeMap.values())
-            countNodes(transition, nodeIDHashSet);
+    @Override
+    public int getNodeCount() {
+        return getStatistics().getNodeCount();
     }
     
+    /**
+     * Returns the fingerprint of the source node. Nodes cache their fingerprints,
+     * so only the nodes on the paths of strings added or removed since the last call are visited.
+     */
     @Override
-    public int getNodeCount() {
-        HashSet<Integer> ids = new HashSet<Integer>();
-        countNodes(sourceNode, ids);
-        return ids.size();
+    public long getFingerprint() {
+        return sourceNode.getFingerprint();
+    }
+    
+    /**
+     * Returns the sum of hash codes of the strings as other Set implementations do.
+     * It's calculated and cached by nodes along with their fingerprints.
+     */
+    @Override
+    public int hashCode() {
+        return sourceNode.getStringsHashCode();
+    }
+    
+    /**
+     * Calculates structural statistics of this DAWG. They are not cached, so each call traverses the graph.
+     */
+    @Override
+    public DAWGStatistics getStatistics() {
+        // Node numbers indexed by node id.
+        int numbers[] = new int[id];
+        Arrays.fill(numbers, -1);
+        List<ModifiableDAWGNode> queue = new ArrayList<ModifiableDAWGNode>();
+        queue.add(sourceNode);
+        numbers[sourceNode.getId()] = 0;
+        DAWGStatistics.Builder builder = new DAWGStatistics.Builder(sourceNode.isAcceptNode());
+        for (int i = 0; i < queue.size(); i++) {
+            builder.addNode();
+            for (Entry<Character, ModifiableDAWGNode> e : queue.get(i).getOutgoingTransitions().entrySet()) {
+                ModifiableDAWGNode child = e.getValue();
+                if (numbers[child.getId()] < 0) {
+                    numbers[child.getId()] = queue.size();
+                    queue.add(child);
+                }
+                builder.addTransition(e.getKey(), numbers[child.getId()], child.isAcceptNode());
+            }
+        }
+        return builder.build();
+    }
+    
+    @Override
+    void estimateMemoryFootprint(DAWGMemoryFootprint footprint) {
+        HashSet<Integer> visited = new HashSet<Integer>();
+        Deque<ModifiableDAWGNode> stack = new ArrayDeque<ModifiableDAWGNode>();
+        stack.add(sourceNode);
+        visited.add(sourceNode.getId());
+        while (true) {
+            ModifiableDAWGNode node = stack.pollLast();
+            if (node == null)
+                break;
+            estimateNodeFootprint(node, footprint);
+            footprint.addNodeFanOut(node.getOutgoingTransitionCount());
+            for (ModifiableDAWGNode child : node.getOutgoingTransitions().values())
+                if (visited.add(child.getId()))
+                    stack.add(child);
+        }
+        estimateNodeFootprint(endNode, footprint);
+        footprint.add(DAWGMemoryFootprint.Component.REGISTER, DAWGMemoryFootprint.hashMapBytes(equivalenceClassNodeHashMap.size()));
+        // TreeSet wrapping a TreeMap.
+        long lettersBytes = DAWGMemoryFootprint.align(DAWGMemoryFootprint.OBJECT_HEADER_BYTES + DAWGMemoryFootprint.REFERENCE_BYTES) + DAWGMemoryFootprint.TREE_MAP_BYTES;
+        for (char c : alphabet)
+            lettersBytes += DAWGMemoryFootprint.TREE_MAP_ENTRY_BYTES + DAWGMemoryFootprint.boxedCharBytes(c);
+        footprint.add(DAWGMemoryFootprint.Component.LETTERS, lettersBytes);
+    }
+    
+    private void estimateNodeFootprint(ModifiableDAWGNode node, DAWGMemoryFootprint footprint) {
+        // Header, a long, 7 ints, 2 booleans and 5 references.
+        footprint.add(DAWGMemoryFootprint.Component.NODES, DAWGMemoryFootprint.align(DAWGMemoryFootprint.OBJECT_HEADER_BYTES + 8 + 7 * 4 + 2 + 5 * DAWGMemoryFootprint.REFERENCE_BYTES));
+        footprint.add(DAWGMemoryFootprint.Component.TREE_MAPS, isIndexingIncomingTransitions() ? 2 * DAWGMemoryFootprint.TREE_MAP_BYTES : DAWGMemoryFootprint.TREE_MAP_BYTES);
+        long outgoingBytes = 0L;
+        for (char c : node.getOutgoingTransitions().keySet())
+            outgoingBytes += DAWGMemoryFootprint.TREE_MAP_ENTRY_BYTES + DAWGMemoryFootprint.boxedCharBytes(c);
+        footprint.add(DAWGMemoryFootprint.Component.OUTGOING_DATA, outgoingBytes);
+        if (isIndexingIncomingTransitions()) {
+            long incomingBytes = 0L;
+            for (Entry<Character, Map<Integer, ModifiableDAWGNode>> e : node.getIncomingTransitions().entrySet()) {
+                incomingBytes += DAWGMemoryFootprint.TREE_MAP_ENTRY_BYTES + DAWGMemoryFootprint.boxedCharBytes(e.getKey()) + DAWGMemoryFootprint.hashMapBytes(e.getValue().size());
+                for (int nodeId : e.getValue().keySet())
+                    incomingBytes += DAWGMemoryFootprint.boxedIntBytes(nodeId);
+            }
+            footprint.add(DAWGMemoryFootprint.Component.INCOMING_DATA, incomingBytes);
+        }
+        if (node.isHashCodeStored())
+            footprint.add(DAWGMemoryFootprint.Component.CACHES, DAWGMemoryFootprint.BOXED_BYTES);
     }
     
     public int getEquivalenceClassCount() {
@@ -921,6 +1204,7 @@ public class ModifiableDAWGSet extends DAWGSet {
 
     @Override
     SemiNavigableMap<Character, Collection<? extends DAWGNode>> getIncomingTransitions(DAWGNode parent) {
+        indexIncomingTransitions();
         return new IncomingTransitionsMap((ModifiableDAWGNode)parent, false);
     }
 
@@ -929,8 +1213,30 @@ public class ModifiableDAWGSet extends DAWGSet {
         return size == 0;
     }
 
+    @Override
+    int countStringsStartingWith(CharSequence prefix, char last) {
+        ModifiableDAWGNode node = sourceNode;
+        for (int i = 0; i < prefix.length() && node != null; i++)
+            node = node.transition(prefix.charAt(i));
+        if (node != null)
+            node = node.transition(last);
+        return node == null ? 0 : node.getWordCount();
+    }
+
+    @Override
+    int getKeyCount() {
+        return sourceNode.getKeyCount();
+    }
+
+    @Override
+    int getModificationCount() {
+        return modificationCount;
+    }
+
     @Override
     public void clear() {
+        if (size > 0)
+            modificationCount++;
         id = 2;
         maxLength = 0;
         size = 0;
@@ -1,5 +1,14 @@
 package org.quinto.dawg;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
 public class ModifiableDAWGSetValuedMap extends DAWGSetValuedMap {
     public ModifiableDAWGSetValuedMap() {
         super(new ModifiableDAWGMapOfStringSets());
@@ -13,7 +22,71 @@ public class ModifiableDAWGSetValuedMap extends DAWGSetValuedMap {
         super(dawg);
     }
     
+    /**
+     * Adds all the given entries to this map in a single pass.
+     * Values are appended to the values already mapped to the same keys.
+     * Entries sorted by key and value are added using the efficient incremental construction of a minimal DAWG.
+     
+     * @param entries       entries sorted by key and value
+     * @return true if and only if this map was changed as a result of this call
+     */
+    public boolean putAll(Iterable<? extends Entry<String, String>> entries) {
+        return mapOfSets.putAll(entries);
+    }
+    
+    /**
+     * Adds all the entries read from a given reader to this map in a single pass.
+     * Each line should contain a key and a value separated by a delimiter (e.g. '\t' or ',').
+     * Values are appended to the values already mapped to the same keys.
+     * Lines sorted by key and value are added using the efficient incremental construction of a minimal DAWG.
+     
+     * @param reader        a source of lines
+     * @param delimiter     a char separating a key from a value
+     * @return true if and only if this map was changed as a result of this call
+     * @throws IOException  if a read operation cannot be carried out
+     */
+    public boolean putAll(Reader reader, char delimiter) throws IOException {
+        final DelimitedEntriesIterator it = new DelimitedEntriesIterator(reader, delimiter);
+        try {
+            return mapOfSets.dawg.addAll(new Iterable<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return it;
+                }
+            });
+        } catch (RuntimeException e) {
+            if (e.getCause() == it.exception && it.exception != null)
+                throw it.exception;
+            throw e;
+        }
+    }
+    
+    /**
+     * Adds all the entries read from a given file to this map in a single pass.
+     * @see #putAll(Reader, char)
+     */
+    public boolean putAll(File dataFile, Charset charset, char delimiter) throws IOException {
+        FileInputStream fis = null;
+        IOException ex = null;
+        boolean ret = false;
+        try {
+            fis = new FileInputStream(dataFile);
+            ret = putAll(new InputStreamReader(fis, charset), delimiter);
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException e) {
+                    ex = e;
+                }
+            }
+        }
+        if (ex != null)
+            throw ex;
+        return ret;
+    }
+    
     public CompressedDAWGSetValuedMap compress() {
         return new CompressedDAWGSetValuedMap(((ModifiableDAWGMapOfStringSets)mapOfSets).compress());
     }
-}
\ No newline at end of file
+}
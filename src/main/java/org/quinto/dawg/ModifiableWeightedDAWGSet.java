@@ -0,0 +1,87 @@
+package org.quinto.dawg;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ModifiableWeightedDAWGSet extends WeightedDAWGSet {
+    /**
+     * Maximal scores of already visited nodes by their ids.
+     * This cache is cleared on every modification.
+     */
+    private final Map<Integer, Integer> maxScores = new HashMap<Integer, Integer>();
+
+    public ModifiableWeightedDAWGSet() {
+        super(new ModifiableDAWGSet());
+    }
+
+    public ModifiableWeightedDAWGSet(boolean withIncomingTransitions) {
+        super(new ModifiableDAWGSet(withIncomingTransitions));
+    }
+
+    ModifiableWeightedDAWGSet(ModifiableDAWGSet dawg) {
+        super(dawg);
+    }
+
+    /**
+     * Adds a word with a given score. If this set already contains a given word then its score is replaced.
+     * @param word a word
+     * @param score score of a word
+     * @return previous score of a word or null if there was no such word
+     */
+    public Integer add(String word, int score) {
+        Integer prev = getScore(word);
+        if (prev != null && prev == score)
+            return prev;
+        if (prev != null)
+            dawg.remove(word + SCORE_SEPARATOR + encodeScore(prev));
+        dawg.add(word + SCORE_SEPARATOR + encodeScore(score));
+        onModification();
+        return prev;
+    }
+
+    /**
+     * Adds all words of a given map with their scores.
+     * @param scores a map from words to their scores
+     */
+    public void addAll(Map<String, Integer> scores) {
+        for (Map.Entry<String, Integer> e : scores.entrySet())
+            add(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String))
+            return false;
+        Integer score = getScore((String)o);
+        if (score == null)
+            return false;
+        dawg.remove(o + String.valueOf(SCORE_SEPARATOR) + encodeScore(score));
+        onModification();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        dawg.clear();
+        onModification();
+    }
+
+    @Override
+    void onModification() {
+        maxScores.clear();
+    }
+
+    @Override
+    int getMaxScore(DAWGNode node) {
+        Integer ret = maxScores.get(node.getId());
+        if (ret == null) {
+            ret = calculateMaxScore(node);
+            maxScores.put(node.getId(), ret);
+        }
+        return ret;
+    }
+
+    public CompressedWeightedDAWGSet compress() {
+        return new CompressedWeightedDAWGSet(((ModifiableDAWGSet)dawg).compress());
+    }
+}
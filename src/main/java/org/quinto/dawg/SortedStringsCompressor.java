@@ -0,0 +1,385 @@
+package org.quinto.dawg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Builds a {@link CompressedDAWGSet} from distinct strings added in ascending order without creating
+ * a {@link ModifiableDAWGSet}. Only the nodes along the last added string are kept apart.
+ * The nodes of the previous string beyond its common prefix with the next one can't change anymore,
+ * so they are frozen bottom-up: a node equivalent to an already frozen one is replaced by it,
+ * otherwise its transition set is appended to the outgoing data of the result.
+ * Thus the memory needed is proportional to the size of the compressed DAWG rather than to the size of the input.
+ */
+class SortedStringsCompressor {
+    private final char letters[];
+    private final boolean largeAlphabet;
+    private final boolean withIncomingTransitions;
+    private final int transitionSize;
+    // The offset of the transition set begin index and the accept mark in a transition.
+    private final int beginOffset;
+
+    // The transition to the source node followed by transition sets of frozen nodes.
+    private int outgoingData[];
+    private int outgoingSize;
+    // Transitions to frozen nodes (without letters) indexed by node ids.
+    private int nodeTransitions[];
+    private int nodeHashes[];
+    private int nodeCount;
+    // Ids of frozen nodes plus one in an open addressing hash table.
+    private int register[];
+    private final int transition[];
+
+    // The last added string, accept marks of the nodes along it and transitions of these nodes to frozen nodes.
+    private char path[] = new char[16];
+    private int pathLength;
+    private boolean accepts[] = new boolean[17];
+    private char childLetters[][] = new char[17][];
+    private int children[][] = new int[17][];
+    private int childCounts[] = new int[17];
+
+    private int size;
+    private int maxLength;
+    private long peakBytes;
+
+    /**
+     * @param letters                   all the letters of strings which will be added in ascending order
+     * @param withIncomingTransitions   whether the resulting DAWG should support search by suffixes
+     */
+    SortedStringsCompressor(char letters[], boolean withIncomingTransitions) {
+        this.letters = letters;
+        this.withIncomingTransitions = withIncomingTransitions;
+        // The same choice of a layout as in ModifiableDAWGSet.compress.
+        largeAlphabet = letters.length > 64;
+        transitionSize = largeAlphabet ? CompressedDAWGSetLargeAlphabet.OUTGOING_TRANSITION_SIZE_IN_INTS : 1 + ((letters.length + 31) >>> 5);
+        beginOffset = largeAlphabet ? 1 : 0;
+        outgoingData = new int[transitionSize * 16];
+        outgoingSize = transitionSize;
+        nodeTransitions = new int[transitionSize * 16];
+        nodeHashes = new int[16];
+        register = new int[32];
+        transition = new int[transitionSize];
+        updatePeakBytes(0L);
+    }
+
+    /**
+     * Adds a string greater than all the strings added before.
+     */
+    void add(String str) {
+        int common = 0;
+        int length = Math.min(pathLength, str.length());
+        while (common < length && path[common] == str.charAt(common))
+            common++;
+        if (size > 0 && (common == str.length() || common < pathLength && str.charAt(common) < path[common]))
+            throw new IllegalArgumentException("Strings should be distinct and added in ascending order: " + str);
+        freezePath(common);
+        if (str.length() >= path.length) {
+            int capacity = Math.max(path.length * 2, str.length() + 1);
+            path = Arrays.copyOf(path, capacity);
+            accepts = Arrays.copyOf(accepts, capacity + 1);
+            childLetters = Arrays.copyOf(childLetters, capacity + 1);
+            children = Arrays.copyOf(children, capacity + 1);
+            childCounts = Arrays.copyOf(childCounts, capacity + 1);
+        }
+        for (int depth = common + 1; depth <= str.length(); depth++) {
+            path[depth - 1] = str.charAt(depth - 1);
+            accepts[depth] = false;
+            childCounts[depth] = 0;
+        }
+        pathLength = str.length();
+        accepts[pathLength] = true;
+        size++;
+        maxLength = Math.max(maxLength, pathLength);
+    }
+
+    /**
+     * Freezes the nodes of the path deeper than a given depth and adds them to their parents.
+     */
+    private void freezePath(int depth) {
+        for (int d = pathLength; d > depth; d--) {
+            int node = freeze(d);
+            int count = childCounts[d - 1];
+            if (children[d - 1] == null) {
+                children[d - 1] = new int[4];
+                childLetters[d - 1] = new char[4];
+            } else if (count == children[d - 1].length) {
+                children[d - 1] = Arrays.copyOf(children[d - 1], count * 2);
+                childLetters[d - 1] = Arrays.copyOf(childLetters[d - 1], count * 2);
+            }
+            children[d - 1][count] = node;
+            childLetters[d - 1][count] = path[d - 1];
+            childCounts[d - 1]++;
+        }
+        pathLength = Math.min(pathLength, depth);
+    }
+
+    /**
+     * Writes the transition set of a node of the path at the end of the outgoing data
+     * and fills {@link #transition} with a transition to the node without its begin index.
+     */
+    private void writeTransitionSet(int depth) {
+        int count = childCounts[depth];
+        int length = count * transitionSize;
+        if (outgoingSize + length > outgoingData.length) {
+            outgoingData = Arrays.copyOf(outgoingData, Math.max(outgoingData.length + (outgoingData.length >> 1), outgoingSize + length));
+            updatePeakBytes(0L);
+        }
+        Arrays.fill(transition, 0);
+        transition[beginOffset] = accepts[depth] ? CompressedDAWGNode.ACCEPT_NODE_MASK : 0;
+        if (largeAlphabet)
+            transition[2] = count;
+        for (int i = 0, at = outgoingSize; i < count; i++, at += transitionSize) {
+            char letter = childLetters[depth][i];
+            System.arraycopy(nodeTransitions, children[depth][i] * transitionSize, outgoingData, at, transitionSize);
+            if (largeAlphabet)
+                outgoingData[at] = letter;
+            else {
+                int letterIndex = Arrays.binarySearch(letters, letter);
+                transition[1 + (letterIndex >>> 5)] |= 1 << letterIndex;
+            }
+        }
+    }
+
+    /**
+     * Replaces a node of the path with an equivalent frozen node or freezes it.
+     * @return      the id of the frozen node
+     */
+    private int freeze(int depth) {
+        writeTransitionSet(depth);
+        int length = childCounts[depth] * transitionSize;
+        int hash = 0;
+        for (int i = 0; i < transitionSize; i++)
+            hash = 31 * hash + transition[i];
+        for (int i = outgoingSize; i < outgoingSize + length; i++)
+            hash = 31 * hash + outgoingData[i];
+        int mask = register.length - 1;
+        int slot = mix(hash) & mask;
+        for (; register[slot] != 0; slot = (slot + 1) & mask) {
+            int node = register[slot] - 1;
+            if (nodeHashes[node] == hash && isEquivalent(node, length))
+                return node;
+        }
+        // Nodes without transitions keep the begin index 0, as their transition sets are never read.
+        if (length > 0) {
+            transition[beginOffset] |= outgoingSize;
+            outgoingSize += length;
+        }
+        if (nodeCount == nodeHashes.length) {
+            int capacity = nodeCount + (nodeCount >> 1);
+            nodeHashes = Arrays.copyOf(nodeHashes, capacity);
+            nodeTransitions = Arrays.copyOf(nodeTransitions, capacity * transitionSize);
+            updatePeakBytes(0L);
+        }
+        int node = nodeCount++;
+        System.arraycopy(transition, 0, nodeTransitions, node * transitionSize, transitionSize);
+        nodeHashes[node] = hash;
+        register[slot] = node + 1;
+        if (nodeCount * 2 > register.length)
+            rehash();
+        return node;
+    }
+
+    /**
+     * Determines whether a frozen node is equivalent to a node whose transition set is written after the outgoing data.
+     * Targets of transitions are frozen, so equivalent nodes have equal transitions.
+     */
+    private boolean isEquivalent(int node, int length) {
+        int at = node * transitionSize;
+        for (int i = 0; i < transitionSize; i++) {
+            int value = nodeTransitions[at + i];
+            if (i == beginOffset)
+                value &= CompressedDAWGNode.ACCEPT_NODE_MASK;
+            if (value != transition[i])
+                return false;
+        }
+        int begin = nodeTransitions[at + beginOffset] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK;
+        for (int i = 0; i < length; i++)
+            if (outgoingData[begin + i] != outgoingData[outgoingSize + i])
+                return false;
+        return true;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void rehash() {
+        register = new int[register.length * 2];
+        int mask = register.length - 1;
+        for (int node = 0; node < nodeCount; node++) {
+            int slot = mix(nodeHashes[node]) & mask;
+            while (register[slot] != 0)
+                slot = (slot + 1) & mask;
+            register[slot] = node + 1;
+        }
+        updatePeakBytes(0L);
+    }
+
+    private void updatePeakBytes(long temporaryBytes) {
+        long bytes = temporaryBytes + DAWGMemoryFootprint.arrayBytes(outgoingData == null ? 0 : outgoingData.length, 4) +
+                     DAWGMemoryFootprint.arrayBytes(nodeTransitions == null ? 0 : nodeTransitions.length, 4) +
+                     DAWGMemoryFootprint.arrayBytes(nodeHashes == null ? 0 : nodeHashes.length, 4) +
+                     DAWGMemoryFootprint.arrayBytes(register == null ? 0 : register.length, 4);
+        peakBytes = Math.max(peakBytes, bytes);
+    }
+
+    /**
+     * Returns an estimate of the peak quantity of bytes occupied by the arrays of this compressor.
+     */
+    long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * Freezes the remaining nodes and creates a DAWG of all the added strings.
+     */
+    CompressedDAWGSet compress() {
+        freezePath(0);
+        // The source node is never equivalent to another node, as its strings are the longest ones.
+        writeTransitionSet(0);
+        transition[beginOffset] |= outgoingSize;
+        System.arraycopy(transition, 0, outgoingData, 0, transitionSize);
+        outgoingSize += childCounts[0] * transitionSize;
+        register = null;
+        nodeHashes = null;
+        int data[] = Arrays.copyOf(outgoingData, outgoingSize);
+        updatePeakBytes(DAWGMemoryFootprint.arrayBytes(data.length, 4));
+        outgoingData = data;
+        CompressedDAWGSet ret = largeAlphabet ? new CompressedDAWGSetLargeAlphabet() : new CompressedDAWGSet();
+        ret.letters = letters;
+        ret.outgoingData = outgoingData;
+        ret.size = size;
+        ret.maxLength = maxLength;
+        if (withIncomingTransitions)
+            ret.incomingData = createIncomingData();
+        nodeTransitions = null;
+        ret.calculateCachedValues();
+        return ret;
+    }
+
+    /**
+     * Creates incoming data in the format of {@link ModifiableDAWGSet#compress}: the end node has an incoming transition
+     * for each distinct letter and accept node entered by it, other nodes have their incoming transitions.
+     * Transitions of a node are sorted by letters and then by ids of their origin nodes.
+     */
+    private int[] createIncomingData() {
+        int transitionCount = outgoingSize / transitionSize - 1;
+        // Frozen nodes have ids from 0 and the source node goes after them.
+        int sourceNode = nodeCount;
+        int nodesByBegin[] = new int[outgoingSize / transitionSize];
+        BitSet acceptNodes = new BitSet(nodeCount);
+        int leafNode = -1;
+        for (int node = 0; node < nodeCount; node++) {
+            int at = node * transitionSize;
+            if ((nodeTransitions[at + beginOffset] & CompressedDAWGNode.ACCEPT_NODE_MASK) != 0)
+                acceptNodes.set(node);
+            if (getTransitionCount(nodeTransitions, at) == 0)
+                leafNode = node;
+            else
+                nodesByBegin[(nodeTransitions[at + beginOffset] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK) / transitionSize] = node;
+        }
+        // Incoming transitions grouped by their target nodes, each one is a letter and an origin node.
+        int begins[] = new int[nodeCount + 2];
+        long transitions[] = new long[transitionCount];
+        updatePeakBytes(DAWGMemoryFootprint.arrayBytes(nodesByBegin.length, 4) + DAWGMemoryFootprint.arrayBytes(begins.length, 4) +
+                        DAWGMemoryFootprint.arrayBytes(transitionCount, 8));
+        for (int pass = 0; pass < 2; pass++) {
+            for (int origin = 0; origin <= nodeCount; origin++) {
+                int data[] = origin == sourceNode ? outgoingData : nodeTransitions;
+                int at = origin == sourceNode ? 0 : origin * transitionSize;
+                int count = getTransitionCount(data, at);
+                int child = data[at + beginOffset] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK;
+                int letterIndex = -1;
+                for (int i = 0; i < count; i++, child += transitionSize) {
+                    int target = getTransitionCount(outgoingData, child) == 0 ? leafNode : nodesByBegin[(outgoingData[child + beginOffset] & CompressedDAWGNode.TRANSITION_SET_BEGIN_INDEX_MASK) / transitionSize];
+                    if (pass == 0) {
+                        begins[target + 1]++;
+                        continue;
+                    }
+                    char letter;
+                    if (largeAlphabet)
+                        letter = (char)outgoingData[child];
+                    else {
+                        letterIndex = nextLetterIndex(data, at, letterIndex + 1);
+                        letter = letters[letterIndex];
+                    }
+                    transitions[begins[target]++] = ((long)letter << 32) | origin;
+                }
+            }
+            if (pass == 0)
+                for (int node = 0; node <= nodeCount; node++)
+                    begins[node + 1] += begins[node];
+            else {
+                // Filling has shifted the begins by one node.
+                System.arraycopy(begins, 0, begins, 1, nodeCount + 1);
+                begins[0] = 0;
+            }
+        }
+        nodesByBegin = null;
+        nodeTransitions = null;
+        // The end node has an incoming transition for each distinct letter entering an accept node.
+        int endCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            Arrays.sort(transitions, begins[node], begins[node + 1]);
+            if (acceptNodes.get(node))
+                for (int i = begins[node]; i < begins[node + 1]; i++)
+                    if (i == begins[node] || transitions[i] >>> 32 != transitions[i - 1] >>> 32)
+                        endCount++;
+        }
+        int size = CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS;
+        int ret[] = new int[(1 + endCount + transitionCount) * size];
+        updatePeakBytes(DAWGMemoryFootprint.arrayBytes(begins.length, 4) + DAWGMemoryFootprint.arrayBytes(transitionCount, 8) +
+                        DAWGMemoryFootprint.arrayBytes(ret.length, 4));
+        // The end node is located at the beginning, its transitions follow it and then transitions of other nodes.
+        int offset = size * (1 + endCount);
+        for (int i = 0; i < transitionCount; i++)
+            writeIncomingTransition(ret, offset + size * i, (char)(transitions[i] >>> 32), (int)transitions[i], begins, offset);
+        transitions = null;
+        long endTransitions[] = new long[endCount];
+        updatePeakBytes(DAWGMemoryFootprint.arrayBytes(begins.length, 4) + DAWGMemoryFootprint.arrayBytes(ret.length, 4) +
+                        DAWGMemoryFootprint.arrayBytes(endCount, 8));
+        endCount = 0;
+        for (int node = acceptNodes.nextSetBit(0); node >= 0; node = acceptNodes.nextSetBit(node + 1))
+            for (int i = begins[node]; i < begins[node + 1]; i++)
+                if (i == begins[node] || ret[offset + size * i] != ret[offset + size * (i - 1)])
+                    endTransitions[endCount++] = ((long)ret[offset + size * i] << 32) | node;
+        Arrays.sort(endTransitions);
+        ret[1] = size;
+        ret[2] = endCount;
+        for (int i = 0; i < endCount; i++)
+            writeIncomingTransition(ret, size * (1 + i), (char)(endTransitions[i] >>> 32), (int)endTransitions[i], begins, offset);
+        return ret;
+    }
+
+    /**
+     * Writes an incoming transition from a given node.
+     */
+    private static void writeIncomingTransition(int data[], int at, char letter, int node, int begins[], int offset) {
+        data[at] = letter;
+        data[at + 1] = offset + begins[node] * CompressedDAWGSet.INCOMING_TRANSITION_SIZE_IN_INTS;
+        data[at + 2] = begins[node + 1] - begins[node];
+    }
+
+    private int getTransitionCount(int data[], int at) {
+        if (largeAlphabet)
+            return data[at + 2];
+        int ret = 0;
+        for (int i = 1; i < transitionSize; i++)
+            ret += Integer.bitCount(data[at + i]);
+        return ret;
+    }
+
+    /**
+     * Returns the first index of a letter of a transition from a given index in the bitmap of a transition.
+     */
+    private int nextLetterIndex(int data[], int at, int from) {
+        for (int i = from >>> 5; ; i++) {
+            int bits = data[at + 1 + i];
+            if (i == from >>> 5)
+                bits &= -1 << from;
+            if (bits != 0)
+                return (i << 5) + Integer.numberOfTrailingZeros(bits);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package org.quinto.dawg;
 import org.quinto.dawg.util.SemiNavigableMap;
 import org.quinto.dawg.util.UnmodifiableIterable;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -59,13 +61,33 @@ class UnmodifiableDAWGSet extends DAWGSet {
     }
 
     @Override
-    Collection<? extends DAWGNode> getNodesBySuffix(String suffix) {
-        return null;
+    public DAWGStatistics getStatistics() {
+        return delegate.getStatistics();
     }
 
     @Override
-    int getMaxLength() {
-        return 0;
+    public long getFingerprint() {
+        return delegate.getFingerprint();
+    }
+
+    @Override
+    boolean isUtf8() {
+        return delegate.isUtf8();
+    }
+
+    @Override
+    Comparator<String> stringComparator() {
+        return delegate.stringComparator();
+    }
+
+    @Override
+    void estimateMemoryFootprint(DAWGMemoryFootprint footprint) {
+        delegate.estimateMemoryFootprint(footprint);
+    }
+
+    @Override
+    Collection<? extends DAWGNode> getNodesBySuffix(String suffix) {
+        return null;
     }
 
     @Override
@@ -193,6 +215,56 @@ class UnmodifiableDAWGSet extends DAWGSet {
         return delegate.contains(o);
     }
 
+    @Override
+    boolean containsStringsStartingWith(CharSequence prefix, char last) {
+        return delegate.containsStringsStartingWith(prefix, last);
+    }
+
+    @Override
+    int countStringsStartingWith(CharSequence prefix, char last) {
+        return delegate.countStringsStartingWith(prefix, last);
+    }
+
+    @Override
+    int getKeyCount() {
+        return delegate.getKeyCount();
+    }
+
+    @Override
+    int getModificationCount() {
+        return delegate.getModificationCount();
+    }
+
+    @Override
+    AhoCorasickAutomaton getAutomaton() {
+        return delegate.getAutomaton();
+    }
+
+    @Override
+    int getMaxLength() {
+        return delegate.getMaxLength();
+    }
+
+    @Override
+    DAWGSet getGraph() {
+        return delegate.getGraph();
+    }
+
+    @Override
+    String getFirstSuffix(CharSequence prefix, char last) {
+        return delegate.getFirstSuffix(prefix, last);
+    }
+
+    @Override
+    public void containsAll(String words[], BitSet out, boolean sort) {
+        delegate.containsAll(words, out, sort);
+    }
+
+    @Override
+    String[] getFirstSuffixes(String prefixes[], char last, boolean sort) {
+        return delegate.getFirstSuffixes(prefixes, last, sort);
+    }
+
     @Override
     public String[] toArray() {
         return delegate.toArray();
@@ -263,6 +335,11 @@ class UnmodifiableDAWGSet extends DAWGSet {
         return delegate.toGraphViz(withNodeIds, withIncomingTransitions);
     }
 
+    @Override
+    public void writeGraphViz(Writer out, String prefix, int maxDepth, int maxNodes, boolean withNodeIds, boolean withIncomingTransitions, boolean collapseChains) throws IOException {
+        delegate.writeGraphViz(out, prefix, maxDepth, maxNodes, withNodeIds, withIncomingTransitions, collapseChains);
+    }
+
     @Override
     public void saveAsImage(boolean withNodeIds, boolean withIncomingTransitions) throws IOException {
         delegate.saveAsImage(withNodeIds, withIncomingTransitions);
@@ -0,0 +1,34 @@
+package org.quinto.dawg;
+
+import java.util.Comparator;
+
+/**
+ * A map stored in a {@link Utf8DAWGSet}: keys and values are encoded as UTF-8.
+ * Keys are ordered by code points.
+ */
+public class Utf8DAWGMap extends DAWGMap {
+    public Utf8DAWGMap() {
+        super(new Utf8DAWGSet());
+    }
+
+    public Utf8DAWGMap(boolean withIncomingTransitions) {
+        super(new Utf8DAWGSet(withIncomingTransitions));
+    }
+
+    Utf8DAWGMap(Utf8DAWGSet dawg) {
+        super(dawg);
+    }
+
+    /**
+     * Creates an unmodifiable version of this map.
+     * @see Utf8DAWGSet#compress
+     */
+    public Utf8DAWGMap compress() {
+        return new Utf8DAWGMap(((Utf8DAWGSet)dawg).compress());
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return Utf8DAWGSet.CODE_POINT_ORDER;
+    }
+}
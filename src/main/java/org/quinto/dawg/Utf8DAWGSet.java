@@ -0,0 +1,538 @@
+package org.quinto.dawg;
+
+import org.quinto.dawg.util.SemiNavigableMap;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+
+/**
+ * A DAWG that stores its strings as UTF-8 byte sequences, one char per byte.
+ * Its alphabet never exceeds 256 letters, so dictionaries of large scripts (e.g. CJK) keep small
+ * and dense nodes and share more transitions, and supplementary code points are not split into surrogate pairs.
+ * Strings are encoded and decoded at the boundary of this class transparently.
+ * Since UTF-8 preserves the order of code points, strings are iterated in the order of their code points
+ * (see {@link #CODE_POINT_ORDER}) which differs from the natural order of strings only when supplementary
+ * characters are compared to characters in range U+E000..U+FFFF.
+ * UTF-8 is self-synchronizing, so prefixes, substrings and suffixes of whole code points
+ * keep their meaning in the encoded form.
+ * Strings with unpaired surrogates cannot be stored.
+ */
+public class Utf8DAWGSet extends DAWGSet {
+    /**
+     * Compares strings by code points.
+     */
+    public static final Comparator<String> CODE_POINT_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int len = Math.min(a.length(), b.length());
+            for (int i = 0; i < len; i++) {
+                char ca = a.charAt(i);
+                char cb = b.charAt(i);
+                if (ca != cb) {
+                    // Surrogates are greater than any other char of the basic plane.
+                    boolean sa = isSurrogate(ca);
+                    boolean sb = isSurrogate(cb);
+                    if (sa != sb)
+                        return sa ? 1 : -1;
+                    return ca - cb;
+                }
+            }
+            return a.length() - b.length();
+        }
+    };
+
+    private final DAWGSet delegate;
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    public Utf8DAWGSet() {
+        this(new ModifiableDAWGSet());
+    }
+
+    public Utf8DAWGSet(boolean withIncomingTransitions) {
+        this(new ModifiableDAWGSet(withIncomingTransitions));
+    }
+
+    public Utf8DAWGSet(Iterable<? extends String> strCollection) {
+        this(new ModifiableDAWGSet());
+        addAll(strCollection);
+    }
+
+    Utf8DAWGSet(DAWGSet delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns an underlying DAWG of encoded strings: each char of its strings is a byte of UTF-8.
+     */
+    public DAWGSet getUnderlyingSet() {
+        return new UnmodifiableDAWGSet(delegate);
+    }
+
+    /**
+     * Creates an unmodifiable and serializable version of this DAWG.
+     * Without incoming transitions the byte-oriented layout of {@link ModifiableDAWGSet#compressToBytes} is used.
+     * @return a compressed DAWG containing all the strings of this DAWG
+     * @throws UnsupportedOperationException if this DAWG is compressed already
+     */
+    public Utf8DAWGSet compress() {
+        if (!(delegate instanceof ModifiableDAWGSet))
+            throw new UnsupportedOperationException();
+        ModifiableDAWGSet dawg = (ModifiableDAWGSet)delegate;
+        return new Utf8DAWGSet(dawg.isWithIncomingTransitions() ? dawg.compress() : dawg.compressToBytes());
+    }
+
+    /**
+     * Encodes a string as UTF-8, one char per byte.
+
+     * @return      the encoded string or null if the string contains unpaired surrogates
+     */
+    static String encode(CharSequence s) {
+        int len = s.length();
+        StringBuilder sb = null;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (sb != null)
+                    sb.append(c);
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(len * 3);
+                for (int j = 0; j < i; j++)
+                    sb.append(s.charAt(j));
+            }
+            if (c < 0x800)
+                sb.append((char)(0xC0 | c >> 6)).append((char)(0x80 | c & 0x3F));
+            else if (!isSurrogate(c))
+                sb.append((char)(0xE0 | c >> 12)).append((char)(0x80 | c >> 6 & 0x3F)).append((char)(0x80 | c & 0x3F));
+            else {
+                if (!Character.isHighSurrogate(c) || i + 1 == len || !Character.isLowSurrogate(s.charAt(i + 1)))
+                    return null;
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                sb.append((char)(0xF0 | cp >> 18)).append((char)(0x80 | cp >> 12 & 0x3F)).append((char)(0x80 | cp >> 6 & 0x3F)).append((char)(0x80 | cp & 0x3F));
+            }
+        }
+        // ASCII strings stay the same.
+        return sb == null ? s.toString() : sb.toString();
+    }
+
+    private static String encodeArgument(String s) {
+        if (s == null)
+            return null;
+        String ret = encode(s);
+        if (ret == null)
+            throw new IllegalArgumentException("Argument contains unpaired surrogates");
+        return ret;
+    }
+
+    /**
+     * Decodes a string of UTF-8 bytes produced by {@link #encode}.
+     */
+    static String decode(String s) {
+        if (s == null)
+            return null;
+        int len = s.length();
+        int i = 0;
+        while (i < len && s.charAt(i) < 0x80)
+            i++;
+        if (i == len)
+            return s;
+        StringBuilder sb = new StringBuilder(len);
+        sb.append(s, 0, i);
+        while (i < len) {
+            int b = s.charAt(i++);
+            if (b < 0x80)
+                sb.append((char)b);
+            else if (b < 0xE0)
+                sb.append((char)((b & 0x1F) << 6 | s.charAt(i++) & 0x3F));
+            else if (b < 0xF0) {
+                sb.append((char)((b & 0x0F) << 12 | (s.charAt(i) & 0x3F) << 6 | s.charAt(i + 1) & 0x3F));
+                i += 2;
+            } else {
+                sb.appendCodePoint((b & 0x07) << 18 | (s.charAt(i) & 0x3F) << 12 | (s.charAt(i + 1) & 0x3F) << 6 | s.charAt(i + 2) & 0x3F);
+                i += 3;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the length of the longest prefix of a given UTF-8 string that consists of whole code points.
+     */
+    private static int completeLength(String s) {
+        int len = s.length();
+        for (int i = len - 1; i >= 0 && i >= len - 4; i--) {
+            char b = s.charAt(i);
+            if ((b & 0xC0) != 0x80) {
+                int size = b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+                return i + size <= len ? len : i;
+            }
+        }
+        return len;
+    }
+
+    private static Iterable<String> decode(final Iterable<String> strings) {
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<String> it = strings.iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return decode(it.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    int compare(String a, String b) {
+        return CODE_POINT_ORDER.compare(a, b);
+    }
+
+    @Override
+    Comparator<String> stringComparator() {
+        return CODE_POINT_ORDER;
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+        return CODE_POINT_ORDER;
+    }
+
+    @Override
+    public boolean isWithIncomingTransitions() {
+        return delegate.isWithIncomingTransitions();
+    }
+
+    @Override
+    SemiNavigableMap<Character, DAWGNode> getOutgoingTransitions(DAWGNode parent) {
+        return null;
+    }
+
+    @Override
+    SemiNavigableMap<Character, Collection<? extends DAWGNode>> getIncomingTransitions(DAWGNode parent) {
+        return null;
+    }
+
+    @Override
+    DAWGNode getSourceNode() {
+        return null;
+    }
+
+    @Override
+    DAWGNode getEndNode() {
+        return null;
+    }
+
+    @Override
+    DAWGNode getEmptyNode() {
+        return null;
+    }
+
+    @Override
+    Collection<? extends DAWGNode> getNodesBySuffix(String suffix) {
+        return null;
+    }
+
+    @Override
+    int getMaxLength() {
+        // The quantity of bytes is not less than the quantity of chars.
+        return delegate.getMaxLength();
+    }
+
+    @Override
+    public int getTransitionCount() {
+        return delegate.getTransitionCount();
+    }
+
+    @Override
+    public int getNodeCount() {
+        return delegate.getNodeCount();
+    }
+
+    /**
+     * Returns statistics of the underlying DAWG: lengths of words are measured in bytes of UTF-8
+     * and the alphabet consists of chars standing for bytes.
+     */
+    @Override
+    public DAWGStatistics getStatistics() {
+        return delegate.getStatistics();
+    }
+
+    @Override
+    public long getFingerprint() {
+        return delegate.getFingerprint();
+    }
+
+    @Override
+    boolean isUtf8() {
+        return true;
+    }
+
+    @Override
+    void estimateMemoryFootprint(DAWGMemoryFootprint footprint) {
+        delegate.estimateMemoryFootprint(footprint);
+    }
+
+    /**
+     * Returns the alphabet of the underlying DAWG: chars in range 0..255 standing for bytes of UTF-8.
+     */
+    @Override
+    public NavigableSet<Character> getAlphabet() {
+        return delegate.getAlphabet();
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return delegate.isImmutable();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        String s = encode((String)o);
+        return s != null && delegate.contains(s);
+    }
+
+    // Chars passed as the last argument are separators of map entries. They are encoded by themselves.
+    @Override
+    boolean containsStringsStartingWith(CharSequence prefix, char last) {
+        String s = encode(prefix);
+        return s != null && delegate.containsStringsStartingWith(s, last);
+    }
+
+    @Override
+    int countStringsStartingWith(CharSequence prefix, char last) {
+        String s = encode(prefix);
+        return s == null ? 0 : delegate.countStringsStartingWith(s, last);
+    }
+
+    @Override
+    int getKeyCount() {
+        return delegate.getKeyCount();
+    }
+
+    @Override
+    int getModificationCount() {
+        return delegate.getModificationCount();
+    }
+
+    // Transitions are labeled with bytes which cannot be folded one by one, so code points are decoded first.
+    @Override
+    List<String> getFoldedPrefixes(String query, CharFolding folding, boolean acceptOnly) {
+        char folded[] = new char[query.length()];
+        for (int i = 0; i < folded.length; i++)
+            folded[i] = folding.fold(query.charAt(i));
+        List<String> ret = new ArrayList<String>();
+        DAWGSet graph = delegate.getGraph();
+        collectFoldedPrefixes(graph, graph.getSourceNode(), 0, 0, folded, folding, new StringBuilder(), acceptOnly, ret);
+        return ret;
+    }
+
+    /**
+     * Collects decoded prefixes whose chars fold to given chars.
+
+     * @param pending   the quantity of continuation bytes left to complete the current code point
+     * @param bits      the bits of the current code point decoded so far
+     * @param sb        the decoded chars of complete code points
+     */
+    private static void collectFoldedPrefixes(DAWGSet graph, DAWGNode node, int pending, int bits, char folded[], CharFolding folding, StringBuilder sb, boolean acceptOnly, List<String> ret) {
+        int length = sb.length();
+        if (pending == 0 && length == folded.length) {
+            if (!acceptOnly || node.isAcceptNode())
+                ret.add(sb.toString());
+            return;
+        }
+        for (Map.Entry<Character, DAWGNode> e : graph.getOutgoingTransitions(node)) {
+            int b = e.getKey();
+            int cp;
+            int left;
+            if (pending > 0) {
+                cp = bits << 6 | b & 0x3F;
+                left = pending - 1;
+            } else if (b < 0x80) {
+                cp = b;
+                left = 0;
+            } else if (b < 0xE0) {
+                cp = b & 0x1F;
+                left = 1;
+            } else if (b < 0xF0) {
+                cp = b & 0x0F;
+                left = 2;
+            } else {
+                cp = b & 0x07;
+                left = 3;
+            }
+            if (left > 0) {
+                collectFoldedPrefixes(graph, e.getValue(), left, cp, folded, folding, sb, acceptOnly, ret);
+                continue;
+            }
+            // A supplementary code point is folded as a surrogate pair.
+            sb.appendCodePoint(cp);
+            boolean matches = sb.length() <= folded.length;
+            for (int i = length; i < sb.length() && matches; i++)
+                matches = folding.fold(sb.charAt(i)) == folded[i];
+            if (matches)
+                collectFoldedPrefixes(graph, e.getValue(), 0, 0, folded, folding, sb, acceptOnly, ret);
+            sb.setLength(length);
+        }
+    }
+
+    @Override
+    DAWGSet getGraph() {
+        return delegate.getGraph();
+    }
+
+    @Override
+    String getFirstSuffix(CharSequence prefix, char last) {
+        String s = encode(prefix);
+        return s == null ? null : decode(delegate.getFirstSuffix(s, last));
+    }
+
+    /**
+     * Encodes given strings replacing those that cannot be encoded with nulls.
+     */
+    private static String[] encode(String words[]) {
+        String ret[] = new String[words.length];
+        for (int i = 0; i < words.length; i++)
+            ret[i] = encode(words[i]);
+        return ret;
+    }
+
+    /**
+     * Replaces nulls with empty strings and returns their positions.
+     */
+    private static BitSet replaceNulls(String words[]) {
+        BitSet ret = new BitSet();
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] == null) {
+                words[i] = "";
+                ret.set(i);
+            }
+        }
+        return ret;
+    }
+
+    // Encoding preserves common prefixes and the order of strings, so a batch is passed to the delegate as a whole.
+    @Override
+    public void containsAll(String words[], BitSet out, boolean sort) {
+        String encoded[] = encode(words);
+        BitSet malformed = replaceNulls(encoded);
+        delegate.containsAll(encoded, out, sort);
+        out.andNot(malformed);
+    }
+
+    @Override
+    String[] getFirstSuffixes(String prefixes[], char last, boolean sort) {
+        String encoded[] = encode(prefixes);
+        BitSet malformed = replaceNulls(encoded);
+        String ret[] = delegate.getFirstSuffixes(encoded, last, sort);
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = malformed.get(i) ? null : decode(ret[i]);
+        return ret;
+    }
+
+    @Override
+    public boolean add(String e) {
+        return delegate.add(encodeArgument(e));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        String s = encode((String)o);
+        return s != null && delegate.remove(s);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> c) {
+        return addAll((Iterable<? extends String>)c);
+    }
+
+    @Override
+    public boolean addAll(final Iterable<? extends String> c) {
+        return delegate.addAll(new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<? extends String> it = c.iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return encodeArgument(it.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        });
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public Iterable<String> getStrings(String prefixString, String subString, String suffixString, boolean descending, String fromString, boolean inclFrom, String toString, boolean inclTo) {
+        return decode(delegate.getStrings(encodeArgument(prefixString), encodeArgument(subString), encodeArgument(suffixString), descending, encodeArgument(fromString), inclFrom, encodeArgument(toString), inclTo));
+    }
+
+    @Override
+    public String determineLongestPrefixInDAWG(String str) {
+        String s = delegate.determineLongestPrefixInDAWG(encodeArgument(str));
+        return decode(s.substring(0, completeLength(s)));
+    }
+
+    @Override
+    public String toGraphViz(boolean withNodeIds, boolean withIncomingTransitions) {
+        return delegate.toGraphViz(withNodeIds, withIncomingTransitions);
+    }
+
+    @Override
+    public void writeGraphViz(Writer out, String prefix, int maxDepth, int maxNodes, boolean withNodeIds, boolean withIncomingTransitions, boolean collapseChains) throws IOException {
+        delegate.writeGraphViz(out, encodeArgument(prefix), maxDepth, maxNodes, withNodeIds, withIncomingTransitions, collapseChains);
+    }
+
+    @Override
+    public void saveAsImage(boolean withNodeIds, boolean withIncomingTransitions) throws IOException {
+        delegate.saveAsImage(withNodeIds, withIncomingTransitions);
+    }
+}
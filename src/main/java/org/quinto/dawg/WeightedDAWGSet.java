@@ -0,0 +1,227 @@
+package org.quinto.dawg;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A set of words where each word has an integer score (e.g. popularity).
+ * Each word is stored in the underlying DAWG as {@code word + '\0' + score}, where the score
+ * is encoded with {@link #SCORE_LENGTH} hexadecimal digits in an order-preserving way.
+ * Thus the maximal score reachable from any node is well defined and
+ * {@link #topK} may perform a best-first search instead of enumerating all the completions.
+ */
+public abstract class WeightedDAWGSet extends AbstractSet<String> {
+    static final char SCORE_SEPARATOR = AbstractDAWGMap.KEY_VALUE_SEPARATOR;
+    static final int SCORE_LENGTH = 8;
+    private static final char HEX_DIGITS[] = "0123456789abcdef".toCharArray();
+    private static final Comparator<Candidate> CANDIDATES_ORDER = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            if (a.score != b.score)
+                return a.score > b.score ? -1 : 1;
+            return a.prefix.compareTo(b.prefix);
+        }
+    };
+    DAWGSet dawg;
+
+    WeightedDAWGSet() {
+    }
+
+    WeightedDAWGSet(DAWGSet dawg) {
+        this.dawg = dawg;
+    }
+
+    public DAWGSet getUnderlyingSet() {
+        return new UnmodifiableDAWGSet(dawg);
+    }
+
+    static String encodeScore(int score) {
+        // Flipping the sign bit makes an unsigned lexicographic comparison of encoded scores
+        // consistent with a signed comparison of the scores themselves.
+        int unsigned = score ^ Integer.MIN_VALUE;
+        char ret[] = new char[SCORE_LENGTH];
+        for (int i = SCORE_LENGTH - 1; i >= 0; i--) {
+            ret[i] = HEX_DIGITS[unsigned & 15];
+            unsigned >>>= 4;
+        }
+        return String.valueOf(ret);
+    }
+
+    static int decodeScore(CharSequence encoded) {
+        int unsigned = 0;
+        for (int i = 0; i < SCORE_LENGTH; i++)
+            unsigned = (unsigned << 4) | Character.digit(encoded.charAt(i), 16);
+        return unsigned ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Reads the only string of the right language of a node located right after the score separator.
+     */
+    int readScore(DAWGNode scoreNode) {
+        StringBuilder sb = new StringBuilder(SCORE_LENGTH);
+        DAWGNode node = scoreNode;
+        while (!node.isAcceptNode()) {
+            Map.Entry<Character, DAWGNode> e = dawg.getOutgoingTransitions(node).iterator().next();
+            sb.append(e.getKey().charValue());
+            node = e.getValue();
+        }
+        return decodeScore(sb);
+    }
+
+    /**
+     * Calculates the maximal score of words reachable from a given node (which should lie before the separator).
+     */
+    int calculateMaxScore(DAWGNode node) {
+        int ret = Integer.MIN_VALUE;
+        for (Map.Entry<Character, DAWGNode> e : dawg.getOutgoingTransitions(node)) {
+            int score = e.getKey() == SCORE_SEPARATOR ? readScore(e.getValue()) : getMaxScore(e.getValue());
+            if (ret < score)
+                ret = score;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the maximal score of words reachable from a given node (which should lie before the separator).
+     */
+    abstract int getMaxScore(DAWGNode node);
+
+    /**
+     * Returns the score of a given word.
+     * @param word a word
+     * @return score of a word or null if this set does not contain a given word
+     */
+    public Integer getScore(String word) {
+        AbstractDAWGMap.checkNotNullAndContainsNoZeros(word);
+        DAWGNode node = dawg.getSourceNode().transition(word);
+        if (node == null)
+            return null;
+        node = node.transition(SCORE_SEPARATOR);
+        return node == null ? null : readScore(node);
+    }
+
+    /**
+     * Returns at most k words starting with a given prefix that have the highest scores.
+     * Words with equal scores are returned in natural order.
+     * This method performs a best-first search: its complexity depends on k and on the length of the words,
+     * but not on the total number of words starting with a given prefix.
+     * Candidates are kept in a queue bounded by k: each of them guarantees a word with its score,
+     * so a candidate worse than the k-th one is dropped.
+     * @param prefix a prefix of returned words
+     * @param k maximal quantity of returned words
+     * @return a list of words ordered by score descending
+     */
+    public List<String> topK(String prefix, int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("k < 0");
+        AbstractDAWGMap.checkNotNullAndContainsNoZeros(prefix);
+        DAWGNode origin = dawg.getSourceNode().transition(prefix);
+        if (origin == null || k == 0)
+            return Collections.<String>emptyList();
+        List<String> ret = new ArrayList<String>(Math.min(k, 16));
+        TreeSet<Candidate> queue = new TreeSet<Candidate>(CANDIDATES_ORDER);
+        queue.add(new Candidate(getMaxScore(origin), origin, prefix));
+        while (ret.size() < k) {
+            Candidate candidate = queue.pollFirst();
+            if (candidate == null)
+                break;
+            if (candidate.node == null) {
+                ret.add(candidate.prefix);
+                continue;
+            }
+            for (Map.Entry<Character, DAWGNode> e : dawg.getOutgoingTransitions(candidate.node)) {
+                char c = e.getKey();
+                DAWGNode child = e.getValue();
+                if (c == SCORE_SEPARATOR)
+                    // A complete word: its score is exact.
+                    offer(queue, new Candidate(readScore(child), null, candidate.prefix), k - ret.size());
+                else
+                    offer(queue, new Candidate(getMaxScore(child), child, candidate.prefix + c), k - ret.size());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Adds a candidate to a queue holding at most a given quantity of the best candidates.
+     * Prefixes of candidates don't start with each other, so the words of a better candidate
+     * come before a worse candidate, and a worse candidate can't get into the result if the queue is full.
+     */
+    private static void offer(TreeSet<Candidate> queue, Candidate candidate, int capacity) {
+        if (queue.size() < capacity)
+            queue.add(candidate);
+        else if (CANDIDATES_ORDER.compare(candidate, queue.last()) < 0) {
+            queue.pollLast();
+            queue.add(candidate);
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        AbstractDAWGMap.checkNotNullAndContainsNoZeros(o);
+        DAWGNode node = dawg.getSourceNode().transition((String)o);
+        return node != null && node.transition(SCORE_SEPARATOR) != null;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private final Iterator<String> it = dawg.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return AbstractDAWGMap.keyOfStringEntry(it.next());
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                onModification();
+            }
+        };
+    }
+
+    void onModification() {
+    }
+
+    @Override
+    public int size() {
+        return dawg.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dawg.isEmpty();
+    }
+
+    private static class Candidate {
+        /**
+         * Exact score of a word if node is null, the upper bound of scores otherwise.
+         */
+        final int score;
+
+        /**
+         * Node to expand or null if the candidate is a complete word.
+         */
+        final DAWGNode node;
+
+        final String prefix;
+
+        public Candidate(int score, DAWGNode node, String prefix) {
+            this.score = score;
+            this.node = node;
+            this.prefix = prefix;
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package org.quinto.dawg.util;
 
-import org.quinto.dawg.StringsFilter;
+import org.quinto.dawg.CharFolding;
+import org.quinto.dawg.FoldedStringsFilter;
 import java.util.Arrays;
 import java.util.Iterator;
 
-public class IterableStringsFilter implements StringsFilter {
+public class IterableStringsFilter implements FoldedStringsFilter {
     private final Iterable<String> delegate;
 
     public IterableStringsFilter(Iterable<String> delegate) {
@@ -82,6 +83,23 @@ public class IterableStringsFilter implements StringsFilter {
         });
     }
     
+    @Override
+    public Iterable<String> getStringsStartingWithFolded(final String prefix, final CharFolding folding) {
+        if (prefix == null)
+            return delegate;
+        return getStringsByFilter(new Predicate<String>() {
+            @Override
+            public boolean test(String ret) {
+                if (ret.length() < prefix.length())
+                    return false;
+                for (int i = 0; i < prefix.length(); i++)
+                    if (folding.fold(ret.charAt(i)) != folding.fold(prefix.charAt(i)))
+                        return false;
+                return true;
+            }
+        });
+    }
+    
     // TODO: replace by Java 8 class.
     private static interface Predicate<T> {
         public boolean test(T value);
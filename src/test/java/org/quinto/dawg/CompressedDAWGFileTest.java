@@ -0,0 +1,154 @@
+package org.quinto.dawg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.quinto.dawg.util.RandomWords;
+import org.quinto.dawg.util.Serializer;
+
+public class CompressedDAWGFileTest {
+    private static List<String> toList(Iterable<String> it) {
+        List<String> ret = new ArrayList<String>();
+        for (String s : it)
+            ret.add(s);
+        return ret;
+    }
+
+    private static ModifiableDAWGSet createDAWG() {
+        return new ModifiableDAWGSet(new RandomWords(3, 100000, 20, 20).sortedSet(5000, "\u0436\u4E2D", 20));
+    }
+
+    @Test
+    public void lazyIncomingData() throws IOException, ClassNotFoundException {
+        ModifiableDAWGSet modifiable = createDAWG();
+        for (CompressedDAWGSet expected : new CompressedDAWGSet[]{modifiable.compress(), modifiable.compressWithSuffixIndex()}) {
+            File file = File.createTempFile("dawg", ".bin");
+            file.deleteOnExit();
+            CompressedDAWGFile.write(expected, file);
+            CompressedDAWGSet dawg = CompressedDAWGFile.read(file);
+            assertEquals(expected.getClass(), dawg.getClass());
+            // Digests are read from the metadata.
+            assertEquals(expected.getFingerprint(), (long)dawg.fingerprint);
+            assertEquals(expected.hashCode(), (int)dawg.hashCode);
+            assertNotNull(dawg.pendingSections);
+            assertNull(dawg.incomingData);
+            assertNull(dawg.suffixIndex);
+            assertEquals(expected.isWithIncomingTransitions(), dawg.isWithIncomingTransitions());
+            assertEquals(expected.isWithSuffixIndex(), dawg.isWithSuffixIndex());
+            // Lookups and prefix search don't need incoming transitions.
+            assertEquals(expected.size(), dawg.size());
+            assertEquals(new ArrayList<String>(expected), new ArrayList<String>(dawg));
+            assertEquals(toList(expected.getStringsStartingWith("1a")), toList(dawg.getStringsStartingWith("1a")));
+            assertEquals(toList(expected.getStringsWithSubstring("ab")), toList(dawg.getStringsWithSubstring("ab")));
+            assertEquals(expected.getRank("1a"), dawg.getRank("1a"));
+            assertNotNull(dawg.pendingSections);
+            assertEquals(toList(expected.getStringsEndingWith("\u4E2D")), toList(dawg.getStringsEndingWith("\u4E2D")));
+            assertNull(dawg.pendingSections);
+            assertEquals(expected, dawg);
+            assertEquals(expected.isWithIncomingTransitions(), dawg.isWithIncomingTransitions());
+            assertEquals(expected.isWithSuffixIndex(), dawg.isWithSuffixIndex());
+            // Serialization loads pending sections first.
+            CompressedDAWGSet serialized = Serializer.serializeAndRead(CompressedDAWGFile.read(file));
+            assertEquals(toList(expected.getStringsEndingWith("a")), toList(serialized.getStringsEndingWith("a")));
+        }
+    }
+
+    @Test
+    public void layouts() throws IOException {
+        ModifiableDAWGSet modifiable = createDAWG();
+        ModifiableDAWGSet large = new ModifiableDAWGSet(false);
+        for (char c = '\u0400'; c < '\u0480'; c++)
+            large.add(c + "x" + c);
+        for (CompressedDAWGSet expected : new CompressedDAWGSet[]{modifiable.compressToBytes(), large.compress()}) {
+            File file = File.createTempFile("dawg", ".bin");
+            file.deleteOnExit();
+            CompressedDAWGFile.write(expected, file);
+            CompressedDAWGSet dawg = CompressedDAWGFile.read(file);
+            assertEquals(expected.getClass(), dawg.getClass());
+            assertNull(dawg.pendingSections);
+            assertEquals(expected, dawg);
+            assertEquals(new ArrayList<String>(expected), new ArrayList<String>(dawg));
+            assertEquals(expected.getTransitionCount(), dawg.getTransitionCount());
+        }
+    }
+
+    @Test
+    public void backgroundLoading() throws IOException, InterruptedException {
+        CompressedDAWGSet expected = createDAWG().compress();
+        File file = File.createTempFile("dawg", ".bin");
+        file.deleteOnExit();
+        CompressedDAWGFile.write(expected, file);
+        CompressedDAWGSet dawg = CompressedDAWGFile.read(file, true);
+        for (int i = 0; i < 1000 && dawg.pendingSections != null; i++)
+            Thread.sleep(10L);
+        assertNull(dawg.pendingSections);
+        assertTrue(dawg.incomingData.length > 0);
+        assertEquals(toList(expected.getStringsEndingWith("1")), toList(dawg.getStringsEndingWith("1")));
+    }
+
+    @Test
+    public void annotations() throws IOException {
+        CompressedDAWGSet expected = createDAWG().compress();
+        Map<String, String> annotations = new LinkedHashMap<String, String>();
+        annotations.put("source", "words.txt");
+        annotations.put("built", "2016-01-01");
+        File file = File.createTempFile("dawg", ".bin");
+        file.deleteOnExit();
+        CompressedDAWGFile.write(expected, annotations, file);
+        assertEquals(annotations, CompressedDAWGFile.readAnnotations(file));
+        assertEquals(expected, CompressedDAWGFile.read(file));
+        CompressedDAWGFile.write(expected, file);
+        assertTrue(CompressedDAWGFile.readAnnotations(file).isEmpty());
+    }
+
+    @Test
+    public void wrongFormat() throws IOException {
+        File file = File.createTempFile("dawg", ".bin");
+        file.deleteOnExit();
+        CompressedDAWGFile.write(createDAWG().compress(), file);
+        // Metadata without digests.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(24);
+            raf.writeLong(13);
+        } finally {
+            raf.close();
+        }
+        try {
+            CompressedDAWGFile.read(file);
+            assertTrue(false);
+        } catch (IOException e) {
+        }
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(50);
+        } finally {
+            raf.close();
+        }
+        try {
+            CompressedDAWGFile.read(file);
+            assertTrue(false);
+        } catch (IOException e) {
+        }
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.writeInt(0);
+        } finally {
+            raf.close();
+        }
+        try {
+            CompressedDAWGFile.read(file);
+            assertTrue(false);
+        } catch (IOException e) {
+        }
+    }
+}
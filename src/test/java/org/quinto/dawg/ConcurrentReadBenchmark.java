@@ -0,0 +1,75 @@
+package org.quinto.dawg;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of lookups in a single {@link CompressedDAWGSet} shared by 1 to 64 threads.
+ * Each thread runs a fixed quantity of queries, so with linear scaling the throughput grows with the quantity
+ * of threads up to the quantity of available cores.
+ * Usage: ConcurrentReadBenchmark [words file] [queries per thread] [max threads]
+ */
+public class ConcurrentReadBenchmark {
+    public static void main(String args[]) throws Exception {
+        String file = args.length > 0 ? args[0] : "words.txt";
+        final int queriesCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        final List<String> words = readWords(file);
+        final CompressedDAWGSet dawg = new ModifiableDAWGSet(false, words).compress();
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 2; round++) {
+            for (int threadsCount = 1; threadsCount <= maxThreads; threadsCount *= 2) {
+                final CountDownLatch start = new CountDownLatch(1);
+                final CountDownLatch finish = new CountDownLatch(threadsCount);
+                final AtomicLong found = new AtomicLong();
+                for (int t = 0; t < threadsCount; t++) {
+                    final Random random = new Random(t);
+                    new Thread() {
+                        @Override
+                        public void run() {
+                            try {
+                                start.await();
+                                long f = 0;
+                                for (int i = 0; i < queriesCount; i++)
+                                    if (dawg.contains(words.get(random.nextInt(words.size()))))
+                                        f++;
+                                found.addAndGet(f);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            } finally {
+                                finish.countDown();
+                            }
+                        }
+                    }.start();
+                }
+                long startTime = System.nanoTime();
+                start.countDown();
+                finish.await();
+                long nanos = System.nanoTime() - startTime;
+                long total = (long)threadsCount * queriesCount;
+                if (found.get() != total)
+                    throw new IllegalStateException("Not all words are found");
+                System.out.println("Round " + round + ", " + threadsCount + " threads: " + total * 1000000000L / nanos + " lookups per second");
+            }
+        }
+    }
+
+    private static List<String> readWords(String file) throws IOException {
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = br.readLine()) != null)
+                words.add(line);
+        } finally {
+            br.close();
+        }
+        return words;
+    }
+}
@@ -26,17 +26,23 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NavigableSet;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.quinto.dawg.util.Serializer;
 
 /**
  *
@@ -323,4 +329,190 @@ public class DAWGFileTest {
             assertEquals(controlSet, actual);
         }
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void byteLayout() throws Exception {
+        CompressedDAWGSet dawg3 = dawg1.compressToBytes();
+        assertTrue(dawg3 instanceof CompressedDAWGSetBytes);
+        assertEquals(dawg1.size(), dawg3.size());
+        assertEquals(dawg1.getTransitionCount(), dawg3.getTransitionCount());
+        assertEquals(dawg2.getNodeCount(), dawg3.getNodeCount());
+        assertEquals(dawg2.getMaxLength(), dawg3.getMaxLength());
+        assertEquals(new ArrayList<String>(dawg2), new ArrayList<String>(dawg3));
+        assertEquals(new ArrayList<String>(dawg2.descendingSet()), new ArrayList<String>(dawg3.descendingSet()));
+        assertEquals(dawg2, dawg3);
+        assertEquals(dawg2.hashCode(), dawg3.hashCode());
+        for (String word : wordArrayList) {
+            assertTrue(dawg3.contains(word));
+            assertEquals(dawg2.getRank(word), dawg3.getRank(word));
+        }
+        assertFalse(dawg3.contains("AOLx"));
+        assertFalse(dawg3.contains(""));
+        for (String prefix : new String[]{"ang", "iter", "con", "pro", "nan", "ing", "inter", "ton", "tion", "zzz"}) {
+            assertEquals(toList(dawg2.getStringsStartingWith(prefix)), toList(dawg3.getStringsStartingWith(prefix)));
+            // Without incoming transitions suffix search enumerates words in a different order.
+            assertEquals(new TreeSet<String>(toList(dawg2.getStringsEndingWith(prefix))), new TreeSet<String>(toList(dawg3.getStringsEndingWith(prefix))));
+            assertEquals(toList(dawg2.getStringsWithSubstring(prefix)), toList(dawg3.getStringsWithSubstring(prefix)));
+        }
+        assertTrue(dawg3.getMemoryFootprint().getBytes(DAWGMemoryFootprint.Component.OUTGOING_DATA) * 2 < dawg2.getMemoryFootprint().getBytes(DAWGMemoryFootprint.Component.OUTGOING_DATA));
+        CompressedDAWGSet deserialized = Serializer.serializeAndRead(dawg3);
+        assertEquals(dawg3, deserialized);
+        assertEquals(dawg3.size(), deserialized.size());
+        assertEquals(dawg1, dawg3.uncompress());
+        
+        ModifiableDAWGSet small = new ModifiableDAWGSet();
+        assertTrue(small.compressToBytes().isEmpty());
+        small.add("");
+        assertEquals(Collections.singletonList(""), new ArrayList<String>(small.compressToBytes()));
+        small.add("a");
+        small.add("ab");
+        assertEquals(small, small.compressToBytes());
+    }
+    
+    @Test
+    public void relayout() {
+        List<String> hotWords = new ArrayList<String>();
+        for (String word : wordArrayList)
+            if (word.startsWith("pro") || word.startsWith("tra"))
+                hotWords.add(word);
+        hotWords.add("prozzz");
+        ModifiableDAWGSet small = new ModifiableDAWGSet();
+        for (String word : wordArrayList)
+            if (word.matches("[a-z]+"))
+                small.add(word);
+        for (CompressedDAWGSet dawg : new CompressedDAWGSet[]{dawg2, small.compress()}) {
+            CompressedDAWGSet relaid = dawg.relayout(hotWords);
+            assertEquals(dawg.getClass(), relaid.getClass());
+            assertFalse(Arrays.equals(dawg.outgoingData, relaid.outgoingData));
+            assertArrayEquals(dawg.outgoingData, dawg.relayout(Collections.<String>emptyList()).outgoingData);
+            assertEquals(new ArrayList<String>(dawg), new ArrayList<String>(relaid));
+            assertEquals(new ArrayList<String>(dawg.descendingSet()), new ArrayList<String>(relaid.descendingSet()));
+            assertEquals(dawg.getNodeCount(), relaid.getNodeCount());
+            assertEquals(dawg.getTransitionCount(), relaid.getTransitionCount());
+            assertEquals(toList(dawg.getStringsEndingWith("ing")), toList(relaid.getStringsEndingWith("ing")));
+            int maxHotIndex = 0;
+            int relaidMaxHotIndex = 0;
+            for (String word : hotWords) {
+                assertEquals(dawg.contains(word), relaid.contains(word));
+                assertEquals(dawg.getRank(word), relaid.getRank(word));
+                maxHotIndex = Math.max(maxHotIndex, getMaxPathIndex(dawg, word));
+                relaidMaxHotIndex = Math.max(relaidMaxHotIndex, getMaxPathIndex(relaid, word));
+            }
+            // Hot paths are packed at the beginning.
+            assertTrue(relaidMaxHotIndex * 4 < maxHotIndex);
+        }
+
+        // The byte layout is encoded again.
+        CompressedDAWGSetBytes bytes = (CompressedDAWGSetBytes)small.compressToBytes();
+        CompressedDAWGSetBytes relaid = (CompressedDAWGSetBytes)bytes.relayout(hotWords);
+        assertFalse(Arrays.equals(bytes.data, relaid.data));
+        assertArrayEquals(bytes.data, ((CompressedDAWGSetBytes)bytes.relayout(Collections.<String>emptyList())).data);
+        assertEquals(small, relaid);
+        assertEquals(new ArrayList<String>(bytes.descendingSet()), new ArrayList<String>(relaid.descendingSet()));
+        assertEquals(bytes.getNodeCount(), relaid.getNodeCount());
+        assertEquals(bytes.getTransitionCount(), relaid.getTransitionCount());
+        assertEquals(bytes.getFingerprint(), relaid.getFingerprint());
+        assertEquals(toList(bytes.getStringsStartingWith("tra")), toList(relaid.getStringsStartingWith("tra")));
+        int maxHotIndex = 0;
+        int relaidMaxHotIndex = 0;
+        for (String word : hotWords) {
+            assertEquals(bytes.contains(word), relaid.contains(word));
+            assertEquals(bytes.getRank(word), relaid.getRank(word));
+            maxHotIndex = Math.max(maxHotIndex, getMaxPathIndex(bytes, word));
+            relaidMaxHotIndex = Math.max(relaidMaxHotIndex, getMaxPathIndex(relaid, word));
+        }
+        assertTrue(relaidMaxHotIndex * 4 < maxHotIndex);
+        assertTrue(new ModifiableDAWGSet().compressToBytes().relayout(hotWords).isEmpty());
+    }
+    
+    @Test
+    public void suffixIndex() throws Exception {
+        CompressedDAWGSet dawg = dawg1.compressWithSuffixIndex();
+        assertTrue(dawg.isWithSuffixIndex());
+        assertFalse(dawg.isWithIncomingTransitions());
+        assertFalse(dawg2.isWithSuffixIndex());
+        assertEquals(new ArrayList<String>(dawg2), new ArrayList<String>(dawg));
+        CompressedDAWGSet relaid = dawg.relayout(dawg.getStringsStartingWith("pro"));
+        CompressedDAWGSet deserialized = Serializer.serializeAndRead(dawg);
+        for (String suffix : new String[]{"ing", "s", "tion", "aol", "zzzz", wordArrayList.get(100)}) {
+            List<String> expected = new ArrayList<String>();
+            for (String word : wordArrayList)
+                if (word.endsWith(suffix))
+                    expected.add(CompressedDAWGSet.reverse(word));
+            Collections.sort(expected);
+            for (int i = 0; i < expected.size(); i++)
+                expected.set(i, CompressedDAWGSet.reverse(expected.get(i)));
+            assertEquals(expected, toList(dawg.getStringsEndingWith(suffix)));
+            assertEquals(expected, toList(relaid.getStringsEndingWith(suffix)));
+            assertEquals(expected, toList(deserialized.getStringsEndingWith(suffix)));
+            Collections.reverse(expected);
+            assertEquals(expected, toList(dawg.getStrings("", null, suffix, true, null, false, null, false)));
+            assertEquals(new TreeSet<String>(toList(dawg2.getStrings("", "a", suffix, false, "b", true, "p", false))), new TreeSet<String>(toList(dawg.getStrings("", "a", suffix, false, "b", true, "p", false))));
+            assertEquals(toList(dawg2.getStrings("pre", null, suffix, false, null, false, null, false)), toList(dawg.getStrings("pre", null, suffix, false, null, false, null, false)));
+        }
+        assertTrue(dawg.getMemoryFootprint().getBytes(DAWGMemoryFootprint.Component.INCOMING_DATA) > 0L);
+        ModifiableDAWGMap modifiableMap = new ModifiableDAWGMap();
+        for (int i = 0; i < 1000; i++)
+            modifiableMap.put(wordArrayList.get(i), wordArrayList.get(i * 7 % wordArrayList.size()));
+        CompressedDAWGMap map = modifiableMap.compressWithSuffixIndex();
+        assertEquals(modifiableMap, map);
+        for (int i = 0; i < 2000; i++) {
+            String value = wordArrayList.get(i * 3);
+            assertEquals(modifiableMap.containsValue(value), map.containsValue(value));
+        }
+    }
+    
+    @Test
+    public void batchLookups() {
+        List<String> queries = new ArrayList<String>();
+        for (int i = 0; i < wordArrayList.size(); i += 3) {
+            String word = wordArrayList.get(i);
+            queries.add(word);
+            queries.add(word + "s");
+            queries.add(word.substring(0, word.length() / 2));
+        }
+        queries.add("");
+        Collections.shuffle(queries, new Random(1L));
+        String words[] = queries.toArray(new String[queries.size()]);
+        String sorted[] = words.clone();
+        Arrays.sort(sorted);
+        for (DAWGSet dawg : new DAWGSet[]{dawg1, dawg2, dawg1.compressToBytes(), new UnmodifiableDAWGSet(dawg2)}) {
+            for (String batch[] : new String[][]{words, sorted}) {
+                for (boolean sort : new boolean[]{false, true}) {
+                    BitSet out = new BitSet();
+                    out.set(0, batch.length);
+                    dawg.containsAll(batch, out, sort);
+                    for (int i = 0; i < batch.length; i++)
+                        assertEquals(dawg.contains(batch[i]), out.get(i));
+                }
+            }
+        }
+        ModifiableDAWGMap modifiableMap = new ModifiableDAWGMap();
+        for (int i = 0; i < wordArrayList.size(); i += 2)
+            modifiableMap.put(wordArrayList.get(i), Integer.toString(i));
+        for (DAWGMap map : new DAWGMap[]{modifiableMap, modifiableMap.compress()}) {
+            for (boolean sort : new boolean[]{false, true}) {
+                String values[] = map.getAll(words, sort);
+                for (int i = 0; i < words.length; i++)
+                    assertEquals(map.get(words[i]), values[i]);
+            }
+        }
+    }
+    
+    private static int getMaxPathIndex(CompressedDAWGSet dawg, String word) {
+        int ret = 0;
+        int index = DAWGNode.START;
+        for (int i = 0; i < word.length() && index >= 0; i++) {
+            index = dawg.getTransitionIndex(index, word.charAt(i));
+            ret = Math.max(ret, index);
+        }
+        return ret;
+    }
+    
+    private static List<String> toList(Iterable<String> it) {
+        List<String> ret = new ArrayList<String>();
+        for (String s : it)
+            ret.add(s);
+        return ret;
+    }
+}
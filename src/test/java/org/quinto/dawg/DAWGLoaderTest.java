@@ -0,0 +1,94 @@
+package org.quinto.dawg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.quinto.dawg.util.RandomWords;
+
+public class DAWGLoaderTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private static File writeTempFile(byte data[]) throws IOException {
+        File file = File.createTempFile("words", ".txt");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(data);
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+    
+    @Test
+    public void loadFile() throws IOException {
+        RandomWords words = new RandomWords(11, 100000, 36, 36);
+        Random random = words.getRandom();
+        TreeSet<String> expected = new TreeSet<String>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            String word = words.next("\u0436\u20ac", 2);
+            expected.add(word);
+            sb.append(random.nextBoolean() ? " " : "").append(word).append(random.nextBoolean() ? "\r\n" : "\n");
+        }
+        byte data[] = sb.toString().getBytes(UTF8);
+        DAWGLoader loader = new DAWGLoader(UTF8);
+        loader.setTrim(true);
+        loader.setBatchSize(100, 2);
+        final List<long[]> progress = new ArrayList<long[]>();
+        loader.setProgressListener(new DAWGLoader.ProgressListener() {
+            @Override
+            public void progress(long bytes, long lines, double bytesPerSecond, double linesPerSecond) {
+                progress.add(new long[]{bytes, lines});
+            }
+        }, 0);
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet();
+        assertTrue(loader.load(dawg, writeTempFile(data)));
+        assertEquals(new ArrayList<String>(expected), new ArrayList<String>(dawg));
+        long last[] = progress.get(progress.size() - 1);
+        assertEquals(data.length, last[0]);
+        assertEquals(20000, last[1]);
+        // Bytes are counted as a mapped file is decoded, not after the whole region.
+        long first[] = progress.get(0);
+        assertTrue(first[0] > 0 && first[0] < data.length);
+        for (int i = 1; i < progress.size(); i++)
+            assertTrue(progress.get(i)[0] >= progress.get(i - 1)[0]);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GZIPOutputStream gzos = new GZIPOutputStream(baos);
+        gzos.write(data);
+        gzos.close();
+        loader.setGzip(true);
+        ModifiableDAWGSet gzipped = new ModifiableDAWGSet();
+        loader.load(gzipped, writeTempFile(baos.toByteArray()));
+        assertEquals(dawg, gzipped);
+    }
+    
+    @Test
+    public void delimiters() throws IOException {
+        DAWGLoader loader = new DAWGLoader(UTF8);
+        loader.setDelimiters(",;");
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet();
+        loader.load(dawg, Channels.newChannel(new ByteArrayInputStream("b,a;;c d,".getBytes(UTF8))));
+        assertEquals(Arrays.asList("a", "b", "c d"), new ArrayList<String>(dawg));
+    }
+    
+    @Test(expected = CharacterCodingException.class)
+    public void malformedInput() throws IOException {
+        new DAWGLoader(UTF8).load(new ModifiableDAWGSet(), writeTempFile(new byte[]{'a', '\n', (byte)0xff, '\n'}));
+    }
+}
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import static java.util.Arrays.asList;
@@ -161,4 +162,35 @@ public class DAWGMapOfStringSetsTest {
         assertEquals("key", dawg.headMap("key", true).navigableKeySet().descendingIterator().next());
         assertEquals("kexy", dawg.headMap("key", false).navigableKeySet().descendingIterator().next());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void cardinalities() {
+        Random random = new Random(3);
+        ModifiableDAWGMapOfStringSets dawg = new ModifiableDAWGMapOfStringSets();
+        Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+        for (int i = 0; i < 3000; i++) {
+            String key = Integer.toString(random.nextInt(40), 3);
+            String value = Integer.toString(random.nextInt(20), 2);
+            Set<String> values = expected.get(key);
+            if (random.nextInt(3) == 0) {
+                assertEquals(values != null && values.remove(value), dawg.remove(key, value));
+                if (values != null && values.isEmpty())
+                    expected.remove(key);
+            } else {
+                if (values == null)
+                    expected.put(key, values = new HashSet<String>());
+                assertEquals(values.add(value), dawg.put(key, value));
+            }
+            assertEquals(expected.size(), dawg.size());
+            assertEquals(values == null ? 0 : values.size(), dawg.get(key).size());
+            assertEquals(values == null || values.isEmpty(), dawg.get(key).isEmpty());
+        }
+        CompressedDAWGMapOfStringSets cdawg = dawg.compress();
+        assertEquals(expected.size(), cdawg.size());
+        for (Entry<String, Set<String>> e : expected.entrySet()) {
+            assertEquals(e.getValue().size(), cdawg.get(e.getKey()).size());
+            assertTrue(cdawg.get(e.getKey()).containsAll(e.getValue()));
+        }
+        assertEquals(0, cdawg.get("x").size());
+    }
+}
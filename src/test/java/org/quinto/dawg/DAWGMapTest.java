@@ -2,8 +2,11 @@ package org.quinto.dawg;
 
 import org.quinto.dawg.util.Serializer;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -131,4 +134,132 @@ public class DAWGMapTest {
         NavigableMap<String, String> map = dawg.subMap("bac", "baw");
         map.put("baa", "value");
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void directLookups() {
+        ModifiableDAWGMap dawg = new ModifiableDAWGMap();
+        dawg.put("abc", "value");
+        dawg.put("ab", "");
+        dawg.put("b", "xyz");
+        char buffer[] = "  abc  ".toCharArray();
+        for (DAWGMap map : new DAWGMap[]{dawg, dawg.compress()}) {
+            assertEquals("value", map.get(new StringBuilder("abc")));
+            assertEquals("value", map.get(buffer, 2, 3));
+            assertEquals("", map.get(buffer, 2, 2));
+            assertEquals(null, map.get(buffer, 1, 3));
+            assertEquals(null, map.get("a"));
+            assertEquals("xyz", map.get((Object)"b"));
+            assertTrue(map.containsKey(buffer, 2, 3));
+            assertTrue(map.containsKey(new StringBuilder("b")));
+            assertFalse(map.containsKey(buffer, 2, 1));
+            assertFalse(map.containsKey((Object)"abcd"));
+        }
+    }
+    
+    @Test
+    public void bulkLoading() throws IOException {
+        ModifiableDAWGMap dawg = new ModifiableDAWGMap();
+        dawg.put("b", "old");
+        dawg.put("c", "same");
+        dawg.put("z", "kept");
+        TreeMap<String, String> expected = new TreeMap<String, String>();
+        expected.put("a", "1");
+        expected.put("b", "new");
+        expected.put("c", "same");
+        expected.put("d", "4");
+        expected.put("z", "kept");
+        assertTrue(dawg.putAll(Arrays.asList(
+            new AbstractMap.SimpleEntry<String, String>("a", "1"),
+            new AbstractMap.SimpleEntry<String, String>("b", "new"),
+            new AbstractMap.SimpleEntry<String, String>("c", "same"),
+            new AbstractMap.SimpleEntry<String, String>("d", "0"),
+            new AbstractMap.SimpleEntry<String, String>("d", "4")
+        )));
+        assertEquals(expected, dawg);
+        
+        dawg = new ModifiableDAWGMap();
+        dawg.put("key", "x");
+        assertTrue(dawg.putAll(new StringReader("a\t1\r\n\nb\tc\td\nkey\tz\na\t2\nkey\ty"), '\t'));
+        expected.clear();
+        expected.put("a", "2");
+        expected.put("b", "c\td");
+        expected.put("key", "y");
+        assertEquals(expected, dawg);
+        assertFalse(dawg.putAll(new StringReader("a,2\n"), ','));
+        try {
+            dawg.putAll(new StringReader("a,2\nnodelimiter\n"), ',');
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+        }
+    }
+    
+    @Test
+    public void queryCache() {
+        ModifiableDAWGMap dawg = new ModifiableDAWGMap();
+        dawg.put("ab", "1");
+        dawg.put("abc", "2");
+        dawg.put("abd", "3");
+        dawg.put("b", "4");
+        DAWGQueryCache cache = new DAWGQueryCache(dawg, 10, 10);
+        assertEquals(Arrays.asList("ab", "abc", "abd"), cache.getStringsStartingWith("ab"));
+        assertEquals(Arrays.asList("abc"), cache.getStrings("ab", false, "ab", false, "abd", false));
+        assertEquals(Arrays.asList("abd", "abc"), cache.getStrings("ab", true, "abc", true, "abd", true));
+        assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("abc", "2")), cache.getEntries("ab", false, "ab", false, "abc", true));
+        assertEquals(3, cache.countStringsStartingWith("ab"));
+        assertEquals(4, cache.countStringsStartingWith(""));
+        dawg.put("abc", "5");
+        assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("abc", "5")), cache.getEntries("ab", false, "ab", false, "abc", true));
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(3, cache.countStringsStartingWith("ab"));
+        assertEquals(3, cache.countStringsStartingWith("ab"));
+        assertEquals(1L, cache.getHitCount());
+    }
+    
+    @Test
+    public void foldedLookups() {
+        ModifiableDAWGMap dawg = new ModifiableDAWGMap();
+        dawg.put("Paris", "1");
+        dawg.put("paris", "2");
+        dawg.put("parish", "3");
+        dawg.put("Pari", "4");
+        dawg.put("Z\u00FCrich", "5");
+        Utf8DAWGMap utf8 = new Utf8DAWGMap();
+        utf8.putAll(dawg);
+        for (DAWGMap map : new DAWGMap[]{dawg, dawg.compress(), utf8, utf8.compress()}) {
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("Paris", "1"), new AbstractMap.SimpleEntry<String, String>("paris", "2")), toList(map.getEntriesFolded("PARIS", CharFolding.CASE)));
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("Pari", "4"), new AbstractMap.SimpleEntry<String, String>("Paris", "1"),
+                    new AbstractMap.SimpleEntry<String, String>("paris", "2"), new AbstractMap.SimpleEntry<String, String>("parish", "3")), toList(map.getEntriesStartingWithFolded("pari", CharFolding.CASE)));
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("Z\u00FCrich", "5")), toList(map.getEntriesFolded("zurich", CharFolding.CASE_AND_DIACRITICS)));
+            assertEquals(0, toList(map.getEntriesFolded("zurich", CharFolding.CASE)).size());
+        }
+    }
+    
+    @Test
+    public void cursor() {
+        ModifiableDAWGMap dawg = new ModifiableDAWGMap();
+        dawg.put("ab", "1");
+        dawg.put("abc", "2");
+        dawg.put("abd", "3");
+        dawg.put("abe", "4");
+        dawg.put("b", "5");
+        for (DAWGMap map : new DAWGMap[]{dawg, dawg.compress()}) {
+            DAWGCursor cursor = new DAWGCursor("ab", false, "ab", false, "abe", true);
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("abc", "2"), new AbstractMap.SimpleEntry<String, String>("abd", "3")), cursor.next(map, 2));
+            assertFalse(cursor.isExhausted());
+            cursor = DAWGCursor.fromToken(cursor.toToken());
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("abe", "4")), cursor.next(map, 2));
+            assertTrue(cursor.isExhausted());
+            cursor = new DAWGCursor(null, true, "abc", true, "b", false);
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("abe", "4")), cursor.next(map, 1));
+            assertEquals(Arrays.<Entry<String, String>>asList(new AbstractMap.SimpleEntry<String, String>("abd", "3"), new AbstractMap.SimpleEntry<String, String>("abc", "2")), cursor.next(map, 5));
+            assertTrue(cursor.isExhausted());
+        }
+    }
+    
+    private static <T> List<T> toList(Iterable<T> it) {
+        List<T> ret = new ArrayList<T>();
+        for (T t : it)
+            ret.add(t);
+        return ret;
+    }
+}
@@ -0,0 +1,73 @@
+package org.quinto.dawg;
+
+import org.quinto.dawg.util.RandomWords;
+import org.quinto.dawg.util.Serializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class DAWGPrimitiveMapTest {
+    @Test
+    public void simple() throws IOException, ClassNotFoundException {
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        map.put("", 5);
+        map.put("tap", 1);
+        map.put("taps", 2);
+        map.put("top", 3);
+        map.put("tops", 4);
+        CompressedDAWGIntMap dawg = new CompressedDAWGIntMap(map);
+        assertEquals(5, dawg.size());
+        assertEquals(5, dawg.get("", -1));
+        assertEquals(1, dawg.get("tap", -1));
+        assertEquals(4, dawg.get(new StringBuilder("tops"), -1));
+        assertEquals(-1, dawg.get("to", -1));
+        assertEquals(-1, dawg.get("topsy", -1));
+        assertEquals(-1, dawg.get("x", -1));
+        assertEquals(0, dawg.indexOf(""));
+        assertEquals(3, dawg.indexOf("top"));
+        assertTrue(dawg.containsKey("taps"));
+        assertFalse(dawg.containsKey("t"));
+        assertEquals(new ArrayList<String>(new TreeMap<String, Integer>(map).keySet()), new ArrayList<String>(dawg.keySet()));
+        assertEquals(dawg, Serializer.serializeAndRead(dawg));
+        assertEquals(2, Serializer.serializeAndRead(dawg).get("taps", -1));
+        
+        CompressedDAWGIntMap empty = new CompressedDAWGIntMap(new HashMap<String, Integer>());
+        assertTrue(empty.isEmpty());
+        assertEquals(-1, empty.get("", -1));
+    }
+    
+    @Test
+    public void random() {
+        for (boolean largeAlphabet : new boolean[]{false, true}) {
+            RandomWords randomWords = largeAlphabet ? new RandomWords(7, '\u0100', 100, 0, 6) : new RandomWords(7, 'a', 5, 0, 6);
+            Random random = randomWords.getRandom();
+            TreeMap<String, Long> longs = new TreeMap<String, Long>();
+            TreeMap<String, Float> floats = new TreeMap<String, Float>();
+            for (int i = 0; i < 3000; i++) {
+                String word = randomWords.next();
+                longs.put(word, random.nextLong());
+                floats.put(word, random.nextFloat());
+            }
+            CompressedDAWGLongMap longMap = new CompressedDAWGLongMap(longs);
+            CompressedDAWGFloatMap floatMap = new CompressedDAWGFloatMap(floats);
+            assertEquals(largeAlphabet, longMap.keys instanceof CompressedDAWGSetLargeAlphabet);
+            assertEquals(longs.size(), longMap.size());
+            int rank = 0;
+            for (Map.Entry<String, Long> e : longs.entrySet()) {
+                assertEquals(rank, longMap.indexOf(e.getKey()));
+                assertEquals(e.getValue().longValue(), longMap.get(e.getKey(), 0L));
+                assertEquals(e.getValue().longValue(), longMap.valueAt(rank));
+                assertEquals(floats.get(e.getKey()), floatMap.get(e.getKey(), Float.NaN), 0f);
+                assertEquals(-1, longMap.indexOf(e.getKey() + 'z'));
+                rank++;
+            }
+        }
+    }
+}
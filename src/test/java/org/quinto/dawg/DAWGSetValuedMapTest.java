@@ -1,7 +1,13 @@
 package org.quinto.dawg;
 
 import org.quinto.dawg.util.Serializer;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Arrays;
@@ -59,4 +65,25 @@ public class DAWGSetValuedMapTest {
         assertTrue(dawg.removeValue("b"));
         assertEquals(2, dawg.size());
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void bulkLoading() throws IOException {
+        File file = File.createTempFile("entries", ".csv");
+        file.deleteOnExit();
+        OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write("a,1\na,2\nb,\u0436\n");
+        } finally {
+            writer.close();
+        }
+        ModifiableDAWGSetValuedMap dawg = new ModifiableDAWGSetValuedMap();
+        dawg.put("a", "0");
+        assertTrue(dawg.putAll(file, Charset.forName("UTF-8"), ','));
+        assertEquals(asSet("0", "1", "2"), dawg.get("a"));
+        assertEquals(asSet("\u0436"), dawg.get("b"));
+        assertFalse(dawg.putAll(new StringReader("a,1\n"), ','));
+        assertTrue(dawg.putAll(Arrays.asList(new AbstractMap.SimpleEntry<String, String>("c", "3"))));
+        assertEquals(asSet("3"), dawg.get("c"));
+        assertEquals(5, dawg.size());
+    }
+}
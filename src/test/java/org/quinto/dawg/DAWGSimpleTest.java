@@ -22,11 +22,15 @@
 
 package org.quinto.dawg;
 
+import java.io.CharArrayReader;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -35,12 +39,16 @@ import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.quinto.dawg.util.Permutations;
+import org.quinto.dawg.util.RandomWords;
 import org.quinto.dawg.util.Serializer;
 
 public class DAWGSimpleTest {
@@ -650,7 +658,7 @@ public class DAWGSimpleTest {
         for (String s : words)
             if (maxLength < s.length())
                 maxLength = s.length();
-        assertEquals(maxLength, cdawg.getMaxLength(cdawg.getSourceNode(), 0));
+        assertEquals(maxLength, cdawg.getStatistics().getMaxLength());
         
         assertEquals(cdawg, Serializer.serializeAndRead(cdawg));
         
@@ -730,7 +738,7 @@ public class DAWGSimpleTest {
     @Test(expected = NoSuchElementException.class)
     public void emptyCompressed() throws IOException, ClassNotFoundException {
         CompressedDAWGSet dawg = new ModifiableDAWGSet().compress();
-        assertEquals(0, dawg.getMaxLength(dawg.getSourceNode(), 0));
+        assertEquals(0, dawg.getStatistics().getMaxLength());
         assertFalse(dawg.contains(""));
         assertFalse(dawg.contains("\0"));
         assertFalse(dawg.contains("a"));
@@ -926,7 +934,7 @@ public class DAWGSimpleTest {
             assertArrayEquals(new int[]{0, 3 | CompressedDAWGNode.ACCEPT_NODE_MASK, 0}, cdawg.outgoingData);
         else
             assertArrayEquals(new int[]{1 | CompressedDAWGNode.ACCEPT_NODE_MASK}, cdawg.outgoingData);
-        assertEquals(0, cdawg.getMaxLength(cdawg.getSourceNode(), 0));
+        assertEquals(0, cdawg.getStatistics().getMaxLength());
         
         assertTrue(dawg.contains(""));
         assertTrue(cdawg.contains(""));
@@ -1657,4 +1665,744 @@ public class DAWGSimpleTest {
         assertEquals(Arrays.asList("kexy", "kexx", "kex"), toList(((StringsFilter)dawg.descendingSet().tailSet("key", false)).getAllStrings().iterator()));
         assertEquals(Arrays.asList("kexy", "kexx", "kex"), toList(((StringsFilter)dawg.headSet("key", false).descendingSet()).getAllStrings().iterator()));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void buildMetrics() {
+        final List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++)
+            words.add(String.format("%04d", i));
+        final List<Long> progress = new ArrayList<Long>();
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet();
+        dawg.setBuildListener(new ModifiableDAWGSet.BuildListener() {
+            @Override
+            public void progress(ModifiableDAWGSet dawg, DAWGBuildMetrics metrics) {
+                progress.add(metrics.getWordsProcessed());
+            }
+        }, 300);
+        dawg.addAll(words);
+        DAWGBuildMetrics metrics = dawg.getBuildMetrics();
+        assertEquals(Arrays.asList(300L, 600L, 900L, 1000L), progress);
+        assertEquals(1000L, metrics.getWordsProcessed());
+        assertTrue(metrics.getRegisterLookups() > 0L);
+        assertTrue(metrics.getRegisterHits() > 0L);
+        assertTrue(metrics.getRegisterHitRatio() > 0.0 && metrics.getRegisterHitRatio() <= 1.0);
+        assertEquals(dawg.getEquivalenceClassCount(), metrics.getRegisterSize());
+        assertEquals(dawg.getTransitionCount(), metrics.getTransitionCount());
+        assertEquals(dawg.getNodeCount(), metrics.getNodeCount());
+        assertEquals(0L, metrics.getClones());
+        dawg.add("0");
+        dawg.add("00");
+        assertTrue(metrics.getClones() > 0L);
+        dawg.compress();
+        assertEquals(1002L, progress.get(progress.size() - 1).longValue());
+        assertTrue(metrics.getCompressionNanos() > 0L);
+        metrics.reset();
+        assertEquals(0L, metrics.getWordsProcessed());
+
+        dawg = new ModifiableDAWGSet();
+        dawg.setBuildListener(new ModifiableDAWGSet.BuildListener() {
+            @Override
+            public void progress(ModifiableDAWGSet dawg, DAWGBuildMetrics metrics) {
+                dawg.cancelBuild();
+            }
+        }, 250);
+        try {
+            dawg.addAll(words);
+            assertTrue(false);
+        } catch (CancellationException e) {
+        }
+        assertEquals(250, dawg.size());
+        assertEquals(new TreeSet<String>(words.subList(0, 250)), dawg);
+        ModifiableDAWGSet expected = new ModifiableDAWGSet(words.subList(0, 250));
+        assertEquals(expected.getNodeCount(), dawg.getNodeCount());
+        assertEquals(expected.getTransitionCount(), dawg.getTransitionCount());
+        // A cancellation is consumed by the aborted call.
+        dawg.setBuildListener(null, 1);
+        dawg.addAll(words);
+        assertEquals(1000, dawg.size());
+    }
+    
+    @Test
+    public void memoryFootprint() {
+        List<String> words = new ArrayList<String>();
+        long chars = 0L;
+        for (int i = 0; i < 2000; i++) {
+            String word = Integer.toString(i * 7, 36);
+            words.add(word);
+            chars += word.length();
+        }
+        for (boolean largeAlphabet : new boolean[]{false, true}) {
+            if (largeAlphabet) {
+                // More than 64 letters in total.
+                StringBuilder sb = new StringBuilder();
+                for (char c = '\u0400'; c < '\u0420'; c++)
+                    sb.append(c);
+                words.add(sb.toString());
+                chars += sb.length();
+            }
+            ModifiableDAWGSet dawg = new ModifiableDAWGSet(words);
+            CompressedDAWGSet cdawg = dawg.compress();
+            assertEquals(largeAlphabet, cdawg instanceof CompressedDAWGSetLargeAlphabet);
+            DAWGMemoryFootprint modifiable = dawg.getMemoryFootprint();
+            DAWGMemoryFootprint compressed = cdawg.getMemoryFootprint();
+            long rawStringBytes = 2L * chars;
+            assertEquals(rawStringBytes, modifiable.getRawStringBytes());
+            assertEquals(rawStringBytes, compressed.getRawStringBytes());
+            assertTrue(modifiable.getBytes(DAWGMemoryFootprint.Component.NODES) > 0L);
+            assertTrue(modifiable.getBytes(DAWGMemoryFootprint.Component.REGISTER) > 0L);
+            assertTrue(modifiable.getBytes(DAWGMemoryFootprint.Component.INCOMING_DATA) > 0L);
+            assertEquals(0L, compressed.getBytes(DAWGMemoryFootprint.Component.NODES));
+            assertEquals(0L, compressed.getBytes(DAWGMemoryFootprint.Component.REGISTER));
+            assertEquals(DAWGMemoryFootprint.arrayBytes(cdawg.outgoingData.length, 4), compressed.getBytes(DAWGMemoryFootprint.Component.OUTGOING_DATA));
+            assertTrue(compressed.getTotalBytes() < modifiable.getTotalBytes());
+            assertTrue(compressed.getCompressionRatio() > modifiable.getCompressionRatio());
+            assertArrayEquals(modifiable.getFanOutHistogram(), compressed.getFanOutHistogram());
+            int nodes = 0;
+            for (int count : compressed.getFanOutHistogram())
+                nodes += count;
+            assertEquals(dawg.getNodeCount(), nodes);
+            assertEquals(cdawg.getNodeCount(), nodes);
+            assertEquals(compressed.getTotalBytes(), new UnmodifiableDAWGSet(cdawg).getMemoryFootprint().getTotalBytes());
+        }
+        ModifiableDAWGMap map = new ModifiableDAWGMap();
+        map.put("key", "value");
+        assertEquals(2L * "key\0value".length(), map.getMemoryFootprint().getRawStringBytes());
+    }
+    
+    @Test
+    public void utf8() {
+        Random random = new Random(1L);
+        String supplementary = new String(Character.toChars(0x20000)) + new String(Character.toChars(0x1F600));
+        String letters = "abc\u00E9\u0436\uE000\uFFFD" + supplementary;
+        for (int i = 0; i < 300; i++)
+            letters += (char)(0x4E00 + random.nextInt(20000));
+        TreeSet<String> expected = new TreeSet<String>(Utf8DAWGSet.CODE_POINT_ORDER);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(5);
+            for (int j = 0; j < length; j++) {
+                int idx = random.nextInt(letters.length());
+                if (Character.isLowSurrogate(letters.charAt(idx)))
+                    idx--;
+                sb.append(letters.charAt(idx));
+                if (Character.isHighSurrogate(letters.charAt(idx)))
+                    sb.append(letters.charAt(idx + 1));
+            }
+            expected.add(sb.toString());
+        }
+        expected.add("");
+        assertTrue(new ModifiableDAWGSet(expected).compress() instanceof CompressedDAWGSetLargeAlphabet);
+        for (boolean withIncomingTransitions : new boolean[]{false, true}) {
+            Utf8DAWGSet modifiable = new Utf8DAWGSet(withIncomingTransitions);
+            modifiable.addAll(expected);
+            assertTrue(modifiable.getAlphabet().size() <= 256);
+            assertTrue(modifiable.getAlphabet().last() < 256);
+            for (Utf8DAWGSet dawg : new Utf8DAWGSet[]{modifiable, modifiable.compress()}) {
+                assertEquals(expected.size(), dawg.size());
+                assertEquals(new ArrayList<String>(expected), new ArrayList<String>(dawg));
+                assertEquals(new ArrayList<String>(expected.descendingSet()), new ArrayList<String>(dawg.descendingSet()));
+                for (String word : expected)
+                    assertTrue(dawg.contains(word));
+                assertFalse(dawg.contains("\uD800"));
+                for (String word : new String[]{"a", supplementary.substring(0, 2), "\uE000", String.valueOf(letters.charAt(20))}) {
+                    List<String> startingWith = new ArrayList<String>();
+                    List<String> endingWith = new ArrayList<String>();
+                    List<String> withSubstring = new ArrayList<String>();
+                    for (String s : expected) {
+                        if (s.startsWith(word))
+                            startingWith.add(s);
+                        if (s.endsWith(word))
+                            endingWith.add(s);
+                        if (s.contains(word))
+                            withSubstring.add(s);
+                    }
+                    assertEquals(startingWith, new ArrayList<String>(dawg.prefixSet(word)));
+                    assertEquals(new TreeSet<String>(endingWith), new TreeSet<String>(toList(dawg.getStringsEndingWith(word).iterator())));
+                    assertEquals(withSubstring, toList(dawg.getStringsWithSubstring(word).iterator()));
+                }
+                String from = "\uE000";
+                String to = supplementary.substring(0, 2);
+                assertEquals(new ArrayList<String>(expected.subSet(from, true, to, false)), new ArrayList<String>(dawg.subSet(from, true, to, false)));
+                assertEquals(new ArrayList<String>(expected.headSet(from, true)), new ArrayList<String>(dawg.headSet(from, true)));
+                assertEquals(expected.higher(from), dawg.higher(from));
+                assertEquals(expected.lower(to), dawg.lower(to));
+                assertEquals(expected, dawg);
+            }
+        }
+        Utf8DAWGSet dawg = new Utf8DAWGSet(Arrays.asList("\u4E2D\u6587"));
+        // U+6587 and U+6500 share the first byte.
+        assertEquals("\u4E2D", dawg.determineLongestPrefixInDAWG("\u4E2D\u6500"));
+        assertEquals("\u4E2D\u6587", dawg.determineLongestPrefixInDAWG("\u4E2D\u6587\u6587"));
+        BitSet out = new BitSet();
+        dawg.containsAll(new String[]{"\u4E2D\u6587", "\uDC00", "\u4E2D"}, out, true);
+        assertEquals(1, out.cardinality());
+        assertTrue(out.get(0));
+        try {
+            dawg.add("\uDC00");
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+        }
+        Utf8DAWGMap map = new Utf8DAWGMap();
+        map.put("\u4E2D\u6587", "\u0436" + supplementary);
+        map.put("\uE000", "b");
+        map.put(supplementary, "a");
+        assertEquals("\u0436" + supplementary, map.get("\u4E2D\u6587"));
+        assertEquals(Arrays.asList("\u4E2D\u6587", "\uE000", supplementary), new ArrayList<String>(map.keySet()));
+        Utf8DAWGMap compressed = map.compress();
+        assertEquals(map, compressed);
+        assertEquals("a", compressed.get(supplementary));
+        assertTrue(compressed.containsKey("\uE000"));
+        assertFalse(compressed.containsKey("\uE001"));
+    }
+    
+    @Test
+    public void concurrentReads() throws Exception {
+        final List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++)
+            words.add(Integer.toString(i * 13, 36));
+        Collections.sort(words);
+        int length = 0;
+        for (String word : words)
+            length = Math.max(length, word.length());
+        final int maxLength = length;
+        final int hashCode = new HashSet<String>(words).hashCode();
+        for (CompressedDAWGSet compressed : new CompressedDAWGSet[]{new ModifiableDAWGSet(words).compress(), new ModifiableDAWGSet(words).compressToBytes()}) {
+            // Lazily calculated values of a deserialized instance are requested by all the threads at once.
+            final CompressedDAWGSet dawg = Serializer.serializeAndRead(compressed);
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger failures = new AtomicInteger();
+            Thread threads[] = new Thread[8];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            if (dawg.size() != words.size() || dawg.getMaxLength() != maxLength || dawg.hashCode() != hashCode)
+                                failures.incrementAndGet();
+                            for (int i = 0; i < words.size(); i++)
+                                if (!dawg.contains(words.get(i)) || dawg.getRank(words.get(i)) != i)
+                                    failures.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+            assertEquals(0, failures.get());
+        }
+    }
+
+    @Test
+    public void queryCache() {
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet(Arrays.asList("a", "ab", "abc", "abd", "abe", "b", "ba"));
+        DAWGQueryCache cache = new DAWGQueryCache(dawg, 2, 2);
+        assertEquals(Arrays.asList("ab", "abc"), cache.getStringsStartingWith("ab"));
+        assertEquals(Arrays.asList("ab", "abc"), cache.getStringsStartingWith("ab"));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(Arrays.asList("abe", "abd"), cache.getStrings("ab", true, null, false, null, false));
+        assertEquals(Arrays.asList("abd"), cache.getStrings("ab", false, "abc", false, "abe", false));
+        assertEquals(1L, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertEquals(4, cache.countStringsStartingWith("ab"));
+        assertEquals(7, cache.countStringsStartingWith(""));
+        assertEquals(0, cache.countStringsStartingWith("c"));
+        assertEquals(0, cache.countStringsStartingWith("c"));
+        assertEquals(2L, cache.getHitCount());
+
+        // Modification of the underlying set invalidates the cache.
+        dawg.add("aba");
+        assertEquals(Arrays.asList("ab", "aba"), cache.getStringsStartingWith("ab"));
+        assertEquals(5, cache.countStringsStartingWith("ab"));
+        dawg.remove("ab");
+        assertEquals(Arrays.asList("aba", "abc"), cache.getStringsStartingWith("ab"));
+        dawg.add("aba");
+        assertEquals(Arrays.asList("aba", "abc"), cache.getStringsStartingWith("ab"));
+        assertEquals(4, cache.countStringsStartingWith("ab"));
+        dawg.clear();
+        assertEquals(Collections.<String>emptyList(), cache.getStringsStartingWith("ab"));
+
+        CompressedDAWGSet compressed = new ModifiableDAWGSet(Arrays.asList("x", "xy", "xyz")).compress();
+        cache = new DAWGQueryCache(compressed, 10, 10);
+        assertEquals(Arrays.asList("xy", "xyz"), cache.getStringsStartingWith("xy"));
+        assertEquals(2, cache.countStringsStartingWith("xy"));
+        try {
+            cache.getEntries("x", false, null, false, null, false);
+            assertTrue(false);
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void graphViz() throws IOException {
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet(Arrays.asList("abcd", "abce", "x", "xyz"));
+        String dot = dawg.toGraphViz(false, true);
+        assertTrue(dot.startsWith("digraph dawg {\n"));
+        assertTrue(dot.endsWith("}"));
+        assertTrue(dot.contains("style=dashed"));
+        assertFalse(dot.contains("style=dotted"));
+        for (DAWGSet set : new DAWGSet[]{dawg, dawg.compress()}) {
+            StringWriter out = new StringWriter();
+            set.writeGraphViz(out, "", -1, -1, false, false, false);
+            assertEquals(set.toGraphViz(false, false), out.toString());
+
+            // The node after "ab" is expanded, the node after "abc" is only drawn.
+            out = new StringWriter();
+            set.writeGraphViz(out, "ab", 1, -1, true, false, false);
+            dot = out.toString();
+            assertEquals(1, count(dot, "->"));
+            assertEquals(1, count(dot, "style=dotted"));
+            assertTrue(dot.contains("[label=\"c\"]"));
+
+            out = new StringWriter();
+            set.writeGraphViz(out, "", -1, 2, false, false, true);
+            dot = out.toString();
+            assertTrue(dot.contains("[label=\"abc\"]"));
+            assertTrue(dot.contains("[label=\"x\"]"));
+            assertTrue(dot.contains("[label=\"d\"]"));
+            assertFalse(dot.contains("[label=\"y\"]"));
+            assertEquals(4, count(dot, "->"));
+
+            out = new StringWriter();
+            set.writeGraphViz(out, "q", -1, -1, false, false, false);
+            assertFalse(out.toString().contains("->"));
+        }
+    }
+
+    private static int count(String s, String sub) {
+        int ret = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1))
+            ret++;
+        return ret;
+    }
+
+    @Test
+    public void diff() {
+        RandomWords random = new RandomWords(11, 1000000, 36, 36);
+        TreeSet<String> oldWords = random.sortedSet(3000);
+        TreeSet<String> newWords = new TreeSet<String>(oldWords);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 30; i++) {
+            String word = random.next();
+            if (newWords.remove(word))
+                expected.add("-" + word);
+            else {
+                newWords.add(word);
+                expected.add("+" + word);
+            }
+        }
+        newWords.add("");
+        expected.add("+");
+        Collections.sort(expected, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return a.substring(1).compareTo(b.substring(1));
+            }
+        });
+        ModifiableDAWGSet oldDawg = new ModifiableDAWGSet(oldWords);
+        ModifiableDAWGSet newDawg = new ModifiableDAWGSet(newWords);
+        final List<String> actual = new ArrayList<String>();
+        DAWGSet.DiffListener listener = new DAWGSet.DiffListener() {
+            @Override
+            public void added(String str) {
+                actual.add("+" + str);
+            }
+
+            @Override
+            public void removed(String str) {
+                actual.add("-" + str);
+            }
+        };
+        for (DAWGSet a : new DAWGSet[]{oldDawg, oldDawg.compress()}) {
+            for (DAWGSet b : new DAWGSet[]{newDawg, newDawg.compress(), newDawg.compressToBytes()}) {
+                actual.clear();
+                DAWGSet.diff(a, b, listener);
+                assertEquals(expected, actual);
+            }
+        }
+        actual.clear();
+        DAWGSet.diff(oldDawg, new ModifiableDAWGSet(oldWords).compress(), listener);
+        assertEquals(Collections.<String>emptyList(), actual);
+
+        Utf8DAWGSet oldUtf8 = new Utf8DAWGSet();
+        oldUtf8.addAll(Arrays.asList("\u0436", "\u4E2D", "a"));
+        Utf8DAWGSet newUtf8 = new Utf8DAWGSet();
+        newUtf8.addAll(Arrays.asList("\u0436\u0436", "\u4E2D", "b"));
+        actual.clear();
+        DAWGSet.diff(oldUtf8, newUtf8.compress(), listener);
+        assertEquals(Arrays.asList("-a", "+b", "-\u0436", "+\u0436\u0436"), actual);
+    }
+
+    @Test
+    public void scan() throws IOException {
+        Random random = new Random(5);
+        TreeSet<String> words = new TreeSet<String>();
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(6); j >= 0; j--)
+                sb.append((char)('a' + random.nextInt(4)));
+            words.add(sb.toString());
+        }
+        words.add("");
+        char text[] = new char[20000];
+        for (int i = 0; i < text.length; i++)
+            text[i] = (char)('a' + random.nextInt(5));
+        List<String> all = new ArrayList<String>();
+        for (int j = 1; j <= text.length; j++)
+            for (int i = Math.max(0, j - 7); i < j; i++)
+                if (words.contains(new String(text, i, j - i)))
+                    all.add(i + "-" + j);
+        List<String> longest = new ArrayList<String>();
+        for (int i = 0; i < text.length;) {
+            int end = -1;
+            for (int j = i + 1; j <= Math.min(text.length, i + 7); j++)
+                if (words.contains(new String(text, i, j - i)))
+                    end = j;
+            if (end < 0)
+                i++;
+            else {
+                longest.add(i + "-" + end);
+                i = end;
+            }
+        }
+        final List<String> actual = new ArrayList<String>();
+        DAWGSet.MatchListener listener = new DAWGSet.MatchListener() {
+            @Override
+            public void match(int start, int end) {
+                actual.add(start + "-" + end);
+            }
+        };
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet(words);
+        Utf8DAWGSet utf8 = new Utf8DAWGSet();
+        utf8.addAll(words);
+        for (DAWGSet set : new DAWGSet[]{dawg, dawg.compress(), dawg.compressToBytes(), utf8, utf8.compress(), new ModifiableDAWGMap().getUnderlyingSet()}) {
+            boolean empty = set.isEmpty();
+            for (boolean longestOnly : new boolean[]{false, true}) {
+                List<String> expected = empty ? Collections.<String>emptyList() : longestOnly ? longest : all;
+                actual.clear();
+                set.scan(new String(text), longestOnly, listener);
+                assertEquals(expected, actual);
+                actual.clear();
+                set.scan(new CharArrayReader(text), longestOnly, listener);
+                assertEquals(expected, actual);
+                actual.clear();
+                set.scan(text, 3, 10, longestOnly, listener);
+                List<String> range = new ArrayList<String>();
+                for (String s : expected) {
+                    int start = Integer.parseInt(s.substring(0, s.indexOf('-')));
+                    int end = Integer.parseInt(s.substring(s.indexOf('-') + 1));
+                    if (start >= 3 && end <= 13)
+                        range.add(s);
+                }
+                if (!longestOnly)
+                    assertEquals(range, actual);
+                else
+                    assertTrue(actual.size() > 0 == range.size() > 0);
+            }
+        }
+
+        utf8 = new Utf8DAWGSet();
+        utf8.addAll(Arrays.asList("\u0436", "\u0436\uD83D\uDE00", "\u4E2D"));
+        actual.clear();
+        utf8.compress().scan("x\u0436\uD83D\uDE00\u4E2D\uDE00\u0436\uD83D", false, listener);
+        assertEquals(Arrays.asList("1-2", "1-4", "4-5", "6-7"), actual);
+
+        // Failure links lead to the longest suffixes which are prefixes of other strings.
+        dawg = new ModifiableDAWGSet(Arrays.asList("he", "she", "his", "hers", "abcd", "bc"));
+        actual.clear();
+        dawg.scan("ushers abcd", false, listener);
+        assertEquals(Arrays.asList("1-4", "2-4", "2-6", "8-10", "7-11"), actual);
+        actual.clear();
+        dawg.scan("ushers abcd", true, listener);
+        assertEquals(Arrays.asList("1-4", "7-11"), actual);
+        // The automaton is rebuilt after a modification.
+        dawg.add("us");
+        actual.clear();
+        dawg.scan("ushers abcd", true, listener);
+        assertEquals(Arrays.asList("0-2", "2-6", "7-11"), actual);
+    }
+
+    @Test
+    public void foldedLookups() {
+        List<String> words = Arrays.asList("Apple", "BETA", "Beta", "Caf\u00E9", "Cafe", "apple", "applet", "b", "beta", "bet\u00E1", "caff\u00E8");
+        ModifiableDAWGSet dawg = new ModifiableDAWGSet(words);
+        Utf8DAWGSet utf8 = new Utf8DAWGSet(words);
+        for (DAWGSet set : new DAWGSet[]{dawg, dawg.compress(), new ModifiableDAWGMap().getUnderlyingSet(), utf8, utf8.compress()}) {
+            boolean empty = set.isEmpty();
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("Apple", "apple"), toList(set.getStringsFolded("APPLE", CharFolding.CASE).iterator()));
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("BETA", "Beta", "beta"), toList(set.getStringsFolded("beta", CharFolding.CASE).iterator()));
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("BETA", "Beta", "beta", "bet\u00E1"), toList(set.getStringsFolded("beta", CharFolding.CASE_AND_DIACRITICS).iterator()));
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("Apple", "apple", "applet"), toList(set.getStringsStartingWithFolded("aPp", CharFolding.CASE).iterator()));
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("Cafe", "Caf\u00E9", "caff\u00E8"), toList(set.getStringsStartingWithFolded("CAF", CharFolding.CASE_AND_DIACRITICS).iterator()));
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("caff\u00E8", "Caf\u00E9", "Cafe"), toList(set.getStringsStartingWithFolded("caf", CharFolding.CASE_AND_DIACRITICS, true, null, false, null, false).iterator()));
+            // Bounds are compared with the stored strings.
+            assertEquals(empty ? Collections.emptyList() : Arrays.asList("Beta", "b", "beta"), toList(set.getStringsStartingWithFolded("B", CharFolding.CASE, false, "Beta", true, "beta", true).iterator()));
+            assertEquals(Collections.emptyList(), toList(set.getStringsStartingWithFolded("x", CharFolding.CASE).iterator()));
+            NavigableSet<String> prefixSet = set.prefixSet("b");
+            if (prefixSet instanceof FoldedStringsFilter) {
+                assertEquals(empty ? Collections.emptyList() : Arrays.asList("beta", "bet\u00E1"), toList(((FoldedStringsFilter)prefixSet).getStringsStartingWithFolded("BET", CharFolding.CASE_AND_DIACRITICS).iterator()));
+                assertEquals(empty ? Collections.emptyList() : Arrays.asList("b", "beta", "bet\u00E1"), toList(((FoldedStringsFilter)prefixSet).getStringsStartingWithFolded("B", CharFolding.CASE).iterator()));
+            }
+        }
+        // Code points of 2, 3 and 4 bytes of UTF-8.
+        utf8 = new Utf8DAWGSet(Arrays.asList("\u0416\u0443\u043A", "\u0436\u0443\u043A", "\u0436\u0443\u043A\uD835\uDC00", "\u0436\u0443\u043A\uD835\uDC01", "\u1E9E", "\u00DF"));
+        for (DAWGSet set : new DAWGSet[]{utf8, utf8.compress()}) {
+            assertEquals(Arrays.asList("\u0416\u0443\u043A", "\u0436\u0443\u043A"), toList(set.getStringsFolded("\u0416\u0423\u041A", CharFolding.CASE).iterator()));
+            assertEquals(Arrays.asList("\u0436\u0443\u043A\uD835\uDC00"), toList(set.getStringsFolded("\u0416\u0443\u043A\uD835\uDC00", CharFolding.CASE).iterator()));
+            assertEquals(Arrays.asList("\u0416\u0443\u043A", "\u0436\u0443\u043A", "\u0436\u0443\u043A\uD835\uDC00", "\u0436\u0443\u043A\uD835\uDC01"), toList(set.getStringsStartingWithFolded("\u0416\u0423\u041A", CharFolding.CASE).iterator()));
+            assertEquals(Arrays.asList("\u00DF", "\u1E9E"), toList(set.getStringsFolded("\u1E9E", CharFolding.CASE).iterator()));
+        }
+    }
+
+    @Test
+    public void lazyIncomingTransitions() {
+        TreeSet<String> words = new RandomWords(9, 50000, 12, 12).sortedSet(2000);
+        ModifiableDAWGSet eager = new ModifiableDAWGSet(true, words);
+        ModifiableDAWGSet lazy = new ModifiableDAWGSet(words);
+        assertTrue(lazy.isWithIncomingTransitions());
+        assertFalse(lazy.isIndexingIncomingTransitions());
+        assertEquals(0L, lazy.getMemoryFootprint().getBytes(DAWGMemoryFootprint.Component.INCOMING_DATA));
+        assertTrue(lazy.getMemoryFootprint().getTotalBytes() < eager.getMemoryFootprint().getTotalBytes());
+        // Removals and additions only update counts of incoming transitions.
+        for (String word : new String[]{"1a", "2b", "3"}) {
+            eager.remove(word);
+            lazy.remove(word);
+        }
+        eager.add("zzz1");
+        lazy.add("zzz1");
+        assertEquals(new HashSet<String>(toList(eager.getStringsEndingWith("1").iterator())), new HashSet<String>(toList(lazy.getStringsEndingWith("1").iterator())));
+        assertTrue(lazy.isIndexingIncomingTransitions());
+        assertEquals(eager.getMemoryFootprint().getBytes(DAWGMemoryFootprint.Component.INCOMING_DATA), lazy.getMemoryFootprint().getBytes(DAWGMemoryFootprint.Component.INCOMING_DATA));
+        // Since then the index is kept up to date.
+        eager.add("b1");
+        lazy.add("b1");
+        eager.remove("zzz1");
+        lazy.remove("zzz1");
+        assertEquals(new HashSet<String>(toList(eager.getStringsEndingWith("1").iterator())), new HashSet<String>(toList(lazy.getStringsEndingWith("1").iterator())));
+        assertEquals(eager.compress(), lazy.compress());
+
+        // Compression with incoming transitions indexes them too.
+        lazy = new ModifiableDAWGSet(words);
+        assertEquals(new ModifiableDAWGSet(true, words).compress(), lazy.compress());
+        assertTrue(lazy.isIndexingIncomingTransitions());
+        lazy = new ModifiableDAWGSet(words);
+        lazy.compressToBytes();
+        assertFalse(lazy.isIndexingIncomingTransitions());
+    }
+
+    @Test
+    public void statistics() throws IOException, ClassNotFoundException {
+        // All the 2^14 strings of 'a' and 'b' of length 14 form a chain of nodes with a quantity of paths
+        // growing exponentially with the length.
+        ModifiableDAWGSet chain = new ModifiableDAWGSet();
+        char word[] = new char[14];
+        for (int i = 0; i < 1 << word.length; i++) {
+            for (int j = 0; j < word.length; j++)
+                word[j] = (i & (1 << j)) == 0 ? 'a' : 'b';
+            chain.add(new String(word));
+        }
+        int histogram[] = new int[word.length + 1];
+        Arrays.fill(histogram, 1);
+        for (DAWGSet dawg : new DAWGSet[]{chain, chain.compress(), chain.compressToBytes(), new UnmodifiableDAWGSet(chain)}) {
+            DAWGStatistics statistics = dawg.getStatistics();
+            assertEquals(word.length + 1, statistics.getNodeCount());
+            assertEquals(2 * word.length, statistics.getTransitionCount());
+            assertEquals(word.length, statistics.getMinLength());
+            assertEquals(word.length, statistics.getMaxLength());
+            assertEquals(new TreeSet<Character>(Arrays.asList('a', 'b')), statistics.getAlphabet());
+            assertArrayEquals(histogram, statistics.getDepthHistogram());
+            assertEquals(word.length + 1, dawg.getNodeCount());
+        }
+
+        TreeSet<String> words = new RandomWords(5, 1000000, 7, 36).sortedSet(3000);
+        words.add("");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            sb.append((char)('a' + i % 20));
+        words.add(sb.toString());
+        ModifiableDAWGSet modifiable = new ModifiableDAWGSet(words);
+        CompressedDAWGSet compressed = modifiable.compress();
+        DAWGStatistics expected = modifiable.getStatistics();
+        assertEquals(0, expected.getMinLength());
+        assertEquals(2000, expected.getMaxLength());
+        assertEquals(modifiable.getAlphabet(), expected.getAlphabet());
+        assertEquals(modifiable.getTransitionCount(), expected.getTransitionCount());
+        int nodes = 0;
+        for (int count : expected.getDepthHistogram())
+            nodes += count;
+        assertEquals(expected.getNodeCount(), nodes);
+        for (DAWGSet dawg : new DAWGSet[]{compressed, modifiable.compressToBytes(), Serializer.serializeAndRead(compressed)}) {
+            DAWGStatistics statistics = dawg.getStatistics();
+            assertEquals(expected.toString(), statistics.toString());
+            assertEquals(expected.getAlphabet(), statistics.getAlphabet());
+            assertEquals(2000, dawg.getMaxLength());
+        }
+        // Statistics of a compressed DAWG are cached.
+        assertTrue(compressed.getStatistics() == compressed.getStatistics());
+        modifiable.remove(sb.toString());
+        modifiable.remove("");
+        DAWGStatistics statistics = modifiable.getStatistics();
+        int minLength = Integer.MAX_VALUE;
+        int maxLength = 0;
+        for (String s : modifiable) {
+            minLength = Math.min(minLength, s.length());
+            maxLength = Math.max(maxLength, s.length());
+        }
+        assertEquals(minLength, statistics.getMinLength());
+        assertEquals(maxLength, statistics.getMaxLength());
+        assertEquals(statistics.getMaxLength() + 1, statistics.getDepthHistogram().length);
+        assertEquals(new ModifiableDAWGSet(modifiable).getStatistics().toString(), statistics.toString());
+
+        statistics = new ModifiableDAWGSet().getStatistics();
+        assertEquals(1, statistics.getNodeCount());
+        assertEquals(0, statistics.getTransitionCount());
+        assertEquals(0, statistics.getMaxLength());
+        assertTrue(statistics.getAlphabet().isEmpty());
+        assertArrayEquals(new int[]{1}, statistics.getDepthHistogram());
+    }
+
+    @Test
+    public void fingerprints() throws IOException, ClassNotFoundException {
+        RandomWords random = new RandomWords(11, 1000000, 7, 36);
+        TreeSet<String> words = random.sortedSet(3000, "\u0436", 30);
+        words.add("");
+        ModifiableDAWGSet modifiable = new ModifiableDAWGSet(words);
+        CompressedDAWGSet compressed = modifiable.compress();
+        Set<String> expected = new HashSet<String>(words);
+        DAWGSet dawgs[] = new DAWGSet[]{modifiable, compressed, modifiable.compressToBytes(), new ModifiableDAWGSet(true, words).compress(),
+                                        Serializer.serializeAndRead(compressed), new UnmodifiableDAWGSet(modifiable)};
+        for (DAWGSet dawg : dawgs) {
+            assertEquals(expected.hashCode(), dawg.hashCode());
+            assertEquals(modifiable.getFingerprint(), dawg.getFingerprint());
+            assertTrue(expected.equals(dawg));
+            assertTrue(dawg.equals(expected));
+            for (DAWGSet other : dawgs)
+                assertTrue(dawg.equals(other));
+        }
+
+        // Sets of the same size differing in a single string.
+        String removed = words.pollFirst();
+        words.add(removed + "0");
+        DAWGSet other = new ModifiableDAWGSet(words).compress();
+        assertEquals(modifiable.size(), other.size());
+        assertTrue(modifiable.getFingerprint() != other.getFingerprint());
+        for (DAWGSet dawg : dawgs) {
+            assertFalse(dawg.equals(other));
+            assertFalse(other.equals(dawg));
+        }
+
+        // Fingerprints and hash codes of nodes are kept up to date.
+        for (int i = 0; i < 500; i++) {
+            String word = random.next();
+            if (random.getRandom().nextBoolean()) {
+                modifiable.add(word);
+                expected.add(word);
+            } else {
+                modifiable.remove(word);
+                expected.remove(word);
+            }
+            if (i % 50 == 0) {
+                assertEquals(expected.hashCode(), modifiable.hashCode());
+                assertEquals(new ModifiableDAWGSet(expected).getFingerprint(), modifiable.getFingerprint());
+            }
+        }
+        assertEquals(expected.hashCode(), modifiable.compress().hashCode());
+        assertEquals(modifiable.getFingerprint(), new ModifiableDAWGSet(expected).compressToBytes().getFingerprint());
+        assertEquals(modifiable.compress(), new ModifiableDAWGSet(expected));
+        modifiable.clear();
+        assertEquals(new ModifiableDAWGSet().getFingerprint(), modifiable.getFingerprint());
+        assertEquals(0, modifiable.hashCode());
+
+        // Strings of UTF-8 sets are compared by bytes with each other, as strings with other sets.
+        Utf8DAWGSet utf8 = new Utf8DAWGSet(words);
+        assertEquals(new HashSet<String>(words).hashCode(), utf8.hashCode());
+        assertTrue(utf8.equals(new Utf8DAWGSet(words).compress()));
+        assertTrue(utf8.equals(other));
+        assertTrue(other.equals(utf8));
+        words.add("\u0436");
+        assertFalse(utf8.equals(new Utf8DAWGSet(words)));
+    }
+
+    @Test
+    public void cursor() {
+        RandomWords random = new RandomWords(13, 100000, 7, 7);
+        TreeSet<String> words = random.sortedSet(2000, "\u0436", 20);
+        ModifiableDAWGSet modifiable = new ModifiableDAWGSet(words);
+        // Words of a large alphabet are compressed to another layout.
+        TreeSet<String> wideWords = new TreeSet<String>();
+        for (int i = 0; i < 2000; i++)
+            wideWords.add(random.next() + (char)(0x400 + random.getRandom().nextInt(100)));
+        DAWGSet wide = new ModifiableDAWGSet(wideWords).compress();
+        assertTrue(wide instanceof CompressedDAWGSetLargeAlphabet);
+        for (DAWGSet dawg : new DAWGSet[]{modifiable, modifiable.compress(), modifiable.compressToBytes(), new Utf8DAWGSet(words), new Utf8DAWGSet(words).compress(), wide}) {
+            TreeSet<String> dawgWords = dawg == wide ? wideWords : words;
+            for (boolean descending : new boolean[]{false, true}) {
+                for (String bounds[] : new String[][]{{null, null, null}, {"1", null, null}, {"1", "102", "1564"}, {"", "3", "2"}}) {
+                    List<String> expected = new ArrayList<String>();
+                    for (String word : descending ? dawgWords.descendingSet() : dawgWords)
+                        if ((bounds[0] == null || word.startsWith(bounds[0])) && (bounds[1] == null || word.compareTo(bounds[1]) >= 0) && (bounds[2] == null || word.compareTo(bounds[2]) < 0))
+                            expected.add(word);
+                    List<String> actual = new ArrayList<String>();
+                    DAWGCursor cursor = new DAWGCursor(bounds[0], descending, bounds[1], true, bounds[2], false);
+                    while (!cursor.isExhausted()) {
+                        List<String> page = cursor.next(dawg, 37);
+                        assertTrue(page.size() <= 37);
+                        actual.addAll(page);
+                        // Each page may be fetched by another process.
+                        cursor = DAWGCursor.fromToken(cursor.toToken());
+                    }
+                    assertEquals(expected, actual);
+                    assertTrue(cursor.next(dawg, 10).isEmpty());
+                }
+            }
+        }
+
+        // The next page starts after the last fetched string even if the set has changed.
+        DAWGCursor cursor = new DAWGCursor("", false, null, false, null, false);
+        List<String> page = cursor.next(modifiable, 10);
+        assertEquals(new ArrayList<String>(words).subList(0, 10), page);
+        String token = cursor.toToken();
+        modifiable.remove(page.get(9));
+        modifiable.remove(words.higher(page.get(9)));
+        modifiable.add(page.get(0) + "0");
+        assertEquals(new ArrayList<String>(modifiable.tailSet(page.get(9), false)).subList(0, 5), DAWGCursor.fromToken(token).next(modifiable, 5));
+        assertTrue(cursor.next(modifiable, 0).isEmpty());
+
+        // A token of a compressed set resumes the traversal with another layout or another set.
+        DAWGSet compressed = new ModifiableDAWGSet(words).compress();
+        for (boolean descending : new boolean[]{false, true}) {
+            cursor = new DAWGCursor("1", descending, null, false, null, false);
+            page = cursor.next(compressed, 20);
+            token = cursor.toToken();
+            List<String> expected = new ArrayList<String>(descending ? words.headSet(page.get(19), false).descendingSet() : words.tailSet(page.get(19), false));
+            for (Iterator<String> it = expected.iterator(); it.hasNext();)
+                if (!it.next().startsWith("1"))
+                    it.remove();
+            assertEquals(expected.subList(0, 20), DAWGCursor.fromToken(token).next(compressed, 20));
+            assertEquals(expected.subList(0, 20), DAWGCursor.fromToken(token).next(new ModifiableDAWGSet(words).compressToBytes(), 20));
+            assertEquals(expected.subList(0, 20), DAWGCursor.fromToken(token).next(new ModifiableDAWGSet(words), 20));
+            // The fingerprint of a set with an added string differs, so the cursor descends the last string.
+            TreeSet<String> changed = new TreeSet<String>(words);
+            String added = expected.get(0) + "0";
+            assertTrue(changed.add(added));
+            List<String> changedExpected = new ArrayList<String>(descending ? changed.headSet(page.get(19), false).descendingSet() : changed.tailSet(page.get(19), false));
+            for (Iterator<String> it = changedExpected.iterator(); it.hasNext();)
+                if (!it.next().startsWith("1"))
+                    it.remove();
+            assertTrue(changedExpected.subList(0, 20).contains(added));
+            assertEquals(changedExpected.subList(0, 20), DAWGCursor.fromToken(token).next(new ModifiableDAWGSet(changed).compress(), 20));
+        }
+        for (String malformed : new String[]{"", "A", "AQ", token.substring(0, token.length() - 2), token + "AAAA", "*" + token}) {
+            try {
+                DAWGCursor.fromToken(malformed);
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.quinto.dawg;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.quinto.dawg.util.RandomWords;
+
+public class ExternalDAWGBuilderTest {
+    @Test
+    public void build() throws IOException, ClassNotFoundException {
+        RandomWords random = new RandomWords(5, 5000, 7, 7);
+        TreeSet<String> expected = new TreeSet<String>();
+        ExternalDAWGBuilder builder = new ExternalDAWGBuilder(50000, null, true);
+        for (int i = 0; i < 10000; i++) {
+            String word = random.next("\ud800", 10);
+            expected.add(word);
+            builder.add(word);
+        }
+        assertTrue(builder.getSpillCount() > 5);
+        File output = File.createTempFile("dawg", ".bin");
+        output.deleteOnExit();
+        builder.build(output);
+        // Buffers of all the runs don't fit in the budget, so some of them are merged beforehand.
+        assertTrue(builder.getMergePassCount() > 0);
+        ObjectInputStream ois = new ObjectInputStream(new FileInputStream(output));
+        CompressedDAWGSet dawg;
+        try {
+            dawg = (CompressedDAWGSet)ois.readObject();
+        } finally {
+            ois.close();
+        }
+        assertEquals(new ArrayList<String>(expected), new ArrayList<String>(dawg));
+        assertEquals(new ModifiableDAWGSet(expected).compress(), dawg);
+    }
+    
+    @Test
+    public void boundedMemory() throws IOException {
+        long budget = 4000000;
+        TreeSet<String> expected = new RandomWords(7, 1000000, 10, 10).sortedSet(100000, "\u0436", 10);
+        // The graph of all the strings would not fit into the budget.
+        assertTrue(new ModifiableDAWGSet(true, expected).getMemoryFootprint().getTotalBytes() > budget);
+        ExternalDAWGBuilder builder = new ExternalDAWGBuilder(budget, null, true);
+        builder.addAll(expected);
+        assertTrue(builder.getSpillCount() > 0);
+        CompressedDAWGSet dawg = builder.build();
+        assertTrue(builder.getPeakMemoryEstimate() <= budget);
+        assertEquals(new ModifiableDAWGSet(true, expected).compress(), dawg);
+        assertEquals(new ArrayList<String>(expected), new ArrayList<String>(dawg));
+    }
+    
+    @Test
+    public void suffixSearch() throws IOException {
+        for (boolean largeAlphabet : new boolean[]{false, true}) {
+            RandomWords random = largeAlphabet ? new RandomWords(3, '\u0100', 100, 1, 8) : new RandomWords(3, 'a', 6, 1, 8);
+            TreeSet<String> words = random.sortedSet(5000);
+            ExternalDAWGBuilder builder = new ExternalDAWGBuilder(20000, null, true);
+            builder.addAll(words);
+            assertTrue(builder.getSpillCount() > 0);
+            CompressedDAWGSet dawg = builder.build();
+            assertEquals(largeAlphabet, dawg instanceof CompressedDAWGSetLargeAlphabet);
+            ModifiableDAWGSet expected = new ModifiableDAWGSet(true, words);
+            for (int i = 0; i < 200; i++) {
+                String word = random.next();
+                int from = random.getRandom().nextInt(word.length());
+                String suffix = word.substring(from);
+                String substring = word.substring(from, from + 1 + random.getRandom().nextInt(Math.min(3, word.length() - from)));
+                assertEquals(toSortedList(expected.getStringsEndingWith(suffix)), toSortedList(dawg.getStringsEndingWith(suffix)));
+                assertEquals(toSortedList(expected.getStringsWithSubstring(substring)), toSortedList(dawg.getStringsWithSubstring(substring)));
+            }
+            assertEquals(new ArrayList<String>(words), toSortedList(dawg.getStringsEndingWith("")));
+        }
+    }
+
+    /**
+     * Suffix search goes by incoming transitions, whose order depends on numbering of nodes, so results are sorted.
+     */
+    private static List<String> toSortedList(Iterable<String> strings) {
+        List<String> ret = new ArrayList<String>();
+        for (String s : strings)
+            ret.add(s);
+        Collections.sort(ret);
+        return ret;
+    }
+    
+    @Test
+    public void buildInMemory() throws IOException {
+        ExternalDAWGBuilder builder = new ExternalDAWGBuilder(1 << 20, null, false);
+        builder.add("b");
+        builder.add("a");
+        builder.add("b");
+        assertEquals(0, builder.getSpillCount());
+        CompressedDAWGSet dawg = builder.build();
+        assertEquals(2, dawg.size());
+        assertTrue(dawg.contains("a"));
+    }
+}
@@ -0,0 +1,56 @@
+package org.quinto.dawg;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares lookup latency of a {@link CompressedDAWGSet} before and after {@link CompressedDAWGSet#relayout}.
+ * Queries are skewed: most of them hit a small sample of hot words.
+ * Usage: RelayoutBenchmark [words file] [hot words count] [queries count]
+ */
+public class RelayoutBenchmark {
+    public static void main(String args[]) throws IOException {
+        String file = args.length > 0 ? args[0] : "words.txt";
+        int hotCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int queriesCount = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = br.readLine()) != null)
+                words.add(line);
+        } finally {
+            br.close();
+        }
+        Random random = new Random(1L);
+        List<String> hotWords = new ArrayList<String>(hotCount);
+        for (int i = 0; i < hotCount; i++)
+            hotWords.add(words.get(random.nextInt(words.size())));
+        String queries[] = new String[queriesCount];
+        for (int i = 0; i < queriesCount; i++)
+            queries[i] = random.nextInt(10) < 9 ? hotWords.get(random.nextInt(hotWords.size())) : words.get(random.nextInt(words.size()));
+        CompressedDAWGSet original = new ModifiableDAWGSet(false, words).compress();
+        long start = System.nanoTime();
+        CompressedDAWGSet relaid = original.relayout(hotWords);
+        System.out.println("Relayout of " + original.getTransitionCount() + " transitions: " + (System.nanoTime() - start) / 1000000L + " ms");
+        for (int round = 0; round < 5; round++) {
+            System.out.println("Round " + round + ": original " + measure(original, queries) + " ns, relaid out " + measure(relaid, queries) + " ns per lookup");
+        }
+    }
+
+    private static long measure(CompressedDAWGSet dawg, String queries[]) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (String query : queries)
+            if (dawg.contains(query))
+                found++;
+        long ret = (System.nanoTime() - start) / queries.length;
+        if (found != queries.length)
+            throw new IllegalStateException("Not all words are found");
+        return ret;
+    }
+}
@@ -0,0 +1,94 @@
+package org.quinto.dawg;
+
+import org.quinto.dawg.util.RandomWords;
+import org.quinto.dawg.util.Serializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class WeightedDAWGSetTest {
+    @Test
+    public void scores() throws IOException, ClassNotFoundException {
+        ModifiableWeightedDAWGSet dawg = new ModifiableWeightedDAWGSet();
+        assertNull(dawg.add("car", 10));
+        assertNull(dawg.add("cat", -5));
+        assertNull(dawg.add("ca", Integer.MAX_VALUE));
+        assertNull(dawg.add("dog", Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(10), dawg.add("car", 7));
+        assertEquals(Integer.valueOf(7), dawg.getScore("car"));
+        assertEquals(Integer.valueOf(-5), dawg.getScore("cat"));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), dawg.getScore("ca"));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), dawg.getScore("dog"));
+        assertNull(dawg.getScore("c"));
+        assertNull(dawg.getScore("cars"));
+        assertEquals(4, dawg.size());
+        assertEquals(Arrays.asList("ca", "car", "cat", "dog"), new ArrayList<String>(dawg));
+        assertTrue(dawg.contains("cat"));
+        assertFalse(dawg.contains("c"));
+        
+        CompressedWeightedDAWGSet cdawg = dawg.compress();
+        assertEquals(Integer.valueOf(7), cdawg.getScore("car"));
+        assertEquals(Arrays.asList("ca", "car", "cat", "dog"), new ArrayList<String>(cdawg));
+        assertEquals(Arrays.asList("ca", "car", "cat"), cdawg.topK("c", 5));
+        cdawg = Serializer.serializeAndRead(cdawg);
+        assertEquals(Arrays.asList("ca", "car"), cdawg.topK("c", 2));
+        assertEquals(Integer.valueOf(-5), cdawg.uncompress().getScore("cat"));
+        
+        assertTrue(dawg.remove("car"));
+        assertFalse(dawg.remove("car"));
+        assertFalse(dawg.remove(1));
+        assertEquals(Arrays.asList("ca", "cat"), dawg.topK("", 2));
+        assertEquals(Collections.EMPTY_LIST, dawg.topK("x", 2));
+        assertEquals(Collections.EMPTY_LIST, dawg.topK("c", 0));
+    }
+    
+    @Test
+    public void topKRandom() {
+        for (boolean largeAlphabet : new boolean[]{false, true}) {
+            RandomWords randomWords = largeAlphabet ? new RandomWords(42, '\u0100', 100, 1, 6) : new RandomWords(42, 'a', 4, 1, 6);
+            Random random = randomWords.getRandom();
+            final Map<String, Integer> scores = new TreeMap<String, Integer>();
+            for (int i = 0; i < 2000; i++)
+                scores.put(randomWords.next(), random.nextInt(50));
+            ModifiableWeightedDAWGSet dawg = new ModifiableWeightedDAWGSet();
+            dawg.addAll(scores);
+            CompressedWeightedDAWGSet cdawg = dawg.compress();
+            assertEquals(largeAlphabet, cdawg.dawg instanceof CompressedDAWGSetLargeAlphabet);
+            for (String word : scores.keySet()) {
+                assertEquals(scores.get(word), dawg.getScore(word));
+                assertEquals(scores.get(word), cdawg.getScore(word));
+            }
+            String words[] = scores.keySet().toArray(new String[scores.size()]);
+            for (int i = 0; i < 100; i++) {
+                String sample = words[random.nextInt(words.length)];
+                String prefix = i == 0 ? "" : sample.substring(0, Math.min(sample.length(), 1 + random.nextInt(2)));
+                int k = random.nextInt(20);
+                List<String> expected = new ArrayList<String>();
+                for (String word : scores.keySet())
+                    if (word.startsWith(prefix))
+                        expected.add(word);
+                Collections.sort(expected, new Comparator<String>() {
+                    @Override
+                    public int compare(String a, String b) {
+                        int cmp = scores.get(b).compareTo(scores.get(a));
+                        return cmp == 0 ? a.compareTo(b) : cmp;
+                    }
+                });
+                expected = expected.subList(0, Math.min(k, expected.size()));
+                assertEquals(expected, dawg.topK(prefix, k));
+                assertEquals(expected, cdawg.topK(prefix, k));
+            }
+        }
+    }
+}
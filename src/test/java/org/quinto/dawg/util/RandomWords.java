@@ -0,0 +1,104 @@
+package org.quinto.dawg.util;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates words of random numbers written in random radixes, optionally followed by a suffix.
+ * Such words share many prefixes and suffixes, so their DAWGs have both branching and merged nodes.
+ * Words of random letters of a given alphabet may be generated instead, e.g. to choose a layout of compressed DAWGs.
+ * Used here for testing purposes only.
+ */
+public class RandomWords {
+    private final Random random;
+    private final int bound;
+    private final int minRadix;
+    private final int maxRadix;
+    private final char base;
+    private final int alphabetSize;
+    private final int minLength;
+    private final int maxLength;
+
+    /**
+     * @param seed      a seed of the generator
+     * @param bound     an exclusive upper bound of the numbers
+     * @param minRadix  the minimal radix
+     * @param maxRadix  the maximal radix
+     */
+    public RandomWords(long seed, int bound, int minRadix, int maxRadix) {
+        random = new Random(seed);
+        this.bound = bound;
+        this.minRadix = minRadix;
+        this.maxRadix = maxRadix;
+        base = '\0';
+        alphabetSize = 0;
+        minLength = 0;
+        maxLength = 0;
+    }
+
+    /**
+     * Generates words of random letters instead of numbers.
+     * @param seed          a seed of the generator
+     * @param base          the first letter of the alphabet
+     * @param alphabetSize  the quantity of consecutive letters in the alphabet
+     * @param minLength     the minimal length of words
+     * @param maxLength     the maximal length of words
+     */
+    public RandomWords(long seed, char base, int alphabetSize, int minLength, int maxLength) {
+        random = new Random(seed);
+        bound = 0;
+        minRadix = 0;
+        maxRadix = 0;
+        this.base = base;
+        this.alphabetSize = alphabetSize;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the underlying generator, e.g. to randomize something else between words.
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    public String next() {
+        if (alphabetSize > 0) {
+            StringBuilder sb = new StringBuilder();
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            for (int i = 0; i < length; i++)
+                sb.append((char)(base + random.nextInt(alphabetSize)));
+            return sb.toString();
+        }
+        int number = random.nextInt(bound);
+        return Integer.toString(number, minRadix == maxRadix ? minRadix : minRadix + random.nextInt(maxRadix - minRadix + 1));
+    }
+
+    /**
+     * Returns a word followed by a given suffix with the probability of {@code 1 / odds}.
+     */
+    public String next(String suffix, int odds) {
+        String word = next();
+        return random.nextInt(odds) == 0 ? word + suffix : word;
+    }
+
+    /**
+     * Returns distinct words out of a given quantity of generated ones.
+     */
+    public TreeSet<String> sortedSet(int count) {
+        TreeSet<String> ret = new TreeSet<String>();
+        for (int i = 0; i < count; i++)
+            ret.add(next());
+        return ret;
+    }
+
+    /**
+     * Returns distinct words out of a given quantity of generated ones, some of them followed by a given suffix.
+     */
+    public TreeSet<String> sortedSet(int count, String suffix, int odds) {
+        TreeSet<String> ret = new TreeSet<String>();
+        for (int i = 0; i < count; i++)
+            ret.add(next(suffix, odds));
+        return ret;
+    }
+}